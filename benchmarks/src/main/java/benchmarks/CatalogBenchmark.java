@@ -0,0 +1,92 @@
+package benchmarks;
+
+import core.Book;
+import core.CatalogStore;
+import core.DataBaseManager;
+import core.JsonManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Catalog hot paths: search, adding a book, loading the catalog from disk and saving it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int records;
+
+    private DataBaseManager dbm;
+    private CatalogStore catalog;
+    private String bookPath;
+    private String selectiveTerm;
+    private int added;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Fixtures.Dataset dataset = Fixtures.copyToTrialDirectory(Fixtures.dataset(records, 0));
+        bookPath = dataset.books().toString();
+        dbm = new DataBaseManager(bookPath, dataset.users().toString());
+        catalog = CatalogStore.forPath(bookPath);
+        List<Book> books = catalog.getBooks();
+        selectiveTerm = books.get(books.size() / 2).bookId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        catalog.invalidate();
+    }
+
+    /** Search matching a single book by its ID */
+    @Benchmark
+    public List<Book> findBooksSelective() {
+        return dbm.findBooks(selectiveTerm);
+    }
+
+    /** Search matching a large share of the catalog */
+    @Benchmark
+    public List<Book> findBooksBroad() {
+        return dbm.findBooks("history");
+    }
+
+    /** Search too short for the trigram index */
+    @Benchmark
+    public List<Book> findBooksShortTerm() {
+        return dbm.findBooks("mo");
+    }
+
+    /** Adds a new book, including the catalog write */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean addBook() {
+        added++;
+        return dbm.addBook("7", "Benchmark Title " + added, "Author, B.", "Benchmark Press", 1, 0);
+    }
+
+    /** Reads and indexes the catalog file from disk */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void loadCatalog(Blackhole blackhole) {
+        catalog.invalidate();
+        blackhole.consume(catalog.getBooks());
+    }
+
+    /** Serializes and writes the whole catalog */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean saveCatalog() {
+        synchronized (catalog) {
+            return JsonManager.saveBooks(catalog.getBooks(), bookPath);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package benchmarks;
+
+import core.DatasetGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Synthetic BookData.json / UserData.json fixtures for the benchmarks, produced by core.DatasetGenerator.
+ * Fixtures are generated once per size into a cache directory (the "benchmarks.fixtures" system
+ * property, default target/fixtures) and reused by later forks and runs. Benchmarks that modify
+ * data work on a private copy made by copyToTrialDirectory().
+ *
+ * User records are encrypted exactly like the application's own, so every user costs several
+ * PBKDF2 key derivations to generate; user fixtures are therefore limited to 10k records.
+ */
+public final class Fixtures {
+
+    /** Seed for all generated data, so fixtures are identical between runs */
+    private static final long SEED = 20250515L;
+
+    /** Loans generated per borrowing user */
+    private static final int LOANS_PER_USER = 2;
+
+    /** Share of generated loans that are overdue */
+    private static final double OVERDUE_RATIO = 0.1;
+
+    /** Largest user fixture generated */
+    public static final int MAX_USERS = 10_000;
+
+    static {
+        // Per-operation INFO logging would dominate the measurements
+        Logger root = Logger.getLogger("");
+        root.setLevel(Level.WARNING);
+        for (Handler handler : root.getHandlers()) {
+            handler.setLevel(Level.WARNING);
+        }
+    }
+
+    private Fixtures() {}
+
+    /**
+     * Generated data files of one size.
+     *
+     * @param books Path of the BookData.json fixture
+     * @param users Path of the UserData.json fixture
+     */
+    public record Dataset(Path books, Path users) {}
+
+    /**
+     * Returns the cached dataset with the given numbers of books and users, generating it if needed.
+     * User i logs in with DatasetGenerator.userId(i) and DatasetGenerator.password(i).
+     *
+     * @param books Number of books
+     * @param users Number of users (at most MAX_USERS)
+     * @return The dataset files
+     * @throws IOException if the fixture cannot be written
+     */
+    public static synchronized Dataset dataset(int books, int users) throws IOException {
+        if (users > MAX_USERS) {
+            throw new IllegalArgumentException("User fixtures are limited to " + MAX_USERS + " records");
+        }
+
+        Path directory = cacheDirectory().resolve(books + "-books-" + users + "-users");
+        Dataset dataset = new Dataset(directory.resolve("BookData.json"), directory.resolve("UserData.json"));
+        if (Files.exists(dataset.users())) {
+            return dataset;
+        }
+
+        // Generate into a temporary directory and move it into place, so an interrupted
+        // generation never leaves a partial fixture in the cache
+        Path temporary = Files.createTempDirectory(directory.getParent(), "generating");
+        DatasetGenerator generator = new DatasetGenerator(SEED, books, users, LOANS_PER_USER, OVERDUE_RATIO);
+        if (!generator.writeTo(temporary.toString())) {
+            throw new IOException("Failed to generate fixture: " + directory);
+        }
+        Files.move(temporary, directory, StandardCopyOption.ATOMIC_MOVE);
+        return dataset;
+    }
+
+    /**
+     * Copies a dataset into a fresh directory so a benchmark trial can modify it.
+     *
+     * @param dataset The cached dataset
+     * @return The copy, named BookData.json and UserData.json like the application's own files
+     * @throws IOException if the copy fails
+     */
+    public static Dataset copyToTrialDirectory(Dataset dataset) throws IOException {
+        Path directory = Files.createTempDirectory("library-manager-bench");
+        Dataset copy = new Dataset(directory.resolve("BookData.json"), directory.resolve("UserData.json"));
+        Files.copy(dataset.books(), copy.books());
+        Files.copy(dataset.users(), copy.users());
+        return copy;
+    }
+
+    /**
+     * @return The fixture cache directory, created if needed
+     * @throws IOException if the directory cannot be created
+     */
+    private static Path cacheDirectory() throws IOException {
+        Path directory = Paths.get(System.getProperty("benchmarks.fixtures", "target/fixtures")).toAbsolutePath();
+        Files.createDirectories(directory);
+        return directory;
+    }
+}
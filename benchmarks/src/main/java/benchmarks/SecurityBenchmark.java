@@ -0,0 +1,57 @@
+package benchmarks;
+
+import core.DatasetGenerator;
+import core.SecurityManager;
+import core.SessionManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Field encryption primitives. Every encrypt() draws a fresh salt and so always derives a key;
+ * decrypt() of a known ciphertext hits the key cache unless it is cleared first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecurityBenchmark {
+
+    private static final String PASSWORD = DatasetGenerator.password(0);
+    private static final String PLAINTEXT = "2025-05-15";
+
+    private String ciphertext;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ciphertext = SecurityManager.encrypt(PLAINTEXT, PASSWORD);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SessionManager.getInstance().getKeyCache().clear();
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return SecurityManager.encrypt(PLAINTEXT, PASSWORD);
+    }
+
+    @Benchmark
+    public String decryptWarm() {
+        return SecurityManager.decrypt(ciphertext, PASSWORD);
+    }
+
+    @Benchmark
+    public String decryptCold() {
+        SessionManager.getInstance().getKeyCache().clear();
+        return SecurityManager.decrypt(ciphertext, PASSWORD);
+    }
+
+    @Benchmark
+    public String computeLookupTag() {
+        return SecurityManager.computeLookupTag(DatasetGenerator.userId(0), PASSWORD);
+    }
+}
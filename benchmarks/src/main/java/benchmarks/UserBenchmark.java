@@ -0,0 +1,117 @@
+package benchmarks;
+
+import com.google.gson.JsonObject;
+import core.Book;
+import core.CatalogStore;
+import core.DataBaseManager;
+import core.DatasetGenerator;
+import core.JsonManager;
+import core.Loan;
+import core.SessionManager;
+import core.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User hot paths: login lookup, listing borrowed books, borrowing and returning, and saving the
+ * user file. User fixtures stop at 10k records because every generated user costs several PBKDF2
+ * derivations; the catalog behind them has 10k books.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserBenchmark {
+
+    /** Size of the catalog the user loans refer to */
+    private static final int CATALOG_SIZE = 10_000;
+
+    @Param({"1000", "10000"})
+    public int records;
+
+    private DataBaseManager dbm;
+    private String bookPath;
+    private String userPath;
+    private String userId;
+    private String password;
+    private String borrowShelf;
+    private String borrowTitle;
+    private String borrowBookId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Fixtures.Dataset dataset = Fixtures.copyToTrialDirectory(Fixtures.dataset(CATALOG_SIZE, records));
+        bookPath = dataset.books().toString();
+        userPath = dataset.users().toString();
+        dbm = new DataBaseManager(bookPath, userPath);
+
+        // A student in the middle of the file, so legacy scans would have to look at half of it
+        int index = records / 2;
+        while (!DatasetGenerator.userType(index).equals("Students")) {
+            index++;
+        }
+        userId = DatasetGenerator.userId(index);
+        password = DatasetGenerator.password(index);
+
+        // A book the student has not borrowed, from the quiet end of the catalog
+        Set<String> borrowed = new HashSet<>();
+        for (Loan loan : dbm.findBorrowedBooks(userId, password)) {
+            borrowed.add(loan.bookId());
+        }
+        List<Book> books = CatalogStore.forPath(bookPath).getBooks();
+        for (int i = books.size() - 1; borrowBookId == null; i--) {
+            Book book = books.get(i);
+            if (!borrowed.contains(book.bookId()) && book.available() > 0) {
+                borrowBookId = book.bookId();
+                borrowShelf = String.valueOf(book.shelfNumber());
+                borrowTitle = book.title();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        CatalogStore.forPath(bookPath).invalidate();
+        SessionManager.getInstance().getKeyCache().clear();
+    }
+
+    /** Login lookup with the user's keys already derived */
+    @Benchmark
+    public User findUserWarm() {
+        return dbm.findUser(userId, password);
+    }
+
+    /** Login lookup paying for every key derivation, as on a first login */
+    @Benchmark
+    public User findUserCold() {
+        SessionManager.getInstance().getKeyCache().clear();
+        return dbm.findUser(userId, password);
+    }
+
+    /** Lists and decrypts the user's loans */
+    @Benchmark
+    public List<Loan> findBorrowedBooks() {
+        return dbm.findBorrowedBooks(userId, password);
+    }
+
+    /** Borrows a book and returns it again, leaving the data unchanged */
+    @Benchmark
+    public boolean borrowAndReturn() {
+        return dbm.borrowBook(userId, borrowShelf, borrowTitle, password)
+                & dbm.returnBook(userId, borrowBookId, password);
+    }
+
+    /** Serializes and writes the whole user file */
+    @Benchmark
+    public boolean saveUserFile() {
+        JsonObject userData = JsonManager.readUserData(userPath);
+        return JsonManager.saveJsonFile(userData, userPath);
+    }
+}
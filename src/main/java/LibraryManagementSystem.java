@@ -1,5 +1,7 @@
 import core.LoggingManager;
+import core.PersistenceExecutor;
 import core.ResourceManager;
+import core.SqlStorageEngine;
 import ui.GUI;
 import core.AppDataManager;
 
@@ -62,6 +64,8 @@ public class LibraryManagementSystem {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             logger.info("=== Library Management System Shutting Down ===");
             logger.info("Performing cleanup operations...");
+            PersistenceExecutor.shutdown();
+            SqlStorageEngine.closeAll();
             LoggingManager.flushLogs();
             logger.info("Shutdown completed");
         }));
@@ -0,0 +1,69 @@
+package core;
+
+import java.util.Locale;
+
+/**
+ * One catalog entry. Books are immutable: an edit or availability change replaces the book in
+ * core.CatalogStore with an updated copy. The shelf number is derived from the ID once, when the
+ * book is created. Books are read from and written to BookData.json by core.BookTypeAdapter.
+ *
+ * @param bookId The book ID (shelf code followed by six digits)
+ * @param title The title
+ * @param author The author
+ * @param publisher The publisher
+ * @param available Copies available for borrowing
+ * @param onLoan Copies currently on loan
+ * @param shelfNumber Shelf number encoded in the ID, or -1 if the ID has no shelf code
+ */
+public record Book(String bookId, String title, String author, String publisher, int available, int onLoan, int shelfNumber) {
+
+    /**
+     * Creates a book, deriving the shelf number from its ID.
+     *
+     * @param bookId The book ID
+     * @param title The title
+     * @param author The author
+     * @param publisher The publisher
+     * @param available Copies available for borrowing
+     * @param onLoan Copies currently on loan
+     */
+    public Book(String bookId, String title, String author, String publisher, int available, int onLoan) {
+        this(bookId, title, author, publisher, available, onLoan, bookId != null ? DataBaseManager.shelfNumberOf(bookId) : -1);
+    }
+
+    /**
+     * @param available The new number of available copies
+     * @param onLoan The new number of copies on loan
+     * @return A copy of this book with the given counts
+     */
+    public Book withCounts(int available, int onLoan) {
+        return new Book(bookId, title, author, publisher, available, onLoan, shelfNumber);
+    }
+
+    /**
+     * @return The ID encoded with core.BookId, or BookId.INVALID if it does not follow the format
+     */
+    public long code() {
+        return bookId != null ? BookId.encode(bookId) : BookId.INVALID;
+    }
+
+    /**
+     * Normalizes a title for exact, case-insensitive title lookups; every storage engine compares
+     * titles through this key. The title is upper-cased and then lower-cased, so letters with more
+     * than one lower-case form (such as final sigma) and letters that lower-case to more than one
+     * character (such as dotted capital I) compare the same way wherever the key is computed.
+     *
+     * @param title A book title, or null
+     * @return The lookup key of the title, or null
+     */
+    public static String titleKey(String title) {
+        return title != null ? title.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * @return true if the ID, title, author and publisher are all present
+     */
+    public boolean isComplete() {
+        return bookId != null && title != null && author != null && publisher != null;
+    }
+}
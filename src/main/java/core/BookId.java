@@ -0,0 +1,128 @@
+package core;
+
+/**
+ * Packs book IDs into primitive longs.
+ * A book ID is a shelf code of one or two capital letters (A-Z for shelves 1-26, AA-ZZ for
+ * shelves 27-702, see DataBaseManager.generateShelfCode()) followed by a six-digit number, so it
+ * maps losslessly to shelfNumber * 1,000,000 + number. Encoded IDs can be compared, hashed and
+ * stored in primitive collections such as core.LongIntHashMap without allocating Strings or boxing,
+ * and the shelf number is a division.
+ *
+ * IDs that do not follow the format (for example hand-edited catalog files) encode to INVALID;
+ * callers keep such IDs as Strings.
+ */
+public final class BookId {
+
+    /** Encoding of an ID that does not follow the shelf code plus six digits format */
+    public static final long INVALID = -1;
+
+    /** Highest shelf number a two-letter shelf code can express */
+    public static final int MAX_SHELF = 702;
+
+    /** Number of distinct six-digit numbers per shelf */
+    private static final int NUMBERS_PER_SHELF = 1_000_000;
+
+    /** Digits after the shelf code */
+    private static final int NUMBER_DIGITS = 6;
+
+    private BookId() {}
+
+    /**
+     * Encodes a book ID. Reads the characters in place; nothing is allocated.
+     *
+     * @param bookId The book ID, for example "C901411"
+     * @return The encoded ID, or INVALID if the ID does not follow the format
+     */
+    public static long encode(CharSequence bookId) {
+        int length = bookId.length();
+        int shelfNumber = 0;
+        int letters = 0;
+
+        while (letters < 2 && letters < length) {
+            char c = bookId.charAt(letters);
+            if (c < 'A' || c > 'Z') break;
+            shelfNumber = shelfNumber * 26 + (c - 'A' + 1);
+            letters++;
+        }
+        if (letters == 0 || length - letters != NUMBER_DIGITS) {
+            return INVALID;
+        }
+
+        int number = 0;
+        for (int i = letters; i < length; i++) {
+            char c = bookId.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return of(shelfNumber, number);
+    }
+
+    /**
+     * @param shelfNumber The shelf number (1-702)
+     * @param number The six-digit number (0-999999)
+     * @return The encoded ID, or INVALID if either part is out of range
+     */
+    public static long of(int shelfNumber, int number) {
+        if (shelfNumber < 1 || shelfNumber > MAX_SHELF || number < 0 || number >= NUMBERS_PER_SHELF) {
+            return INVALID;
+        }
+        return (long) shelfNumber * NUMBERS_PER_SHELF + number;
+    }
+
+    /**
+     * @param code An encoded ID
+     * @return The shelf number of the ID
+     */
+    public static int shelfNumber(long code) {
+        return (int) (code / NUMBERS_PER_SHELF);
+    }
+
+    /**
+     * @param code An encoded ID
+     * @return The six-digit number of the ID
+     */
+    public static int number(long code) {
+        return (int) (code % NUMBERS_PER_SHELF);
+    }
+
+    /**
+     * Turns an encoded ID back into its String form. Allocates; meant for display and persistence.
+     *
+     * @param code An encoded ID
+     * @return The book ID, for example "C901411"
+     * @throws IllegalArgumentException if the code is not a valid encoded ID
+     */
+    public static String toString(long code) {
+        String shelfCode = shelfCode(shelfNumber(code));
+        if (code < 0 || shelfCode == null) {
+            throw new IllegalArgumentException("Not an encoded book ID: " + code);
+        }
+
+        char[] chars = new char[shelfCode.length() + NUMBER_DIGITS];
+        shelfCode.getChars(0, shelfCode.length(), chars, 0);
+        int number = number(code);
+        for (int i = chars.length - 1; i >= shelfCode.length(); i--) {
+            chars[i] = (char) ('0' + number % 10);
+            number /= 10;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @param shelfNumber The shelf number (1-based)
+     * @return The shelf code (A-Z, AA-ZZ), or null if the shelf number is out of range
+     */
+    public static String shelfCode(int shelfNumber) {
+        if (shelfNumber <= 0 || shelfNumber > MAX_SHELF) {
+            return null;
+        }
+        if (shelfNumber <= 26) {
+            return String.valueOf((char) ('A' + shelfNumber - 1));
+        }
+        int firstChar = (shelfNumber - 27) / 26 + 'A';
+        int secondChar = (shelfNumber - 27) % 26 + 'A';
+        return String.valueOf((char) firstChar) + (char) secondChar;
+    }
+}
@@ -0,0 +1,103 @@
+package core;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gson type adapter between core.Book and its BookData.json record:
+ * {"BookID", "Title", "Author", "Publisher", "Available", "OnLoan"}.
+ * Unknown properties are skipped; missing text fields read as null and missing counts as 0.
+ *
+ * A few authors and publishers account for most of a catalog, so an adapter used for reading can
+ * share one String instance per distinct author and publisher across all books it reads.
+ * Such an adapter holds state and must only be used for one load on one thread.
+ */
+public class BookTypeAdapter extends TypeAdapter<Book> {
+
+    /** Distinct author and publisher strings seen so far, or null if strings are not shared */
+    private final Map<String, String> sharedStrings;
+
+    /**
+     * Creates a stateless adapter that does not share strings.
+     */
+    public BookTypeAdapter() {
+        this(false);
+    }
+
+    /**
+     * @param shareStrings Whether to share author and publisher strings across the books read
+     */
+    public BookTypeAdapter(boolean shareStrings) {
+        this.sharedStrings = shareStrings ? new HashMap<>() : null;
+    }
+
+    @Override
+    public void write(JsonWriter out, Book book) throws IOException {
+        if (book == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("BookID").value(book.bookId());
+        out.name("Title").value(book.title());
+        out.name("Author").value(book.author());
+        out.name("Publisher").value(book.publisher());
+        out.name("Available").value(book.available());
+        out.name("OnLoan").value(book.onLoan());
+        out.endObject();
+    }
+
+    @Override
+    public Book read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String bookId = null;
+        String title = null;
+        String author = null;
+        String publisher = null;
+        int available = 0;
+        int onLoan = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "BookID" -> bookId = in.nextString();
+                case "Title" -> title = in.nextString();
+                case "Author" -> author = share(in.nextString());
+                case "Publisher" -> publisher = share(in.nextString());
+                case "Available" -> available = in.nextInt();
+                case "OnLoan" -> onLoan = in.nextInt();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new Book(bookId, title, author, publisher, available, onLoan);
+    }
+
+    /**
+     * @param value A string just read
+     * @return The shared instance equal to the string, if strings are shared
+     */
+    private String share(String value) {
+        if (sharedStrings == null) {
+            return value;
+        }
+        String shared = sharedStrings.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+}
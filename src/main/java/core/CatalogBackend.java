@@ -0,0 +1,79 @@
+package core;
+
+import java.util.List;
+
+/**
+ * In-memory form of a loaded catalog, owned by core.CatalogStore.
+ * The store decides when a catalog is loaded, reloaded and saved; a backend only holds the books
+ * and answers lookups and searches over them. core.HeapCatalog keeps core.Book records on the
+ * heap with a trigram search index; core.OffHeapCatalog keeps them in native memory.
+ *
+ * Backends are not thread-safe; the store's monitor guards them.
+ */
+public interface CatalogBackend {
+
+    /**
+     * @return Read-only view of the catalog in catalog order; reflects later changes
+     */
+    List<Book> books();
+
+    /**
+     * @param bookId The ID of the book
+     * @return The book, or null if no such book exists
+     */
+    Book findById(String bookId);
+
+    /**
+     * @param code The ID of the book, encoded with core.BookId
+     * @return The book, or null if no such book exists
+     */
+    Book findById(long code);
+
+    /**
+     * Appends a book to the catalog.
+     *
+     * @param book The new book
+     * @return true if the book was added, false if its ID already exists
+     */
+    boolean add(Book book);
+
+    /**
+     * Replaces a book with an updated copy at the same catalog position.
+     *
+     * @param current The book as returned by this backend
+     * @param updated The updated book
+     * @return true if the book was replaced, false if it is not part of the catalog
+     *         or another book already uses the updated ID
+     */
+    boolean replace(Book current, Book updated);
+
+    /**
+     * Removes a book from the catalog.
+     *
+     * @param book The book as returned by this backend
+     * @return true if the book was removed, false if it is not part of the catalog
+     */
+    boolean remove(Book book);
+
+    /**
+     * Finds books whose ID, title, author, publisher or shelf number contains the search term,
+     * ignoring case. An empty term matches every book.
+     *
+     * @param searchTerm The term to search for
+     * @return Matching books in catalog order
+     */
+    List<Book> search(String searchTerm);
+
+    /**
+     * Takes a copy of the catalog that later changes do not affect, to be saved by
+     * core.PersistenceExecutor.
+     *
+     * @return An immutable list of the books in catalog order
+     */
+    List<Book> snapshot();
+
+    /**
+     * Releases the memory held by the backend. It must not be used afterwards.
+     */
+    void close();
+}
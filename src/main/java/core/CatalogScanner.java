@@ -0,0 +1,120 @@
+package core;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Pull-based, single-pass scan over a BookData.json file.
+ * Books are parsed one at a time with a JsonReader into core.Book records, so memory
+ * use stays constant however large the catalog is. The caller may stop at any point and close the
+ * scanner, so a lookup that finds its book early reads only part of the file.
+ *
+ * Intended for one-off passes (search, export, reconciliation) when the catalog is not resident
+ * in core.CatalogStore. The scan reads the file as it is on disk; callers should make sure no save
+ * of the file is queued in core.PersistenceExecutor.
+ *
+ * Usage:
+ * <pre>
+ * try (CatalogScanner scanner = CatalogScanner.open(path)) {
+ *     while (scanner.hasNext()) {
+ *         Book book = scanner.next();
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * I/O and format errors during the scan are thrown as UncheckedIOException.
+ */
+public class CatalogScanner implements Iterator<Book>, Closeable {
+
+    /** Size of the character buffer under the JsonReader */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /** The reader positioned inside the top-level array */
+    private final JsonReader reader;
+
+    /** Reads each record; does not share strings, so nothing accumulates over the scan */
+    private final BookTypeAdapter adapter = new BookTypeAdapter();
+
+    /**
+     * @param reader A JsonReader positioned inside the top-level array
+     */
+    private CatalogScanner(JsonReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Opens a catalog file for scanning.
+     *
+     * @param bookDatabasePath Path to the book database file
+     * @return A scanner positioned before the first book; close it when done
+     * @throws IOException if the file cannot be opened or does not contain a JSON array
+     */
+    public static CatalogScanner open(String bookDatabasePath) throws IOException {
+        BufferedReader input = new BufferedReader(
+                Files.newBufferedReader(Paths.get(bookDatabasePath), StandardCharsets.UTF_8), READ_BUFFER_SIZE);
+        JsonReader reader = new JsonReader(input);
+        try {
+            reader.beginArray();
+        } catch (IOException | IllegalStateException e) {
+            reader.close();
+            throw new IOException("Not a book catalog: " + bookDatabasePath, e);
+        }
+        return new CatalogScanner(reader);
+    }
+
+    /**
+     * @return true if another book follows
+     * @throws UncheckedIOException if the file cannot be read
+     */
+    @Override
+    public boolean hasNext() {
+        try {
+            return reader.hasNext();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the next book.
+     *
+     * @return The next book
+     * @throws NoSuchElementException if the catalog has no more books
+     * @throws UncheckedIOException if the file cannot be read or a record is malformed
+     */
+    @Override
+    public Book next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        try {
+            Book book = adapter.read(reader);
+            if (book == null) {
+                throw new IOException("Null book record");
+            }
+            return book;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new UncheckedIOException(e instanceof IOException io ? io : new IOException("Malformed book record", e));
+        }
+    }
+
+    /**
+     * Closes the underlying file.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
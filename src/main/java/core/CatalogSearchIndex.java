@@ -0,0 +1,293 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trigram inverted index over the searchable fields of a resident catalog.
+ * Each book is given an ordinal in catalog order, and its title, author, publisher, ID and shelf
+ * number are stored lowercased once. Every three-character sequence of those fields maps to the
+ * sorted list of ordinals containing it. A search intersects the lists for the trigrams of the
+ * search term and then confirms each candidate with the same contains() check findBooks has
+ * always used, so results and their order are unchanged. Terms shorter than three characters
+ * fall back to a scan over the pre-normalized fields.
+ *
+ * The index is owned by core.CatalogStore, which keeps it in step with the resident catalog.
+ * It is not thread-safe on its own; the store's monitor guards it.
+ */
+public class CatalogSearchIndex {
+
+    /** Lowercased searchable fields per ordinal, or null for removed books */
+    private final List<String[]> fields = new ArrayList<>();
+
+    /** Book per ordinal, or null for removed books */
+    private final List<Book> records = new ArrayList<>();
+
+    /** Ordinal of every indexed book, by identity */
+    private final Map<Book, Integer> ordinals = new IdentityHashMap<>();
+
+    /** Packed trigram to sorted ordinals containing it */
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    /**
+     * Sorted, growable list of ordinals for one trigram.
+     */
+    private static final class Postings {
+        int[] ordinals = new int[4];
+        int size;
+
+        void add(int ordinal) {
+            int index;
+            if (size == 0 || ordinals[size - 1] < ordinal) {
+                index = size; // Common case: books are indexed in catalog order
+            } else {
+                index = Arrays.binarySearch(ordinals, 0, size, ordinal);
+                if (index >= 0) return;
+                index = -index - 1;
+            }
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            System.arraycopy(ordinals, index, ordinals, index + 1, size - index);
+            ordinals[index] = ordinal;
+            size++;
+        }
+
+        void remove(int ordinal) {
+            int index = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (index < 0) return;
+            System.arraycopy(ordinals, index + 1, ordinals, index, size - index - 1);
+            size--;
+        }
+    }
+
+    /**
+     * Adds a book at the end of the catalog order.
+     *
+     * @param book The book
+     */
+    public void add(Book book) {
+        int ordinal = records.size();
+        String[] bookFields = normalize(book);
+        records.add(book);
+        fields.add(bookFields);
+        ordinals.put(book, ordinal);
+        addTrigrams(ordinal, bookFields);
+    }
+
+    /**
+     * Replaces a book with an updated copy, which takes over its position in the catalog order.
+     * Trigrams are only re-indexed if a searchable field changed.
+     *
+     * @param current The indexed book
+     * @param updated The updated book
+     */
+    public void replace(Book current, Book updated) {
+        Integer ordinal = ordinals.remove(current);
+        if (ordinal == null) {
+            add(updated);
+            return;
+        }
+        records.set(ordinal, updated);
+        ordinals.put(updated, ordinal);
+
+        String[] oldFields = fields.get(ordinal);
+        String[] bookFields = normalize(updated);
+        if (!Arrays.equals(oldFields, bookFields)) {
+            removeTrigrams(ordinal, oldFields);
+            fields.set(ordinal, bookFields);
+            addTrigrams(ordinal, bookFields);
+        }
+    }
+
+    /**
+     * Removes a book from the index.
+     *
+     * @param book The book
+     */
+    public void remove(Book book) {
+        Integer ordinal = ordinals.remove(book);
+        if (ordinal == null) return;
+        removeTrigrams(ordinal, fields.get(ordinal));
+        fields.set(ordinal, null);
+        records.set(ordinal, null);
+    }
+
+    /**
+     * Empties the index.
+     */
+    public void clear() {
+        fields.clear();
+        records.clear();
+        ordinals.clear();
+        postings.clear();
+    }
+
+    /**
+     * Finds books whose ID, title, author, publisher or shelf number contains the search term,
+     * ignoring case. An empty term matches every book.
+     *
+     * @param searchTerm The term to search for
+     * @return Matching books in catalog order
+     */
+    public List<Book> search(String searchTerm) {
+        List<Book> matches = new ArrayList<>();
+        String term = searchTerm.toLowerCase();
+
+        if (term.length() < 3) {
+            for (int ordinal = 0; ordinal < records.size(); ordinal++) {
+                String[] bookFields = fields.get(ordinal);
+                if (bookFields != null && (term.isEmpty() || containsTerm(bookFields, term))) {
+                    matches.add(records.get(ordinal));
+                }
+            }
+            return matches;
+        }
+
+        // Collect the posting lists of the term's trigrams, smallest first
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + 3 <= term.length(); i++) {
+            Postings list = postings.get(trigram(term, i));
+            if (list == null || list.size == 0) {
+                return matches;
+            }
+            if (!lists.contains(list)) {
+                lists.add(list);
+            }
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+        Postings smallest = lists.getFirst();
+        int[] cursors = new int[lists.size()];
+        candidates:
+        for (int c = 0; c < smallest.size; c++) {
+            int ordinal = smallest.ordinals[c];
+            for (int l = 1; l < lists.size(); l++) {
+                Postings list = lists.get(l);
+                int index = Arrays.binarySearch(list.ordinals, cursors[l], list.size, ordinal);
+                if (index >= 0) {
+                    cursors[l] = index;
+                    continue;
+                }
+                cursors[l] = -index - 1;
+                if (cursors[l] == list.size) break candidates;
+                continue candidates;
+            }
+
+            if (containsTerm(fields.get(ordinal), term)) {
+                matches.add(records.get(ordinal));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Checks one book against a search term the same way search() does, without an index.
+     *
+     * @param book The book
+     * @param term The lowercased search term
+     * @return true if the book's ID, title, author, publisher or shelf number contains the term
+     */
+    public static boolean matches(Book book, String term) {
+        return containsTerm(normalize(book), term);
+    }
+
+    /**
+     * @return The number of books currently indexed
+     */
+    public int size() {
+        return ordinals.size();
+    }
+
+    /**
+     * Checks the lowercased fields of one book against a lowercased term.
+     * The shelf number holds only digits and '-', which lowercasing leaves unchanged,
+     * so comparing it with the lowercased term is the same as comparing it with the original.
+     *
+     * @param bookFields The normalized fields of a book
+     * @param term The lowercased search term
+     * @return true if any field contains the term
+     */
+    private static boolean containsTerm(String[] bookFields, String term) {
+        for (String field : bookFields) {
+            if (field.contains(term)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Extracts and lowercases the searchable fields of a book.
+     *
+     * @param book The book
+     * @return Title, author, publisher, book ID and shelf number
+     */
+    private static String[] normalize(Book book) {
+        return new String[] {
+                lowerCase(book.title()),
+                lowerCase(book.author()),
+                lowerCase(book.publisher()),
+                book.bookId().toLowerCase(),
+                String.valueOf(book.shelfNumber())
+        };
+    }
+
+    /**
+     * @param text A field value, possibly missing
+     * @return The lowercased value, or "" if it is missing
+     */
+    private static String lowerCase(String text) {
+        return text != null ? text.toLowerCase() : "";
+    }
+
+    /**
+     * Adds an ordinal to the posting list of every trigram of its fields.
+     *
+     * @param ordinal The book's ordinal
+     * @param bookFields The book's normalized fields
+     */
+    private void addTrigrams(int ordinal, String[] bookFields) {
+        for (String field : bookFields) {
+            for (int i = 0; i + 3 <= field.length(); i++) {
+                postings.computeIfAbsent(trigram(field, i), _ -> new Postings()).add(ordinal);
+            }
+        }
+    }
+
+    /**
+     * Removes an ordinal from the posting list of every trigram of its fields.
+     *
+     * @param ordinal The book's ordinal
+     * @param bookFields The book's normalized fields
+     */
+    private void removeTrigrams(int ordinal, String[] bookFields) {
+        for (String field : bookFields) {
+            for (int i = 0; i + 3 <= field.length(); i++) {
+                long key = trigram(field, i);
+                Postings list = postings.get(key);
+                if (list != null) {
+                    list.remove(ordinal);
+                    if (list.size == 0) {
+                        postings.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs the three characters starting at an offset into a single key.
+     *
+     * @param text The text
+     * @param offset The offset of the first character
+     * @return The packed trigram
+     */
+    private static long trigram(String text, int offset) {
+        return ((long) text.charAt(offset) << 32) | ((long) text.charAt(offset + 1) << 16) | text.charAt(offset + 2);
+    }
+}
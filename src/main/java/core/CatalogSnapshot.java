@@ -0,0 +1,335 @@
+package core;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary copy of a book catalog, kept next to its JSON file (BookData.json → BookData.bin) so a
+ * launch can load the catalog without parsing JSON. The JSON file stays authoritative: the snapshot
+ * records the modification time and size of the JSON file it was taken from, and is only used
+ * while they still match and its checksum is intact.
+ *
+ * The body is a core.OffHeapCatalog image: a table of fixed-width records (encoded ID, shelf,
+ * Available, OnLoan and the offset and length of each text field), the UTF-8 text they point
+ * into, and the hash table from encoded ID to record. Layout:
+ * <pre>
+ * header   (128 bytes, big-endian)  magic "LMCS", format version, byte order of the body, flags,
+ *                                   source modification time (ns since the epoch), source size,
+ *                                   record count, IDs in the hash table, offset and length of the
+ *                                   records, text and hash table, CRC32C of the body
+ * records  (native byte order)
+ * text
+ * hash table (native byte order)
+ * </pre>
+ * The file is memory-mapped. core.OffHeapCatalog copies the image as it is, without decoding;
+ * the heap catalog decodes the records straight from the mapping. A snapshot written on a machine
+ * with a different byte order is ignored. The mapping belongs to the thread that opened the
+ * snapshot; use and close it on that thread.
+ */
+public class CatalogSnapshot implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(CatalogSnapshot.class.getName());
+
+    /** "LMCS" */
+    private static final int MAGIC = 0x4C4D4353;
+
+    /** Incremented whenever the layout changes; snapshots of other versions are ignored */
+    private static final int VERSION = 1;
+
+    /** Header size and the offset of each header field */
+    private static final int HEADER_BYTES = 128;
+    private static final long VERSION_FIELD = 4;
+    private static final long BYTE_ORDER = 8;
+    private static final long FLAGS = 12;
+    private static final long SOURCE_MODIFIED = 16;
+    private static final long SOURCE_SIZE = 24;
+    private static final long RECORD_COUNT = 32;
+    private static final long SLOTS_USED = 36;
+    private static final long RECORDS_OFFSET = 40;
+    private static final long RECORDS_LENGTH = 48;
+    private static final long TEXT_OFFSET = 56;
+    private static final long TEXT_LENGTH = 64;
+    private static final long SLOTS_OFFSET = 72;
+    private static final long SLOTS_LENGTH = 80;
+    private static final long CHECKSUM = 88;
+
+    /** Flag set when the catalog contains the same BookID more than once */
+    private static final int DUPLICATE_IDS = 1;
+
+    /** Values of the byte order field */
+    private static final int BIG_ENDIAN = 0;
+    private static final int LITTLE_ENDIAN = 1;
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+
+    /** Largest slice checksummed at once; a ByteBuffer cannot span more than 2 GB */
+    private static final long CHECKSUM_CHUNK_BYTES = 1L << 30;
+
+    private final Arena arena;
+    private final MemorySegment segment;
+
+    /**
+     * @param arena The arena owning the mapping
+     * @param segment The mapped, verified snapshot
+     */
+    private CatalogSnapshot(Arena arena, MemorySegment segment) {
+        this.arena = arena;
+        this.segment = segment;
+    }
+
+    /**
+     * @param bookDatabasePath Path of the catalog's JSON file
+     * @return Path of its binary snapshot
+     */
+    public static Path snapshotPathFor(String bookDatabasePath) {
+        Path path = Paths.get(bookDatabasePath);
+        String name = path.getFileName().toString();
+        String base = name.endsWith(".json") ? name.substring(0, name.length() - ".json".length()) : name;
+        return path.resolveSibling(base + ".bin");
+    }
+
+    /**
+     * Maps the snapshot of a catalog if it is current: it exists, has this format version and byte
+     * order, was taken from the JSON file as it is now and its checksum matches.
+     *
+     * @param bookDatabasePath Path of the catalog's JSON file
+     * @param source Current attributes of the JSON file
+     * @return The mapped snapshot, or null if there is no usable snapshot
+     */
+    public static CatalogSnapshot open(String bookDatabasePath, BasicFileAttributes source) {
+        Path snapshotPath = snapshotPathFor(bookDatabasePath);
+        // Confined: the checksum reads the mapping through a ByteBuffer, which shared arenas do not allow
+        Arena arena = Arena.ofConfined();
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                logger.log(Level.WARNING, "Catalog snapshot is truncated, ignoring it: " + snapshotPath);
+                arena.close();
+                return null;
+            }
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, size, arena);
+
+            String problem = validate(segment, source);
+            if (problem != null) {
+                logger.log(Level.INFO, "Not using catalog snapshot " + snapshotPath + ": " + problem);
+                arena.close();
+                return null;
+            }
+            return new CatalogSnapshot(arena, segment);
+        } catch (NoSuchFileException e) {
+            arena.close();
+            return null;
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to map catalog snapshot: " + snapshotPath, e);
+            arena.close();
+            return null;
+        }
+    }
+
+    /**
+     * @param segment A mapped snapshot file
+     * @param source Current attributes of the JSON file
+     * @return Why the snapshot cannot be used, or null if it can
+     */
+    private static String validate(MemorySegment segment, BasicFileAttributes source) {
+        if (segment.get(INT, 0) != MAGIC) {
+            return "not a catalog snapshot";
+        }
+        if (segment.get(INT, VERSION_FIELD) != VERSION) {
+            return "format version " + segment.get(INT, VERSION_FIELD);
+        }
+        if (segment.get(INT, BYTE_ORDER) != byteOrderField()) {
+            return "written on a machine with a different byte order";
+        }
+        if (segment.get(LONG, SOURCE_MODIFIED) != source.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+                || segment.get(LONG, SOURCE_SIZE) != source.size()) {
+            return "the catalog file changed since it was taken";
+        }
+
+        long size = segment.byteSize();
+        if (segment.get(INT, RECORD_COUNT) < 0
+                || !inBounds(segment.get(LONG, RECORDS_OFFSET), segment.get(LONG, RECORDS_LENGTH), size)
+                || !inBounds(segment.get(LONG, TEXT_OFFSET), segment.get(LONG, TEXT_LENGTH), size)
+                || !inBounds(segment.get(LONG, SLOTS_OFFSET), segment.get(LONG, SLOTS_LENGTH), size)) {
+            return "inconsistent header";
+        }
+
+        CRC32C crc = new CRC32C();
+        for (long position = HEADER_BYTES; position < size; position += CHECKSUM_CHUNK_BYTES) {
+            crc.update(segment.asSlice(position, Math.min(CHECKSUM_CHUNK_BYTES, size - position)).asByteBuffer());
+        }
+        if (crc.getValue() != segment.get(LONG, CHECKSUM)) {
+            return "checksum mismatch";
+        }
+        return null;
+    }
+
+    /**
+     * @param offset Offset of a section
+     * @param length Length of the section
+     * @param size Size of the file
+     * @return true if the section lies within the body
+     */
+    private static boolean inBounds(long offset, long length, long size) {
+        return offset >= HEADER_BYTES && length >= 0 && offset <= size - length;
+    }
+
+    /**
+     * @return The number of books in the snapshot
+     */
+    public int size() {
+        return segment.get(INT, RECORD_COUNT);
+    }
+
+    /**
+     * Decodes every book, sharing author and publisher strings between them as
+     * JsonManager.readBooks() does.
+     *
+     * @return A new, modifiable list of the books in catalog order
+     */
+    public List<Book> readAll() {
+        return OffHeapCatalog.readBooks(section(RECORDS_OFFSET, RECORDS_LENGTH), section(TEXT_OFFSET, TEXT_LENGTH), new HashMap<>());
+    }
+
+    /**
+     * Copies the snapshot into a new core.OffHeapCatalog without decoding it.
+     *
+     * @param directory Directory for the catalog's mapped files, or null to use anonymous memory
+     * @return The catalog
+     * @throws IllegalArgumentException if the snapshot's sections do not fit together
+     */
+    public OffHeapCatalog toOffHeapCatalog(Path directory) {
+        return OffHeapCatalog.fromImage(section(RECORDS_OFFSET, RECORDS_LENGTH), section(TEXT_OFFSET, TEXT_LENGTH),
+                section(SLOTS_OFFSET, SLOTS_LENGTH), segment.get(INT, SLOTS_USED),
+                (segment.get(INT, FLAGS) & DUPLICATE_IDS) != 0, directory);
+    }
+
+    /**
+     * Unmaps the snapshot. Books already decoded stay valid.
+     */
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    /**
+     * @param offsetField Header field holding the section's offset
+     * @param lengthField Header field holding the section's length
+     * @return The section of the mapping
+     */
+    private MemorySegment section(long offsetField, long lengthField) {
+        return segment.asSlice(segment.get(LONG, offsetField), segment.get(LONG, lengthField));
+    }
+
+    /**
+     * Writes the snapshot of a catalog into a temporary file next to it, forces it to disk and
+     * atomically renames it into place. A failed write removes any older snapshot, so it cannot be
+     * mistaken for the current one.
+     *
+     * @param books The books, in catalog order
+     * @param bookDatabasePath Path of the catalog's JSON file
+     * @param source Attributes of the JSON file the books were written to or read from
+     * @return true if the snapshot was written, false otherwise
+     */
+    public static boolean write(List<Book> books, String bookDatabasePath, BasicFileAttributes source) {
+        Path path = snapshotPathFor(bookDatabasePath);
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        OffHeapCatalog image = null;
+        try {
+            image = OffHeapCatalog.build(books, null);
+            MemorySegment records = image.rowImage();
+            MemorySegment text = image.textImage();
+            MemorySegment slots = image.slotImage();
+
+            long recordsOffset = HEADER_BYTES;
+            long textOffset = recordsOffset + records.byteSize();
+            long slotsOffset = align(textOffset + text.byteSize());
+            long size = slotsOffset + slots.byteSize();
+
+            try (Arena arena = Arena.ofConfined();
+                 FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MemorySegment file = channel.map(FileChannel.MapMode.READ_WRITE, 0, size, arena);
+                MemorySegment.copy(records, 0, file, recordsOffset, records.byteSize());
+                MemorySegment.copy(text, 0, file, textOffset, text.byteSize());
+                MemorySegment.copy(slots, 0, file, slotsOffset, slots.byteSize());
+
+                file.set(INT, 0, MAGIC);
+                file.set(INT, VERSION_FIELD, VERSION);
+                file.set(INT, BYTE_ORDER, byteOrderField());
+                file.set(INT, FLAGS, image.hasDuplicateIds() ? DUPLICATE_IDS : 0);
+                file.set(LONG, SOURCE_MODIFIED, source.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+                file.set(LONG, SOURCE_SIZE, source.size());
+                file.set(INT, RECORD_COUNT, books.size());
+                file.set(INT, SLOTS_USED, image.slotsUsed());
+                file.set(LONG, RECORDS_OFFSET, recordsOffset);
+                file.set(LONG, RECORDS_LENGTH, records.byteSize());
+                file.set(LONG, TEXT_OFFSET, textOffset);
+                file.set(LONG, TEXT_LENGTH, text.byteSize());
+                file.set(LONG, SLOTS_OFFSET, slotsOffset);
+                file.set(LONG, SLOTS_LENGTH, slots.byteSize());
+
+                CRC32C crc = new CRC32C();
+                for (long position = HEADER_BYTES; position < size; position += CHECKSUM_CHUNK_BYTES) {
+                    crc.update(file.asSlice(position, Math.min(CHECKSUM_CHUNK_BYTES, size - position)).asByteBuffer());
+                }
+                file.set(LONG, CHECKSUM, crc.getValue());
+                file.force();
+            }
+
+            try {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            logger.log(Level.FINE, "Saved catalog snapshot: " + books.size() + " books to " + path);
+            return true;
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Failed to save catalog snapshot, removing it: " + path, e);
+            try {
+                Files.deleteIfExists(tempPath);
+                Files.deleteIfExists(path);
+            } catch (IOException cleanupError) {
+                logger.log(Level.WARNING, "Failed to remove catalog snapshot: " + path, cleanupError);
+            }
+            return false;
+        } finally {
+            if (image != null) {
+                image.close();
+            }
+        }
+    }
+
+    /**
+     * @return The byte order field for this machine's native byte order
+     */
+    private static int byteOrderField() {
+        return ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? BIG_ENDIAN : LITTLE_ENDIAN;
+    }
+
+    /**
+     * @param offset A file offset
+     * @return The offset rounded up to a multiple of 8, so native longs in the section are aligned
+     */
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+}
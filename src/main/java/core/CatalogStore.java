@@ -0,0 +1,426 @@
+package core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resident, authoritative in-memory copy of a book catalog file.
+ * The catalog is parsed once and kept in memory; every access checks the file's modification
+ * time and size and reloads only if the file was changed outside the application.
+ * Writes go through the store, which queues a snapshot of the resident catalog on
+ * core.PersistenceExecutor and records the new file stamp once it is written, so the application's
+ * own saves never trigger a reparse.
+ * Callers that read or mutate the catalog should hold the store's monitor for the whole operation.
+ *
+ * The catalog is held as immutable core.Book records in a core.CatalogBackend: core.HeapCatalog by
+ * default, which indexes books by ID and keeps a trigram search index, or core.OffHeapCatalog when
+ * the system property library.catalog.offHeap is true, which keeps the catalog in native memory
+ * (in files mapped from the directory named by library.catalog.offHeapDir, if set) so very large
+ * catalogs do not grow the heap. Books are added, removed and edited through addBook(),
+ * removeBook() and replaceBook(), which keep the backend's indexes current.
+ *
+ * Borrows and returns reserve copies through the store's core.CirculationEngine, which keeps
+ * atomic Available and OnLoan counters seeded from the resident catalog and drops them whenever
+ * the resident catalog is discarded. The loan journal is what makes a checkout durable: once a
+ * store is told which core.LoanJournal records its loans, every load sets each book's OnLoan count
+ * to the copies its loans hold, keeping its total copies. A catalog save that never reached the
+ * disk therefore costs no count, and checkouts only queue coalesced background saves.
+ *
+ * Every save also refreshes the catalog's core.CatalogSnapshot, a binary copy next to the JSON
+ * file. A later launch maps that snapshot instead of parsing JSON, as long as it was taken from
+ * the JSON file as it is on disk.
+ */
+public class CatalogStore {
+    private static final Logger logger = Logger.getLogger(CatalogStore.class.getName());
+
+    /** One store per catalog file */
+    private static final Map<String, CatalogStore> stores = new HashMap<>();
+
+    /** Path of the catalog file backing this store */
+    private final String filePath;
+
+    /** Whether catalogs are kept in native memory by core.OffHeapCatalog */
+    private static final boolean OFF_HEAP = Boolean.getBoolean("library.catalog.offHeap");
+
+    /** Directory for core.OffHeapCatalog's mapped files, or null for anonymous memory */
+    private static final String OFF_HEAP_DIRECTORY = System.getProperty("library.catalog.offHeapDir");
+
+    /** Resident catalog, or null if not loaded */
+    private CatalogBackend catalog;
+
+    /** Modification time of the file when the resident catalog was loaded or saved */
+    private FileTime loadedModifiedTime;
+
+    /** Size of the file when the resident catalog was loaded or saved */
+    private long loadedSize = -1;
+
+    /** Number of saves queued on core.PersistenceExecutor and not yet written */
+    private int savesInFlight;
+
+    /** Journal whose loans the OnLoan counts are derived from, or null to take the file's counts */
+    private LoanJournal loanJournal;
+
+    /** A book whose OnLoan count does not match its loans */
+    private record Recount(Book book, int lent) {}
+
+    /** Availability counters and book locks for checkouts against this catalog */
+    private final CirculationEngine circulation = new CirculationEngine(this);
+
+    /**
+     * Largest catalog file that a read-only pass loads into memory. A parsed catalog takes several
+     * times its file size on the heap, so larger files are scanned with core.CatalogScanner instead.
+     */
+    private static final long RESIDENT_BUDGET_BYTES = Runtime.getRuntime().maxMemory() / 16;
+
+    /**
+     * Private constructor; use forPath() to obtain the store for a file.
+     *
+     * @param filePath Path of the catalog file
+     */
+    private CatalogStore(String filePath) {
+        this.filePath = filePath;
+    }
+
+    /**
+     * Returns the shared store for a catalog file, creating it on first use.
+     *
+     * @param filePath Path of the catalog file
+     * @return The store backing the given file
+     */
+    public static CatalogStore forPath(String filePath) {
+        synchronized (stores) {
+            return stores.computeIfAbsent(filePath, CatalogStore::new);
+        }
+    }
+
+    /**
+     * Returns the resident catalog, loading it if this is the first access or if the file's
+     * modification time or size no longer match the resident copy.
+     * The returned list is a read-only view of the store's own list; it reflects later changes,
+     * so iterate it only while holding the store's monitor.
+     *
+     * @return The resident catalog, or null if the file cannot be read
+     */
+    public synchronized List<Book> getBooks() {
+        if (catalog != null && savesInFlight > 0) {
+            return catalog.books(); // The file is about to be overwritten with the resident catalog anyway
+        }
+
+        BasicFileAttributes attributes = readAttributes();
+
+        if (catalog != null && attributes != null
+                && attributes.lastModifiedTime().equals(loadedModifiedTime)
+                && attributes.size() == loadedSize) {
+            return catalog.books();
+        }
+
+        if (catalog != null) {
+            logger.log(Level.INFO, "Catalog file changed on disk, reloading: " + filePath);
+            invalidate();
+        }
+
+        CatalogBackend loaded = attributes != null ? load(attributes) : null;
+        if (loaded != null) {
+            catalog = loaded;
+            loadedModifiedTime = attributes.lastModifiedTime();
+            loadedSize = attributes.size();
+            logger.log(Level.FINE, "Loaded catalog into memory: " + catalog.books().size() + " books from " + filePath);
+            reconcileOnLoan();
+            return catalog.books();
+        }
+        return null;
+    }
+
+    /**
+     * Loads the catalog into the configured backend: from its core.CatalogSnapshot if that is
+     * current, otherwise from the JSON file, in which case a fresh snapshot is queued for the
+     * next launch.
+     *
+     * @param attributes Current attributes of the catalog file
+     * @return The loaded catalog, or null if the file cannot be read
+     */
+    private CatalogBackend load(BasicFileAttributes attributes) {
+        Path offHeapDirectory = OFF_HEAP_DIRECTORY != null ? Paths.get(OFF_HEAP_DIRECTORY) : null;
+        boolean fileIsCurrent = !PersistenceExecutor.hasPendingSave(filePath);
+
+        if (fileIsCurrent) {
+            try (CatalogSnapshot snapshot = CatalogSnapshot.open(filePath, attributes)) {
+                if (snapshot != null) {
+                    logger.log(Level.FINE, "Loading catalog from its snapshot: " + filePath);
+                    return OFF_HEAP
+                            ? snapshot.toOffHeapCatalog(offHeapDirectory)
+                            : new HeapCatalog(snapshot.readAll(), filePath);
+                }
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Failed to load catalog snapshot, reading the catalog file instead: " + filePath, e);
+            }
+        }
+
+        CatalogBackend loaded;
+        if (OFF_HEAP) {
+            loaded = OffHeapCatalog.load(filePath, offHeapDirectory);
+        } else {
+            List<Book> books = JsonManager.readBooks(filePath);
+            loaded = books != null ? new HeapCatalog(books, filePath) : null;
+        }
+        if (loaded != null && fileIsCurrent) {
+            PersistenceExecutor.submit(CatalogSnapshot.snapshotPathFor(filePath).toString(), loaded.snapshot(),
+                    (books, _) -> CatalogSnapshot.write(books, filePath, attributes));
+        }
+        return loaded;
+    }
+
+    /**
+     * Derives the catalog's OnLoan counts from the loans recorded in a journal from now on,
+     * reconciling the resident catalog at once if there is one.
+     *
+     * @param journal The loan journal of the user database lending this catalog's books
+     */
+    public synchronized void deriveOnLoanFrom(LoanJournal journal) {
+        if (loanJournal == journal) {
+            return;
+        }
+        loanJournal = journal;
+        if (catalog != null) {
+            reconcileOnLoan();
+        }
+    }
+
+    /**
+     * Sets each resident book's OnLoan count to the number of copies its loans hold, moving the
+     * difference to or from Available, and queues a save if any count changed. The journal's
+     * monitor is taken inside the store's, which is the lock order of checkouts.
+     */
+    private void reconcileOnLoan() {
+        if (loanJournal == null) {
+            return;
+        }
+
+        List<Recount> recounts = new ArrayList<>();
+        synchronized (loanJournal) {
+            for (Book book : catalog.books()) {
+                int lent = loanJournal.lentCopies(book.bookId());
+                if (lent < 0) {
+                    logger.log(Level.WARNING, "Cannot read loans, keeping the catalog's OnLoan counts: " + filePath);
+                    return;
+                }
+                if (lent != book.onLoan()) {
+                    recounts.add(new Recount(book, lent));
+                }
+            }
+        }
+        if (recounts.isEmpty()) {
+            return;
+        }
+
+        for (Recount recount : recounts) {
+            Book book = recount.book();
+            int copies = Math.max(0, book.available()) + Math.max(0, book.onLoan());
+            catalog.replace(book, book.withCounts(Math.max(0, copies - recount.lent()), recount.lent()));
+        }
+        // Reseed the counters from the new counts; reset() takes no book locks, unlike forget()
+        circulation.reset();
+        logger.log(Level.INFO, "Set the OnLoan counts of " + recounts.size() + " books to their recorded loans: " + filePath);
+        save();
+    }
+
+    /**
+     * Tells a read-only pass whether to scan the catalog file with core.CatalogScanner rather than
+     * load it: true when the catalog is not resident, its file is larger than the resident budget
+     * and no save of it is queued (so the file on disk is current). Never true for catalogs kept
+     * off the heap, since loading those does not use the heap budget.
+     *
+     * @return true if the caller should stream the file instead of calling getBooks()
+     */
+    public synchronized boolean shouldScan() {
+        if (OFF_HEAP || catalog != null || savesInFlight > 0 || PersistenceExecutor.hasPendingSave(filePath)) {
+            return false;
+        }
+        BasicFileAttributes attributes = readAttributes();
+        return attributes != null && attributes.size() > RESIDENT_BUDGET_BYTES;
+    }
+
+    /**
+     * Returns the store's circulation engine. It synchronizes internally; callers need not hold
+     * the store's monitor.
+     *
+     * @return The circulation engine for this catalog
+     */
+    public CirculationEngine circulation() {
+        return circulation;
+    }
+
+    /**
+     * Looks up a book by its ID through the index.
+     *
+     * @param bookId The ID of the book
+     * @return The book, or null if no such book exists or the catalog cannot be read
+     */
+    public synchronized Book findById(String bookId) {
+        if (getBooks() == null) {
+            return null;
+        }
+        return catalog.findById(bookId);
+    }
+
+    /**
+     * Looks up a book by its encoded ID through the index.
+     *
+     * @param code The ID of the book, encoded with core.BookId
+     * @return The book, or null if no such book exists or the catalog cannot be read
+     */
+    public synchronized Book findById(long code) {
+        if (getBooks() == null) {
+            return null;
+        }
+        return catalog.findById(code);
+    }
+
+    /**
+     * Appends a book to the resident catalog and indexes it. Call save() afterwards.
+     *
+     * @param book The new book
+     * @return true if the book was added, false if the catalog cannot be read or the ID already exists
+     */
+    public synchronized boolean addBook(Book book) {
+        return getBooks() != null && catalog.add(book);
+    }
+
+    /**
+     * Replaces a resident book with an updated copy at the same catalog position, moving its index
+     * entries if the ID changed. Call save() afterwards.
+     *
+     * @param current The resident book, as returned by the store
+     * @param updated The updated book
+     * @return true if the book was replaced, false if it is not part of the resident catalog
+     *         or another book already uses the updated ID
+     */
+    public synchronized boolean replaceBook(Book current, Book updated) {
+        return catalog != null && catalog.replace(current, updated);
+    }
+
+    /**
+     * Removes a resident book from the catalog and the index. Call save() afterwards.
+     *
+     * @param book The resident book, as returned by the store
+     * @return true if the book was removed, false if it is not part of the resident catalog
+     */
+    public synchronized boolean removeBook(Book book) {
+        return catalog != null && catalog.remove(book);
+    }
+
+    /**
+     * Finds books whose ID, title, author, publisher or shelf number contains the search term,
+     * ignoring case, through the backend's search.
+     *
+     * @param searchTerm The term to search for (empty string returns all books)
+     * @return Matching books in catalog order, or null if the catalog cannot be read
+     */
+    public synchronized List<Book> search(String searchTerm) {
+        if (getBooks() == null) {
+            return null;
+        }
+        return catalog.search(searchTerm);
+    }
+
+    /**
+     * Queues a snapshot of the resident catalog to be written to its file by core.PersistenceExecutor.
+     * The file stamp is recorded once the last queued save is written. If the write fails the
+     * resident copy is discarded, so the next access reloads whatever is actually on disk.
+     *
+     * @return true if the catalog was queued for saving, false if there is no resident catalog
+     */
+    public synchronized boolean save() {
+        if (catalog == null) {
+            logger.log(Level.WARNING, "No resident catalog to save for: " + filePath);
+            return false;
+        }
+
+        savesInFlight++;
+        PersistenceExecutor.submit(filePath, catalog.snapshot(), CatalogStore::writeCatalog).thenAccept(this::saveCompleted);
+        return true;
+    }
+
+    /**
+     * Writes a catalog to its JSON file and then refreshes its core.CatalogSnapshot.
+     * A snapshot that cannot be written is removed; the save still counts as successful.
+     *
+     * @param books The books, in file order
+     * @param filePath Path of the catalog file
+     * @return true if the JSON file was written, false otherwise
+     */
+    private static boolean writeCatalog(List<Book> books, String filePath) {
+        if (!JsonManager.writeBooks(books, filePath)) {
+            return false;
+        }
+        try {
+            CatalogSnapshot.write(books, filePath, Files.readAttributes(Paths.get(filePath), BasicFileAttributes.class));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot read attributes of saved catalog, skipping its snapshot: " + filePath, e);
+        }
+        return true;
+    }
+
+    /**
+     * Records the outcome of a queued save.
+     *
+     * @param success Whether the write succeeded
+     */
+    private synchronized void saveCompleted(boolean success) {
+        savesInFlight--;
+        if (!success) {
+            logger.log(Level.SEVERE, "Failed to save catalog, discarding resident copy: " + filePath);
+            invalidate();
+            return;
+        }
+        if (savesInFlight > 0 || catalog == null) {
+            return;
+        }
+
+        BasicFileAttributes attributes = readAttributes();
+        if (attributes != null) {
+            loadedModifiedTime = attributes.lastModifiedTime();
+            loadedSize = attributes.size();
+        } else {
+            invalidate();
+        }
+    }
+
+    /**
+     * Discards the resident catalog and its circulation counts so the next access reloads it from disk.
+     */
+    public synchronized void invalidate() {
+        if (catalog != null) {
+            catalog.close();
+            catalog = null;
+        }
+        circulation.reset();
+        loadedModifiedTime = null;
+        loadedSize = -1;
+    }
+
+    /**
+     * Reads the current modification time and size of the catalog file.
+     *
+     * @return The file attributes, or null if the file cannot be accessed
+     */
+    private BasicFileAttributes readAttributes() {
+        try {
+            Path path = Paths.get(filePath);
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Cannot read attributes of catalog file: " + filePath, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checkout concurrency for one core.CatalogStore, owned by the store.
+ *
+ * Each book in circulation has an atomic counter holding its Available and OnLoan counts packed
+ * into one long, seeded from the resident catalog on first use. reserveCopy() takes one copy off
+ * the shelf with a compare-and-set, so it is linearizable: of any number of threads reserving the
+ * last copy, exactly one succeeds, and no count ever goes negative or loses an update. Checking
+ * availability therefore never takes the store's monitor.
+ *
+ * A borrow or return is several steps (reserve the copy, append the loan to the core.LoanJournal,
+ * apply the counts to the catalog), so core.LoanUnitOfWork runs under withBookLocks(): a stripe of
+ * per-book locks, chosen by BookID, that also guards edits and deletions of the book. Operations on
+ * different books only meet at the journal append; none of them holds the store's monitor while
+ * the journal is forced to disk.
+ *
+ * Each stripe also owns the counters of its books, keyed like core.HeapCatalog: IDs encoded with
+ * core.BookId in a core.LongIntHashMap of positions, and the rare IDs that do not follow the format
+ * in a String-keyed map. A counter is found under its stripe's lock and then changed with
+ * compare-and-set.
+ *
+ * Lock order is book locks, then the store's monitor, then the journal's.
+ */
+public class CirculationEngine {
+    private static final Logger logger = Logger.getLogger(CirculationEngine.class.getName());
+
+    /** Number of book lock stripes; a power of two */
+    private static final int STRIPES = 64;
+
+    /** The catalog the counts are seeded from */
+    private final CatalogStore catalog;
+
+    /** The book lock and the counters of the books of one stripe; the tables are guarded by the lock */
+    private static final class Stripe {
+        /** Lock of every book in the stripe */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /** Counters in use and dropped ones, by position */
+        private final List<AtomicLong> counters = new ArrayList<>();
+
+        /** Position in counters by encoded BookID; books not yet used have no entry */
+        private final LongIntHashMap positionsByCode = new LongIntHashMap();
+
+        /** Counters by BookID, for IDs that do not encode */
+        private final Map<String, AtomicLong> irregularCounters = new HashMap<>();
+
+        /** The engine's generation the tables belong to */
+        private long generation;
+    }
+
+    /** Book lock stripes */
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /** Incremented by reset(); a stripe from an older generation drops its counters on next use */
+    private volatile long generation;
+
+    /**
+     * @param catalog The store that owns the engine
+     */
+    CirculationEngine(CatalogStore catalog) {
+        this.catalog = catalog;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Runs an operation while holding the locks of the given books. Locks are taken in stripe
+     * order, so operations on overlapping sets of books cannot deadlock.
+     *
+     * @param operation The operation
+     * @param bookIds IDs of the books the operation borrows, returns, edits or deletes
+     * @param <T> Result type of the operation
+     * @return The operation's result
+     */
+    public <T> T withBookLocks(Supplier<T> operation, String... bookIds) {
+        int[] held = Arrays.stream(bookIds).mapToInt(CirculationEngine::stripeOf).sorted().distinct().toArray();
+        for (int i = 0; i < held.length; i++) {
+            stripes[held[i]].lock.lock();
+        }
+        try {
+            return operation.get();
+        } finally {
+            for (int i = held.length - 1; i >= 0; i--) {
+                stripes[held[i]].lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Takes one copy of a book off the shelf if one is available.
+     *
+     * @param bookId The ID of the book
+     * @return true if a copy was reserved, false if the book is not found or no copy is available
+     */
+    public boolean reserveCopy(String bookId) {
+        return reserve(bookId) != null;
+    }
+
+    /**
+     * Puts one copy of a book back on the shelf.
+     *
+     * @param bookId The ID of the book
+     * @return true if the copy was released, false if the book is not found
+     */
+    public boolean releaseCopy(String bookId) {
+        AtomicLong counter = counterFor(bookId);
+        if (counter == null) {
+            return false;
+        }
+        release(counter);
+        return true;
+    }
+
+    /**
+     * @param bookId The ID of a book
+     * @return The number of copies of the book on the shelf, or -1 if the book is not found
+     */
+    public int availableCopies(String bookId) {
+        AtomicLong counter = counterFor(bookId);
+        return counter != null ? available(counter.get()) : -1;
+    }
+
+    /**
+     * Reserves a copy like reserveCopy(), returning the counter it was taken from so the
+     * reservation can be cancelled even if the book's counts were reset in the meantime.
+     *
+     * @param bookId The ID of the book
+     * @return The counter, or null if the book is not found or no copy is available
+     */
+    AtomicLong reserve(String bookId) {
+        AtomicLong counter = counterFor(bookId);
+        if (counter == null) {
+            return null;
+        }
+        while (true) {
+            long counts = counter.get();
+            int available = available(counts);
+            if (available <= 0) {
+                return null;
+            }
+            if (counter.compareAndSet(counts, pack(available - 1, onLoan(counts) + 1))) {
+                return counter;
+            }
+        }
+    }
+
+    /**
+     * Puts one copy back on the shelf of the counter it was reserved from.
+     *
+     * @param counter The counter returned by reserve()
+     */
+    static void release(AtomicLong counter) {
+        while (true) {
+            long counts = counter.get();
+            if (counter.compareAndSet(counts, pack(available(counts) + 1, Math.max(0, onLoan(counts) - 1)))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drops a book's counter after its counts were set outright, by an edit or a deletion, so the
+     * next use seeds it from the catalog again. The caller holds the book's lock and the store's monitor.
+     *
+     * @param bookId The ID of the book
+     */
+    void forget(String bookId) {
+        Stripe stripe = stripes[stripeOf(bookId)];
+        stripe.lock.lock();
+        try {
+            long code = BookId.encode(bookId);
+            if (code == BookId.INVALID) {
+                stripe.irregularCounters.remove(bookId);
+            } else {
+                stripe.positionsByCode.remove(code);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every counter, when the store discards its resident catalog. The caller holds the
+     * store's monitor, so stripes are not locked here; each drops its counters on next use.
+     */
+    void reset() {
+        generation++;
+        logger.log(Level.FINE, "Resetting circulation counts, generation " + generation);
+    }
+
+    /**
+     * Returns a book's counter under its stripe's lock, seeding it from the resident catalog under
+     * the store's monitor, so a seed never straddles a reset.
+     *
+     * @param bookId The ID of the book
+     * @return The counter, or null if the book is not found
+     */
+    private AtomicLong counterFor(String bookId) {
+        Stripe stripe = stripes[stripeOf(bookId)];
+        stripe.lock.lock();
+        try {
+            if (stripe.generation != generation) {
+                stripe.counters.clear();
+                stripe.positionsByCode.clear();
+                stripe.irregularCounters.clear();
+                stripe.generation = generation;
+            }
+
+            long code = BookId.encode(bookId);
+            AtomicLong counter;
+            if (code == BookId.INVALID) {
+                counter = stripe.irregularCounters.get(bookId);
+            } else {
+                int position = stripe.positionsByCode.get(code);
+                counter = position != LongIntHashMap.NO_VALUE ? stripe.counters.get(position) : null;
+            }
+            if (counter != null) {
+                return counter;
+            }
+
+            synchronized (catalog) {
+                Book book = catalog.findById(bookId);
+                if (book == null) {
+                    return null;
+                }
+                counter = new AtomicLong(pack(Math.max(0, book.available()), Math.max(0, book.onLoan())));
+            }
+            if (code == BookId.INVALID) {
+                stripe.irregularCounters.put(bookId, counter);
+            } else {
+                stripe.positionsByCode.put(code, stripe.counters.size());
+                stripe.counters.add(counter);
+            }
+            return counter;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * @param bookId The ID of a book
+     * @return Index of the stripe locking the book
+     */
+    private static int stripeOf(String bookId) {
+        int hash = bookId.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * @param available Number of copies on the shelf
+     * @param onLoan Number of copies lent
+     * @return Both counts packed into one value
+     */
+    private static long pack(int available, int onLoan) {
+        return ((long) available << 32) | (onLoan & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param counts Packed counts
+     * @return Number of copies on the shelf
+     */
+    private static int available(long counts) {
+        return (int) (counts >>> 32);
+    }
+
+    /**
+     * @param counts Packed counts
+     * @return Number of copies lent
+     */
+    private static int onLoan(long counts) {
+        return (int) counts;
+    }
+}
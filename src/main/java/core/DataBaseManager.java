@@ -1,138 +1,182 @@
 package core;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Manages database operations for the library management system, handling user authentication,
- * book searches, and borrowing status.
+ * book searches, and borrowing status. Book IDs, loan periods and due dates are worked out here;
+ * reading and writing the data is delegated to a core.StorageEngine.
  */
-@SuppressWarnings("UnnecessaryContinue")
 public class DataBaseManager {
     private static final Logger logger = Logger.getLogger(DataBaseManager.class.getName());
 
-    public final String BOOK_DATABASE_PATH = AppDataManager.getDataFilePath("BookData.json");
-    public final String USER_DATABASE_PATH = AppDataManager.getDataFilePath("UserData.json");
+    public final String BOOK_DATABASE_PATH;
+    public final String USER_DATABASE_PATH;
+
+    /** Where the data is stored */
+    private final StorageEngine storage;
+
+    /**
+     * Creates a manager over the application's own data, stored by the engine selected with the
+     * library.storage system property (see StorageEngine.forApplication()).
+     */
+    public DataBaseManager() {
+        this.BOOK_DATABASE_PATH = AppDataManager.getDataFilePath("BookData.json");
+        this.USER_DATABASE_PATH = AppDataManager.getDataFilePath("UserData.json");
+        this.storage = StorageEngine.forApplication();
+    }
+
+    /**
+     * Creates a manager over database files at explicit locations, for example generated
+     * fixtures used by benchmarks or scale tests.
+     *
+     * @param bookDatabasePath Full path of the book database file
+     * @param userDatabasePath Full path of the user database file
+     */
+    public DataBaseManager(String bookDatabasePath, String userDatabasePath) {
+        this.BOOK_DATABASE_PATH = bookDatabasePath;
+        this.USER_DATABASE_PATH = userDatabasePath;
+        this.storage = new JsonStorageEngine(bookDatabasePath, userDatabasePath);
+    }
+
+    /**
+     * Creates a manager over data kept by a given storage engine.
+     *
+     * @param storage The storage engine
+     */
+    public DataBaseManager(StorageEngine storage) {
+        this.BOOK_DATABASE_PATH = null;
+        this.USER_DATABASE_PATH = null;
+        this.storage = storage;
+    }
 
     /**
-     * Finds a user in the database based on ID and password.
-     * Attempts to decrypt stored user IDs to find a match.
+     * Finds a user in the database based on ID and password and decrypts the user's record.
+     * The stored password must match the given one.
      *
      * @param id The user ID to look for
      * @param password The password to use for decryption
-     * @return JsonObject containing user data if found, null otherwise
+     * @return The decrypted user with their loans if found, null otherwise
      */
-    public JsonObject findUser(String id, String password) {
+    public User findUser(String id, String password) {
         try{
-            JsonObject userData = JsonManager.readJsonFile(USER_DATABASE_PATH);
-            if (userData == null) {
-                logger.log(Level.WARNING, "No user data found in database file: " + USER_DATABASE_PATH);
-                return null;
-            }
-
-            for (String userType : new String[]{"Students", "General Public", "Admins"}) {
-                JsonArray users = userData.getAsJsonArray(userType);
-                for (int i = 0; i < users.size(); i++) {
-                    JsonObject user = users.get(i).getAsJsonObject();
-                    String encryptedId = user.get("UserID").getAsString();
-
-                    try {
-                        String decryptedId = core.SecurityManager.decrypt(encryptedId, password);
-                        if (decryptedId.equals(id)) {
-                            return user;
-                        }
-                    } catch (Exception e) {
-                        continue;
-                    }
-
-                }
-            }
+            UserHandle user = handleFor(id, password);
+            return user != null ? user.user() : null;
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Failed to find user: " + id, e);
             return null;
+        }
+    }
 
+    /**
+     * Finds a user like findUser(), returning a handle the session can keep so later operations
+     * on the same user do not look the user up again.
+     *
+     * @param id The user ID to look for
+     * @param password The password to use for decryption
+     * @return A handle on the decrypted user if found, null otherwise
+     */
+    public UserHandle resolveUser(String id, String password) {
+        try {
+            return storage.resolveUser(id, password);
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to find user: " + id, e);
             return null;
         }
     }
 
+    /**
+     * Returns the session's user handle when it is for the given user and password and still
+     * valid in the storage engine, and resolves the user otherwise.
+     *
+     * @param userId The ID of the user
+     * @param password The user's password
+     * @return A current handle on the user, or null if the user is not found
+     */
+    private UserHandle handleFor(String userId, String password) {
+        SessionManager session = SessionManager.getInstance();
+        UserHandle user = session.getUserHandle();
+        if (user != null && user.userId().equals(userId) && password.equals(session.getKey())
+                && storage.revalidate(user, password)) {
+            return user;
+        }
+        return storage.resolveUser(userId, password);
+    }
+
     /**
      * Searches for books in the database based on the provided search term.
-     * Matches against book ID, title, author, publisher, and shelf number.
+     * Matches against book ID, title, author, publisher, and shelf number, ignoring case.
      *
      * @param searchTerm The term to search for (empty string returns all books)
-     * @return JsonArray of books that match the search criteria
+     * @return The books that match the search criteria, in catalog order
      */
-    public JsonArray findBooks(String searchTerm) {
+    public List<Book> findBooks(String searchTerm) {
         logger.log(Level.FINE, "Searching books with term: " + searchTerm);
-        JsonArray filteredBooks = new JsonArray();
-        JsonArray bookData = JsonManager.readJsonArrayFile(BOOK_DATABASE_PATH);
-
-        if (bookData != null) {
-            for (int i = 0; i < bookData.size(); i++) {
-                JsonObject book = bookData.get(i).getAsJsonObject();
-
-                String bookID = book.get("BookID").getAsString();
-                int shelfNumber = getShelfNumber(bookID);
-                String title = book.get("Title").getAsString();
-                String author = book.get("Author").getAsString();
-                String publisher = book.get("Publisher").getAsString();
+        return storage.findBooks(searchTerm);
+    }
 
-                if (searchTerm.isEmpty() || title.toLowerCase().contains(searchTerm.toLowerCase()) || author.toLowerCase().contains(searchTerm.toLowerCase()) || publisher.toLowerCase().contains(searchTerm.toLowerCase()) || bookID.toLowerCase().contains(searchTerm.toLowerCase()) || String.valueOf(shelfNumber).contains(searchTerm)) {
-                    filteredBooks.add(book);
-                }
+    /**
+     * Finds all books borrowed by a specific user, with their issue dates decrypted.
+     *
+     * @param userID The ID of the user
+     * @param password The password used for decryption
+     * @return The user's loans, or an empty list if the user is not found
+     */
+    public List<Loan> findBorrowedBooks(String userID, String password) {
+        try {
+            UserHandle user = handleFor(userID, password);
+            if (user != null) {
+                return user.user().loans();
             }
-            logger.log(Level.INFO, "Book search completed: found " + filteredBooks.size() + " books matching '" + searchTerm + "'");
-        } else {
-            logger.log(Level.SEVERE, "Failed to load book database for search operation");
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Failed to find borrowed books for user: " + userID, e);
         }
-        return filteredBooks;
+        return List.of();
     }
 
     /**
-     * Finds all books borrowed by a specific user.
+     * Resolves everything shown about a user's loans in one pass: the user is looked up once,
+     * each book once in the catalog, and due dates, statuses and fees are computed for today.
+     * Saved due statuses are not updated; entries report whether theirs changed.
      *
      * @param userID The ID of the user
      * @param password The password used for decryption
-     * @return JsonArray of books borrowed by the user
+     * @return The summary, or null if the user is not found
      */
-    public JsonArray findBorrowedBooks(String userID, String password) {
-        JsonArray borrowedBooks = new JsonArray();
-        JsonObject userData = JsonManager.readJsonFile(USER_DATABASE_PATH);
-
-        if (userData != null) {
-            for (String userType : new String[]{"Students", "General Public", "Admins"}) {
-                if (userData.has(userType)) {
-                    JsonArray users = userData.getAsJsonArray(userType);
-                    for (int i = 0; i < users.size(); i++) {
-                        JsonObject user = users.get(i).getAsJsonObject();
-                        String encryptedId = user.get("UserID").getAsString();
-
-                        try {
-                            String decryptedId = core.SecurityManager.decrypt(encryptedId, password);
-                            if (decryptedId.equals(userID)) {
-                                if (user.has("Books") && !user.get("Books").isJsonNull()) {
-                                    JsonArray books = user.getAsJsonArray("Books");
-                                    for (int j = 0; j < books.size(); j++) {
-                                        borrowedBooks.add(books.get(j));
-                                    }
-                                }
-                                break;
-                            }
-                        } catch (Exception e) {
-                            continue;
-                        }
-                    }
-                }
+    public LoanSummary getLoanSummary(String userID, String password) {
+        try {
+            UserHandle handle = handleFor(userID, password);
+            if (handle == null) {
+                return null;
+            }
+
+            User user = handle.user();
+            String userType = user.userType();
+            LocalDate today = LocalDate.now();
+            List<LoanSummary.Entry> entries = new ArrayList<>(user.loans().size());
+            double totalFines = 0.0;
+
+            for (Loan loan : user.loans()) {
+                Book book = storage.findBook(loan.bookId());
+                int daysOverdue = loan.daysOverdue(userType, today);
+                float fee = daysOverdue > 0 ? FeeManager.calculateFee(daysOverdue, userType) : 0.0f;
+                totalFines += fee;
+
+                entries.add(new LoanSummary.Entry(loan, book != null ? book.title() : null,
+                        loan.dueDate(userType), loan.dueStatus(userType, today), daysOverdue, fee));
             }
+            return new LoanSummary(userType, entries, totalFines);
+
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Failed to build loan summary for user: " + userID, e);
+            return null;
         }
-        return borrowedBooks;
     }
 
     /**
@@ -142,16 +186,23 @@ public class DataBaseManager {
      * @return The title of the book, or null if not found
      */
     public String getBookTitle(String bookID) {
-        JsonArray bookData = JsonManager.readJsonArrayFile(BOOK_DATABASE_PATH);
-        if (bookData != null) {
-            for (int i = 0; i < bookData.size(); i++) {
-                JsonObject book = bookData.get(i).getAsJsonObject();
-                if (book.get("BookID").getAsString().equals(bookID)) {
-                    return book.get("Title").getAsString();
-                }
-            }
+        Book book = storage.findBook(bookID);
+        return book != null ? book.title() : null;
+    }
+
+    /**
+     * Gets the number of copies of a book currently lent, counted from the loans themselves.
+     *
+     * @param bookID The ID of the book
+     * @return The number of copies on loan, or -1 if it cannot be determined
+     */
+    public int getLentCopies(String bookID) {
+        try {
+            return storage.countLentCopies(bookID);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Failed to count lent copies of book: " + bookID, e);
+            return -1;
         }
-        return null;
     }
 
     /**
@@ -164,20 +215,28 @@ public class DataBaseManager {
      * @return The calculated shelf number, or -1 if invalid format
      */
     public int getShelfNumber(String bookID) {
-        Pattern pattern = Pattern.compile("^[A-Z]{1,2}");
-        Matcher matcher = pattern.matcher(bookID);
-
-        if (matcher.find()) {
-            String shelfCode = matcher.group();
-            int shelfNumber = 0;
+        return shelfNumberOf(bookID);
+    }
 
-            for (char c : shelfCode.toCharArray()) {
-                int charValue = c - 'A' + 1;
-                shelfNumber = shelfNumber * 26 + charValue;
-            }
-            return shelfNumber;
+    /**
+     * Static form of getShelfNumber(), used where no DataBaseManager instance is at hand
+     * (for example by core.CatalogSearchIndex). Reads the leading one or two capital letters
+     * directly instead of through a regular expression.
+     *
+     * @param bookID The ID of the book
+     * @return The calculated shelf number, or -1 if invalid format
+     */
+    public static int shelfNumberOf(String bookID) {
+        int shelfNumber = 0;
+        int letters = 0;
+
+        while (letters < 2 && letters < bookID.length()) {
+            char c = bookID.charAt(letters);
+            if (c < 'A' || c > 'Z') break;
+            shelfNumber = shelfNumber * 26 + (c - 'A' + 1);
+            letters++;
         }
-        return -1;
+        return letters > 0 ? shelfNumber : -1;
     }
 
     /**
@@ -189,30 +248,12 @@ public class DataBaseManager {
      * @return The due date in "YYYY-MM-DD" format, or null if invalid
      */
     public String getDueDate(String issueDate, String userType) {
-        Pattern pattern = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
-        Matcher matcher = pattern.matcher(issueDate);
-
-        if (matcher.find()){
-            String foundDate = matcher.group();
-            String[] dateParts = foundDate.split("-");
-            int year = Integer.parseInt(dateParts[0]);
-            int month = Integer.parseInt(dateParts[1]);
-            int day = Integer.parseInt(dateParts[2]);
-
-            LocalDate issueDateObj = LocalDate.of(year, month, day);
-            LocalDate dueDate;
-
-            if (userType.equals("Students")) {
-                dueDate = issueDateObj.plusDays(15);
-            } else if (userType.equals("General Public")) {
-                dueDate = issueDateObj.plusDays(7);
-            } else {
-                return null; // Invalid user type
-            }
-
-            return dueDate.format(DateTimeFormatter.ISO_LOCAL_DATE);
+        int issuedEpochDay = Loan.parseEpochDay(issueDate);
+        int loanDays = Loan.loanDays(userType);
+        if (issuedEpochDay == Loan.UNKNOWN_DATE || loanDays < 0) {
+            return null; // No date found or invalid user type
         }
-        return null;
+        return LocalDate.ofEpochDay(issuedEpochDay + loanDays).format(DateTimeFormatter.ISO_LOCAL_DATE);
     }
 
     /**
@@ -260,30 +301,13 @@ public class DataBaseManager {
      */
     public String getUserType(String userId, String password) {
         logger.log(Level.FINE, "Determining user type for user: " + userId);
-        JsonObject userData = JsonManager.readJsonFile(USER_DATABASE_PATH);
-
-        if (userData == null) {
+        try {
+            UserHandle user = handleFor(userId, password);
+            return user != null ? user.user().userType() : null;
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Failed to determine user type for user: " + userId, e);
             return null;
         }
-
-        for (String userType : new String[]{"Students", "General Public", "Admins"}) {
-            JsonArray users = userData.getAsJsonArray(userType);
-            for (int i = 0; i < users.size(); i++) {
-                JsonObject user = users.get(i).getAsJsonObject();
-                String encryptedId = user.get("UserID").getAsString();
-
-                try {
-                    String decryptedId = core.SecurityManager.decrypt(encryptedId, password);
-                    if (decryptedId.equals(userId)) {
-                        return userType;
-                    }
-                } catch (Exception e) {
-                    continue;
-                }
-            }
-        }
-
-        return null;
     }
 
     /**
@@ -295,10 +319,31 @@ public class DataBaseManager {
      * @param key The encryption key (user's password)
      */
     public void updateDueStatus(String currentUser, String bookId, int statusActual, String key) {
+        updateDueStatuses(currentUser, Map.of(bookId, statusActual), key);
+    }
+
+    /**
+     * Updates the due status of several books borrowed by one user with a single write.
+     *
+     * @param currentUser The ID of the user who borrowed the books
+     * @param statuses The new status code per book ID: 1 (on time), 0 (due today), -1 (overdue)
+     * @param key The encryption key (user's password)
+     * @return true if all statuses were saved, false if none were
+     */
+    public boolean updateDueStatuses(String currentUser, Map<String, Integer> statuses, String key) {
+        if (statuses.isEmpty()) {
+            return true;
+        }
         try {
-            JsonManager.saveJsonDueStatus(currentUser, bookId, statusActual, USER_DATABASE_PATH, key);
+            UserHandle user = handleFor(currentUser, key);
+            if (user == null) {
+                logger.log(Level.WARNING, "User not found: " + currentUser);
+                return false;
+            }
+            return storage.updateDueStatuses(user, statuses, key);
         } catch (Exception e) {
-            logger.log(Level.SEVERE, "Failed to update due status for user " + currentUser + " book " + bookId, e);
+            logger.log(Level.SEVERE, "Failed to update due statuses for user " + currentUser + " books " + statuses.keySet(), e);
+            return false;
         }
     }
 
@@ -341,19 +386,7 @@ public class DataBaseManager {
      * @return The shelf code as a string, or null if invalid
      */
     public String generateShelfCode(int shelfNumber) {
-        if (shelfNumber <= 0) {
-            return null;
-        }
-
-        if (shelfNumber <= 26) {
-            return String.valueOf((char)('A' + shelfNumber - 1));
-        } else if (shelfNumber <= 702) {
-            int firstChar = (shelfNumber - 27) / 26 + 'A';
-            int secondChar = (shelfNumber - 27) % 26 + 'A';
-            return String.valueOf((char)firstChar) + (char)secondChar;
-        } else {
-            return null;
-        }
+        return BookId.shelfCode(shelfNumber);
     }
 
     /**
@@ -366,17 +399,12 @@ public class DataBaseManager {
      */
     public boolean returnBook(String userId, String bookId, String password) {
         try {
-            if (JsonManager.modifyUserBook(userId, bookId, password, USER_DATABASE_PATH, JsonManager.BookOperation.RETURN)) {
-                logger.log(Level.SEVERE, "Failed to remove book " + bookId + " from user " + userId + "'s borrowed list");
+            UserHandle user = handleFor(userId, password);
+            if (user == null) {
+                logger.log(Level.WARNING, "User not found: " + userId);
                 return false;
             }
-
-            if (JsonManager.updateBookAvailability(bookId, BOOK_DATABASE_PATH, JsonManager.BookOperation.RETURN)) {
-                logger.log(Level.WARNING, "Failed to update book availability after return. Book removed from user but availability not updated for: " + bookId);
-            }
-            
-            return true;
-            
+            return storage.returnBook(user, bookId, password);
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to return book " + bookId + " for user " + userId, e);
             return false;
@@ -390,16 +418,7 @@ public class DataBaseManager {
      * @return The book ID if found, null otherwise
      */
     public String findBookID(String bookTitle) {
-        JsonArray bookData = JsonManager.readJsonArrayFile(BOOK_DATABASE_PATH);
-        if (bookData != null) {
-            for (int i = 0; i < bookData.size(); i++) {
-                JsonObject book = bookData.get(i).getAsJsonObject();
-                if (book.get("Title").getAsString().equalsIgnoreCase(bookTitle)) {
-                    return book.get("BookID").getAsString();
-                }
-            }
-        }
-        return null;
+        return storage.findBookId(bookTitle);
     }
 
     /**
@@ -414,18 +433,12 @@ public class DataBaseManager {
     public boolean borrowBook(String userId, String shelf, String bookTitle, String password){
         try {
             String bookId = generateBookID(shelf, bookTitle);
-
-            if (JsonManager.modifyUserBook(userId, bookId, password, USER_DATABASE_PATH, JsonManager.BookOperation.BORROW)) {
-                logger.log(Level.SEVERE, "Failed to add book " + bookId + " to user " + userId + "'s borrowed list");
+            UserHandle user = handleFor(userId, password);
+            if (user == null) {
+                logger.log(Level.WARNING, "User not found: " + userId);
                 return false;
             }
-
-            if (JsonManager.updateBookAvailability(bookId, BOOK_DATABASE_PATH, JsonManager.BookOperation.BORROW)) {
-                logger.log(Level.WARNING, "Failed to update book availability after borrow. Book added to user but availability not updated for: " + bookId);
-            }
-
-            return true;
-
+            return storage.borrowBook(user, bookId, password);
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to borrow book " + bookTitle + " for user " + userId, e);
             return false;
@@ -446,41 +459,18 @@ public class DataBaseManager {
         logger.log(Level.FINE, "Checking if user " + userId + " has already borrowed book " + bookId);
         
         try {
-            JsonObject userData = JsonManager.readJsonFile(USER_DATABASE_PATH);
-            if (userData == null) {
-                logger.log(Level.WARNING, "No user data found in database file: " + USER_DATABASE_PATH);
-                return false;
-            }
-
-            for (String userType : new String[]{"Students", "General Public", "Admins"}) {
-                JsonArray users = userData.getAsJsonArray(userType);
-                for (int i = 0; i < users.size(); i++) {
-                    JsonObject user = users.get(i).getAsJsonObject();
-                    String encryptedId = user.get("UserID").getAsString();
-
-                    try {
-                        String decryptedId = core.SecurityManager.decrypt(encryptedId, password);
-                        if (decryptedId.equals(userId)) {
-                            // Found the user, now check their borrowed books
-                            if (user.has("Books") && !user.get("Books").isJsonNull()) {
-                                JsonArray books = user.getAsJsonArray("Books");
-                                for (int j = 0; j < books.size(); j++) {
-                                    JsonObject borrowedBook = books.get(j).getAsJsonObject();
-                                    String borrowedBookId = borrowedBook.get("BookID").getAsString();
-                                    if (borrowedBookId.equals(bookId)) {
-                                        logger.log(Level.INFO, "User " + userId + " already has book " + bookId + " borrowed");
-                                        return true;
-                                    }
-                                }
-                            }
-                            // User found but doesn't have this book
-                            logger.log(Level.FINE, "User " + userId + " does not have book " + bookId + " borrowed");
-                            return false;
-                        }
-                    } catch (Exception e) {
-                        continue;
+            UserHandle user = handleFor(userId, password);
+            if (user != null) {
+                // Found the user, now check their borrowed books
+                for (Loan loan : user.user().loans()) {
+                    if (loan.bookId().equals(bookId)) {
+                        logger.log(Level.INFO, "User " + userId + " already has book " + bookId + " borrowed");
+                        return true;
                     }
                 }
+                // User found but doesn't have this book
+                logger.log(Level.FINE, "User " + userId + " does not have book " + bookId + " borrowed");
+                return false;
             }
 
             logger.log(Level.WARNING, "User " + userId + " not found in database");
@@ -513,40 +503,7 @@ public class DataBaseManager {
                 return false;
             }
 
-            JsonArray bookData = JsonManager.readJsonArrayFile(BOOK_DATABASE_PATH);
-            if (bookData == null) {
-                logger.log(Level.SEVERE, "No book data found in database file: " + BOOK_DATABASE_PATH);
-                return false;
-            }
-
-            // Check if book already exists
-            for (int i = 0; i < bookData.size(); i++) {
-                JsonObject existingBook = bookData.get(i).getAsJsonObject();
-                if (existingBook.get("BookID").getAsString().equals(bookId)) {
-                    logger.log(Level.WARNING, "Book with ID " + bookId + " already exists");
-                    return false;
-                }
-            }
-
-            JsonObject newBook = new JsonObject();
-            newBook.addProperty("BookID", bookId);
-            newBook.addProperty("Title", title);
-            newBook.addProperty("Author", author);
-            newBook.addProperty("Publisher", publisher);
-            newBook.addProperty("Available", available);
-            newBook.addProperty("OnLoan", onLoan);
-
-            bookData.add(newBook);
-
-            boolean success = JsonManager.saveJsonArrayFile(bookData, BOOK_DATABASE_PATH);
-
-            if (success) {
-                logger.log(Level.INFO, "Successfully added book: " + title + " with ID: " + bookId);
-            } else {
-                logger.log(Level.SEVERE, "Failed to save book data after adding: " + title);
-            }
-
-            return success;
+            return storage.addBook(new Book(bookId, title, author, publisher, available, onLoan));
 
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error adding book: " + title, e);
@@ -577,67 +534,8 @@ public class DataBaseManager {
                 return false;
             }
 
-            JsonArray bookData = JsonManager.readJsonArrayFile(BOOK_DATABASE_PATH);
-            if (bookData == null) {
-                logger.log(Level.SEVERE, "No book data found for update operation");
-                return false;
-            }
-
-            // Find and update the book
-            boolean bookFound = false;
-            for (int i = 0; i < bookData.size(); i++) {
-                JsonObject book = bookData.get(i).getAsJsonObject();
-                if (book.get("BookID").getAsString().equals(originalBookId)) {
-                    bookFound = true;
-
-                    // If book ID changed due to shelf/title change, check for conflicts
-                    if (!newBookId.equals(originalBookId)) {
-                        for (int j = 0; j < bookData.size(); j++) {
-                            if (j != i) {
-                                JsonObject otherBook = bookData.get(j).getAsJsonObject();
-                                if (otherBook.get("BookID").getAsString().equals(newBookId)) {
-                                    logger.log(Level.WARNING, "Cannot update book: new ID " + newBookId + " already exists");
-                                    return false;
-                                }
-                            }
-                        }
-                    }
-
-                    book.addProperty("BookID", newBookId);
-                    book.addProperty("Title", title);
-                    book.addProperty("Author", author);
-                    book.addProperty("Publisher", publisher);
-                    book.addProperty("Available", available);
-                    book.addProperty("OnLoan", onLoan);
-
-                    break;
-                }
-            }
-
-            if (!bookFound) {
-                logger.log(Level.WARNING, "Book with ID " + originalBookId + " not found for update");
-                return false;
-            }
-
-            // If book ID changed, update user records
-            if (!newBookId.equals(originalBookId)) {
-                if(updateUserBookReferences(originalBookId, newBookId)) {
-                    logger.log(Level.INFO,"User book references updated successfully for book ID change");
-                } else {
-                    logger.log(Level.SEVERE,"Failed to update user book references for book ID change from " + originalBookId + " to " + newBookId);
-                }
-            }
-
-            // Save updated data
-            boolean success = JsonManager.saveJsonArrayFile(bookData, BOOK_DATABASE_PATH);
-
-            if (success) {
-                logger.log(Level.INFO, "Successfully updated book: " + originalBookId + " -> " + newBookId);
-            } else {
-                logger.log(Level.SEVERE, "Failed to save book data after updating: " + originalBookId);
-            }
-
-            return success;
+            // If the book ID changes, loans of the old ID move to the new one
+            return storage.updateBook(originalBookId, new Book(newBookId, title, author, publisher, available, onLoan));
 
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error updating book: " + originalBookId, e);
@@ -646,97 +544,7 @@ public class DataBaseManager {
     }
 
     /**
-     * Updates book ID references in user borrowed books when a book ID changes,
-     * or removes book references when a book is deleted.
-     * This is necessary when shelf number or title changes, causing a new book ID,
-     * or when a book is completely removed from the system.
-     *
-     * @param oldBookId The old book ID to replace or remove
-     * @param newBookId The new book ID to use (null for deletion)
-     * @return true if the operation was successful, false otherwise
-     */
-    private boolean updateUserBookReferences(String oldBookId, String newBookId) {
-        boolean isDelete = false;
-        try {
-            isDelete = (newBookId == null);
-            String operationType = isDelete ? "Removing" : "Updating";
-            String logMessage = isDelete ?
-                    "Removing user book references for deleted book: " + oldBookId :
-                    "Updating user book references from " + oldBookId + " to " + newBookId;
-
-            logger.log(Level.INFO, logMessage);
-
-            JsonObject userData = JsonManager.readJsonFile(USER_DATABASE_PATH);
-            if (userData == null) {
-                logger.log(Level.WARNING, "No user data found for book reference " + operationType.toLowerCase());
-                return false;
-            }
-
-            boolean updated = false;
-
-            // Iterate through all user types
-            for (String userType : new String[]{"Students", "General Public", "Admins"}) {
-                if (!userData.has(userType)) continue;
-
-                JsonArray users = userData.getAsJsonArray(userType);
-                for (int i = 0; i < users.size(); i++) {
-                    JsonObject user = users.get(i).getAsJsonObject();
-
-                    if (user.has("Books") && !user.get("Books").isJsonNull()) {
-                        JsonArray books = user.getAsJsonArray("Books");
-
-                        // Iterate backwards to safely remove elements during iteration
-                        for (int j = books.size() - 1; j >= 0; j--) {
-                            JsonObject book = books.get(j).getAsJsonObject();
-                            if (book.get("BookID").getAsString().equals(oldBookId)) {
-                                if (isDelete) {
-                                    // Remove the book from user's borrowed list
-                                    books.remove(j);
-                                    updated = true;
-                                    logger.log(Level.FINE, "Removed deleted book reference from user in " + userType);
-                                } else {
-                                    // Update the book ID
-                                    book.addProperty("BookID", newBookId);
-                                    updated = true;
-                                    logger.log(Level.FINE, "Updated book reference for user in " + userType);
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-
-            if (updated) {
-                boolean success = JsonManager.saveJsonFile(userData, USER_DATABASE_PATH);
-                if (success) {
-                    String successMessage = isDelete ?
-                            "Successfully removed user book references for deleted book" :
-                            "Successfully updated user book references";
-                    logger.log(Level.INFO, successMessage);
-                    return true;
-                } else {
-                    logger.log(Level.SEVERE, "Failed to save user data after " + operationType.toLowerCase() + " book references");
-                    return false;
-                }
-            } else {
-                String noUpdateMessage = isDelete ?
-                        "No user book references found for deleted book ID: " + oldBookId :
-                        "No user book references found for old book ID: " + oldBookId;
-                logger.log(Level.INFO, noUpdateMessage);
-                return true;
-            }
-
-        } catch (Exception e) {
-            String errorMessage = isDelete ?
-                    "Error removing user book references for deleted book: " + oldBookId :
-                    "Error updating user book references from " + oldBookId + " to " + newBookId;
-            logger.log(Level.SEVERE, errorMessage, e);
-            return false;
-        }
-    }
-
-    /**
-     * Deletes a book from the database based on its ID.
+     * Deletes a book from the database based on its ID, along with every loan of it.
      *
      * @param bookId The ID of the book to delete
      * @return true if the book was successfully deleted, false otherwise
@@ -745,46 +553,7 @@ public class DataBaseManager {
         try {
             logger.log(Level.INFO, "Deleting book with ID: " + bookId);
 
-            JsonArray bookData = JsonManager.readJsonArrayFile(BOOK_DATABASE_PATH);
-            if (bookData == null) {
-                logger.log(Level.SEVERE, "No book data found for delete operation");
-                return false;
-            }
-
-            // Find and remove the book
-            boolean bookFound = false;
-            for (int i = 0; i < bookData.size(); i++) {
-                JsonObject book = bookData.get(i).getAsJsonObject();
-                if (book.get("BookID").getAsString().equals(bookId)) {
-                    bookData.remove(i);
-                    updateUserBookReferences(bookId, null);
-                    bookFound = true;
-                    logger.log(Level.INFO, "Book with ID " + bookId + " deleted successfully");
-                    break;
-                }
-            }
-
-            if (!bookFound) {
-                logger.log(Level.WARNING, "Book with ID " + bookId + " not found for deletion");
-                return false;
-            }
-
-            // Save updated data
-            boolean success = JsonManager.saveJsonArrayFile(bookData, BOOK_DATABASE_PATH);
-            if (success) {
-                logger.log(Level.INFO, "Successfully saved updated book database after deletion");
-            } else {
-                logger.log(Level.SEVERE, "Failed to save book data after deletion");
-            }
-
-            // Update user records to remove book references
-            if(updateUserBookReferences(bookId, null)) {
-                logger.log(Level.INFO,"User book references updated successfully for book deletion");
-            } else {
-                logger.log(Level.SEVERE,"Failed to update user book references for book deletion with ID: " + bookId);
-            }
-
-            return success;
+            return storage.deleteBook(bookId);
 
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error deleting book with ID: " + bookId, e);
@@ -805,38 +574,7 @@ public class DataBaseManager {
         try {
             logger.log(Level.INFO, "Adding new user: " + userName + " with ID: " + userId);
 
-            JsonObject userData = JsonManager.readJsonFile(USER_DATABASE_PATH);
-            if (userData == null) {
-                logger.log(Level.SEVERE, "No user data found in database file: " + USER_DATABASE_PATH);
-                return false;
-            }
-
-            // Check if user already exists
-            JsonObject existingUser = findUser(userId, userPassword);
-            if (existingUser != null) {
-                logger.log(Level.WARNING, "User with ID " + userId + " already exists");
-                return false;
-            }
-
-            // Create new user object
-            JsonObject newUser = new JsonObject();
-            newUser.addProperty("UserID", core.SecurityManager.encrypt(userId, userPassword));
-            newUser.addProperty("Name", core.SecurityManager.encrypt(userName, userPassword));
-            newUser.addProperty("Password", core.SecurityManager.encrypt(userPassword, userPassword));
-            newUser.add("Books", new JsonArray());
-
-            JsonArray userTypeArray = userData.getAsJsonArray(userType);
-
-            if (userTypeArray == null) {
-                logger.log(Level.SEVERE, "No user type array found in database file: " + USER_DATABASE_PATH);
-                return false;
-            }
-
-            userTypeArray.add(newUser);
-
-            // Save updated data
-            return JsonManager.saveJsonFile(userData, USER_DATABASE_PATH);
-
+            return storage.addUser(userId, userName, userPassword, userType);
 
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error adding user: " + userName, e);
@@ -853,36 +591,7 @@ public class DataBaseManager {
      */
     public boolean removeUser(String userId, String password) {
         try {
-            JsonObject userData = JsonManager.readJsonFile(USER_DATABASE_PATH);
-            if (userData == null) {
-                logger.log(Level.SEVERE, "Failed to read user database");
-                return false;
-            }
-
-            // Find and remove user from appropriate category
-            for (String userType : new String[]{"Students", "General Public"}) {
-                JsonArray userArray = userData.getAsJsonArray(userType);
-                if (userArray != null) {
-                    for (int i = 0; i < userArray.size(); i++) {
-                        JsonObject user = userArray.get(i).getAsJsonObject();
-                        try {
-                            String decryptedUserId = core.SecurityManager.decrypt(
-                                    user.get("UserID").getAsString(), password);
-                            if (decryptedUserId.equals(userId)) {
-                                userArray.remove(i);
-                                return JsonManager.saveJsonFile(userData, USER_DATABASE_PATH);
-                            }
-                        } catch (Exception e) {
-                            // Continue to next user if decryption fails
-                            continue;
-                        }
-                    }
-                }
-            }
-
-            logger.log(Level.WARNING, "User not found for removal: " + userId);
-            return false;
-
+            return storage.removeUser(userId, password);
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to remove user from database: " + e.getMessage(), e);
             return false;
@@ -893,103 +602,13 @@ public class DataBaseManager {
         try {
             logger.log(Level.INFO, "Updating user with ID: " + originalUserId);
 
-            JsonObject userData = JsonManager.readJsonFile(USER_DATABASE_PATH);
-            if (userData == null) {
-                logger.log(Level.SEVERE, "No user data found for update operation");
-                return false;
-            }
-
             // Map user type to database key
             String newTypeKey = UserTypeMapper.mapToCanonical(userType);
-
-            // Find and update the user
-            for (String currentType : new String[]{"Students", "General Public", "Admins"}) {
-                JsonArray users = userData.getAsJsonArray(currentType);
-                if (users != null) {
-                    for (int i = 0; i < users.size(); i++) {
-                        JsonObject user = users.get(i).getAsJsonObject();
-                        try {
-                            String decryptedUserId = core.SecurityManager.decrypt(
-                                    user.get("UserID").getAsString(), userPassword);
-
-                            if (decryptedUserId.equals(originalUserId)) {
-                                // Update user details
-                                user.addProperty("UserID", SecurityManager.encrypt(originalUserId, userPassword));
-                                user.addProperty("Name", core.SecurityManager.encrypt(userName, userPassword));
-                                user.addProperty("Password", core.SecurityManager.encrypt(userPassword, userPassword));
-
-                                // Handle type change if necessary
-                                if (!currentType.equals(newTypeKey)) {
-                                    if (!moveUserToNewType(userData, user, currentType, newTypeKey)) {
-                                        logger.log(Level.SEVERE, "Failed to move user to new type: " + newTypeKey);
-                                        return false;
-                                    }
-                                }
-
-                                // Save and return
-                                boolean success = JsonManager.saveJsonFile(userData, USER_DATABASE_PATH);
-                                if (success) {
-                                    logger.log(Level.INFO, "Successfully updated user: " + originalUserId);
-                                } else {
-                                    logger.log(Level.SEVERE, "Failed to save user data after update");
-                                }
-                                return success;
-                            }
-                        } catch (Exception e) {
-                            logger.log(Level.FINE, "Failed to decrypt user ID during search", e);
-                            continue;
-                        }
-                    }
-                }
-            }
-
-            // User not found
-            logger.log(Level.WARNING, "User with ID " + originalUserId + " not found for update");
-            return false;
+            return storage.updateUser(originalUserId, userName, userPassword, newTypeKey);
 
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error updating user: " + originalUserId, e);
             return false;
         }
     }
-
-    /**
-     * Moves a user from one type category to another.
-     *
-     * @param userData The complete user data JSON object
-     * @param user The user object to move
-     * @param oldType The old user type category
-     * @param newType The new user type category
-     * @return true if the move was successful, false otherwise
-     */
-    private boolean moveUserToNewType(JsonObject userData, JsonObject user, String oldType, String newType) {
-        try {
-            // Remove from old type
-            JsonArray oldTypeArray = userData.getAsJsonArray(oldType);
-            if (oldTypeArray != null) {
-                for (int i = 0; i < oldTypeArray.size(); i++) {
-                    if (oldTypeArray.get(i).getAsJsonObject().equals(user)) {
-                        oldTypeArray.remove(i);
-                        break;
-                    }
-                }
-            }
-
-            // Add to new type
-            JsonArray newTypeArray = userData.getAsJsonArray(newType);
-            if (newTypeArray == null) {
-                newTypeArray = new JsonArray();
-                userData.add(newType, newTypeArray);
-            }
-            newTypeArray.add(user);
-
-            logger.log(Level.INFO, "Successfully moved user from " + oldType + " to " + newType);
-            return true;
-
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Error moving user between types", e);
-            return false;
-        }
-    }
-
-}
\ No newline at end of file
+}
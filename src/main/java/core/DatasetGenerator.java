@@ -0,0 +1,382 @@
+package core;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Generates synthetic BookData.json and UserData.json files for scale testing.
+ * All content is derived from a seed, so the same settings always produce the same catalog, users
+ * and loans. (Encrypted fields still differ between runs, because every encryption draws a fresh
+ * salt and IV, but they decrypt to the same values.)
+ *
+ * Books get valid shelf-coded IDs from DataBaseManager.generateBookID(). Authors and publishers
+ * follow a Zipf distribution, so a few of them account for most of the catalog, as in a real
+ * library. Users have predictable credentials (see userId() and password()) so tests can log in as
+ * any of them. Loans also follow a Zipf distribution over the catalog, the catalog's OnLoan counts
+ * match the loans handed out, and the requested share of loans is overdue.
+ *
+ * Every user record costs several key derivations (ID, name, password, lookup tag and one per
+ * loan), so users are generated in parallel.
+ *
+ * Usage: java core.DatasetGenerator [--books=N] [--users=N] [--loans=N] [--overdue=RATIO] [--seed=N] [--out=DIR] [--compact=true]
+ */
+public class DatasetGenerator {
+    private static final Logger logger = Logger.getLogger(DatasetGenerator.class.getName());
+
+    /** Highest shelf number a book ID can encode */
+    private static final int SHELF_COUNT = 702;
+
+    /** Exponent of the Zipf distributions */
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    private static final String[] TITLE_WORDS = {
+            "Introduction", "Algorithms", "History", "Modern", "Systems", "Theory", "Design", "Data",
+            "Networks", "Principles", "Practice", "Art", "Science", "World", "Analysis", "Programming",
+            "Language", "Structures", "Physics", "Chemistry", "Economics", "Philosophy", "Poetry", "War",
+            "Shadows", "River", "Empire", "Garden", "Machines", "Ocean", "Winter", "Ashes", "Memory", "Light"
+    };
+
+    private static final String[] FIRST_NAMES = {
+            "Thomas", "Mira", "Stuart", "Ada", "Grace", "Alan", "Edsger", "Barbara", "Donald", "Leslie",
+            "Niklaus", "Tony", "Margaret", "Ken", "Dennis", "Frances", "John", "Elena", "Omar", "Yuki"
+    };
+
+    private static final String[] SURNAMES = {
+            "Cormen", "Valtor", "Russell", "Lovelace", "Hopper", "Turing", "Dijkstra", "Liskov", "Knuth",
+            "Lamport", "Wirth", "Hoare", "Hamilton", "Thompson", "Ritchie", "Allen", "Backus", "Petrova",
+            "Haddad", "Tanaka", "Moreau", "Okafor", "Lindqvist", "Costa"
+    };
+
+    private static final String[] PUBLISHERS = {
+            "MIT Press", "Hollow Fern Press", "Addison-Wesley", "O'Reilly Media", "Prentice Hall",
+            "Springer", "Cambridge University Press", "Oxford University Press", "Penguin", "Manning",
+            "Wiley", "Pearson", "Harper Collins", "Vintage", "No Starch Press", "Pragmatic Bookshelf"
+    };
+
+    private final long seed;
+    private final int bookCount;
+    private final int userCount;
+    private final int loansPerUser;
+    private final double overdueRatio;
+    private final DataBaseManager dbm = new DataBaseManager(null, null);
+
+    /**
+     * Creates a generator.
+     *
+     * @param seed Seed all generated content is derived from
+     * @param bookCount Number of books in the catalog
+     * @param userCount Number of users, of whom one in fifty is an admin (see userType())
+     * @param loansPerUser Loans held by each borrowing user (capped at the catalog size)
+     * @param overdueRatio Share of loans, between 0 and 1, that are overdue
+     */
+    public DatasetGenerator(long seed, int bookCount, int userCount, int loansPerUser, double overdueRatio) {
+        if (bookCount < 1 || userCount < 0 || loansPerUser < 0 || overdueRatio < 0 || overdueRatio > 1) {
+            throw new IllegalArgumentException("Invalid dataset settings");
+        }
+        this.seed = seed;
+        this.bookCount = bookCount;
+        this.userCount = userCount;
+        this.loansPerUser = Math.min(loansPerUser, bookCount);
+        this.overdueRatio = overdueRatio;
+    }
+
+    /**
+     * Plaintext ID of the generated user at an index.
+     *
+     * @param index The user index
+     * @return The user ID
+     */
+    public static String userId(int index) {
+        return String.valueOf(100000 + index);
+    }
+
+    /**
+     * Plaintext password of the generated user at an index.
+     *
+     * @param index The user index
+     * @return The password
+     */
+    public static String password(int index) {
+        return "password" + index;
+    }
+
+    /**
+     * User type of the generated user at an index: one in fifty is an admin,
+     * one in four of the rest is general public and the others are students.
+     *
+     * @param index The user index
+     * @return "Students", "General Public" or "Admins"
+     */
+    public static String userType(int index) {
+        if (index % 50 == 49) {
+            return "Admins";
+        }
+        return index % 4 == 3 ? "General Public" : "Students";
+    }
+
+    /**
+     * Generates the book catalog.
+     * Each book's ID is generated from its shelf number and title; if the ID is already taken,
+     * the title gets an edition suffix and the ID is generated again.
+     *
+     * @return The catalog, in a modifiable list
+     */
+    public List<Book> generateBooks() {
+        Random random = new Random(seed);
+        ZipfSampler authors = new ZipfSampler(SURNAMES.length * FIRST_NAMES.length);
+        ZipfSampler publishers = new ZipfSampler(PUBLISHERS.length);
+        Set<String> bookIds = new HashSet<>(bookCount * 2);
+        List<Book> books = new ArrayList<>(bookCount);
+
+        for (int i = 0; i < bookCount; i++) {
+            String shelf = String.valueOf(1 + random.nextInt(SHELF_COUNT));
+            String baseTitle = TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " "
+                    + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " " + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)];
+            String title = baseTitle;
+            String bookId = dbm.generateBookID(shelf, title);
+            for (int edition = 2; !bookIds.add(bookId); edition++) {
+                title = baseTitle + " (Edition " + edition + ")";
+                bookId = dbm.generateBookID(shelf, title);
+            }
+
+            int author = authors.sample(random);
+            String authorName = FIRST_NAMES[author % FIRST_NAMES.length] + " " + SURNAMES[author / FIRST_NAMES.length];
+            String publisher = PUBLISHERS[publishers.sample(random)];
+            books.add(new Book(bookId, title, authorName, publisher, 1 + random.nextInt(8), 0));
+        }
+        return books;
+    }
+
+    /**
+     * Generates the users and their loans, in parallel.
+     * The books of the given catalog are replaced with copies whose OnLoan counts account for every loan.
+     *
+     * @param books The catalog the loans are drawn from, as returned by generateBooks()
+     * @return The users in UserData.json form
+     */
+    public JsonObject generateUsers(List<Book> books) {
+        ZipfSampler popularity = new ZipfSampler(books.size());
+        String today = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+        logger.log(Level.INFO, "Generating " + userCount + " users as of " + today);
+
+        JsonObject[] users = IntStream.range(0, userCount).parallel()
+                .mapToObj(i -> generateUser(i, books, popularity))
+                .toArray(JsonObject[]::new);
+
+        JsonObject userData = new JsonObject();
+        for (String userType : new String[]{"Students", "General Public", "Admins"}) {
+            userData.add(userType, new JsonArray());
+        }
+
+        int[] loansPerBook = new int[books.size()];
+        for (int i = 0; i < users.length; i++) {
+            userData.getAsJsonArray(userType(i)).add(users[i]);
+        }
+        for (JsonObject user : users) {
+            for (var loan : user.getAsJsonArray("Books")) {
+                loansPerBook[loan.getAsJsonObject().remove("Ordinal").getAsInt()]++;
+            }
+        }
+        for (int b = 0; b < books.size(); b++) {
+            if (loansPerBook[b] > 0) {
+                Book book = books.get(b);
+                books.set(b, book.withCounts(book.available(), loansPerBook[b]));
+            }
+        }
+        return userData;
+    }
+
+    /**
+     * Generates both files and writes them to a directory.
+     *
+     * @param directory The output directory, created if needed
+     * @return true if both files were written, false otherwise
+     */
+    public boolean writeTo(String directory) {
+        try {
+            Files.createDirectories(Paths.get(directory));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to create output directory: " + directory, e);
+            return false;
+        }
+
+        long start = System.nanoTime();
+        List<Book> books = generateBooks();
+        JsonObject users = generateUsers(books);
+        logger.log(Level.INFO, "Generated " + books.size() + " books and " + userCount + " users in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        return JsonManager.saveBooks(books, directory + File.separator + "BookData.json")
+                && JsonManager.saveJsonFile(users, directory + File.separator + "UserData.json");
+    }
+
+    /**
+     * Generates one user record. Loans carry a temporary "Ordinal" property with the catalog
+     * position of the book, which generateUsers() removes once it has counted the loans.
+     * A user's loans are drawn without replacement: a draw that lands on a book the user already
+     * holds takes the next book along instead of drawing again, so a user holding most of the
+     * catalog costs one draw per loan.
+     *
+     * @param index The user index
+     * @param books The catalog
+     * @param popularity Zipf distribution over catalog positions
+     * @return The user record
+     */
+    private JsonObject generateUser(int index, List<Book> books, ZipfSampler popularity) {
+        Random random = new Random(seed ^ (0x9E3779B97F4A7C15L * (index + 1)));
+        String userId = userId(index);
+        String password = password(index);
+        String userType = userType(index);
+
+        JsonObject user = new JsonObject();
+        user.addProperty("UserID", SecurityManager.encrypt(userId, password));
+        user.addProperty(JsonManager.LOOKUP_TAG, SecurityManager.computeLookupTag(userId, password));
+        user.addProperty("Name", SecurityManager.encrypt(
+                FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + SURNAMES[random.nextInt(SURNAMES.length)], password));
+        user.addProperty("Password", SecurityManager.encrypt(password, password));
+
+        JsonArray loans = new JsonArray();
+        if (!userType.equals("Admins")) {
+            int loanDays = Loan.loanDays(userType);
+            Map<Integer, Integer> borrowed = new HashMap<>();
+
+            for (int i = 0; i < loansPerUser; i++) {
+                int ordinal = claim(borrowed, popularity.sample(random), books.size());
+
+                // Overdue loans were issued 1-30 days past the loan period; the rest are still within it
+                boolean overdue = random.nextDouble() < overdueRatio;
+                int daysAgo = overdue ? loanDays + 1 + random.nextInt(30) : random.nextInt(loanDays + 1);
+                String issued = LocalDate.now().minusDays(daysAgo).format(DateTimeFormatter.ISO_LOCAL_DATE);
+
+                JsonObject loan = new JsonObject();
+                loan.addProperty("BookID", books.get(ordinal).bookId());
+                loan.addProperty("DateIssued", SecurityManager.encrypt(issued, password));
+                loan.addProperty("Status", dbm.getDueStatus(dbm.getDueDate(issued, userType)));
+                loan.addProperty("Ordinal", ordinal);
+                loans.add(loan);
+            }
+        }
+        user.add("Books", loans);
+        return user;
+    }
+
+    /**
+     * Claims the first unclaimed position at or after a drawn one, wrapping around the catalog.
+     * Claimed positions map to where the search for a free one continues, with paths compressed
+     * as they are walked.
+     *
+     * @param claimed Claimed positions of one user; at least one position must still be free
+     * @param ordinal The drawn position
+     * @param size Number of positions
+     * @return The claimed position
+     */
+    private static int claim(Map<Integer, Integer> claimed, int ordinal, int size) {
+        int free = ordinal;
+        while (claimed.containsKey(free)) {
+            free = claimed.get(free);
+        }
+        int next = (free + 1) % size;
+        for (int position = ordinal; position != free; ) {
+            position = claimed.put(position, next);
+        }
+        claimed.put(free, next);
+        return free;
+    }
+
+    /**
+     * Samples ranks 0..n-1 with probability proportional to 1 / (rank + 1)^s,
+     * by binary search over the cumulative distribution.
+     */
+    private static final class ZipfSampler {
+        private final double[] cumulative;
+
+        ZipfSampler(int n) {
+            cumulative = new double[n];
+            double total = 0;
+            for (int rank = 0; rank < n; rank++) {
+                total += 1.0 / Math.pow(rank + 1, ZIPF_EXPONENT);
+                cumulative[rank] = total;
+            }
+            for (int rank = 0; rank < n; rank++) {
+                cumulative[rank] /= total;
+            }
+        }
+
+        int sample(Random random) {
+            double u = random.nextDouble();
+            int low = 0;
+            int high = cumulative.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < u) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * @param args Options in --name=value form: books, users, loans, overdue, seed, out and compact
+     */
+    public static void main(String[] args) {
+        int books = 10000;
+        int users = 1000;
+        int loans = 2;
+        double overdue = 0.1;
+        long seed = 42;
+        String out = "generated-data";
+
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2 || !option[0].startsWith("--")) {
+                System.err.println("Unrecognized argument: " + arg);
+                System.exit(2);
+            }
+            switch (option[0]) {
+                case "--books" -> books = Integer.parseInt(option[1]);
+                case "--users" -> users = Integer.parseInt(option[1]);
+                case "--loans" -> loans = Integer.parseInt(option[1]);
+                case "--overdue" -> overdue = Double.parseDouble(option[1]);
+                case "--seed" -> seed = Long.parseLong(option[1]);
+                case "--out" -> out = option[1];
+                case "--compact" -> JsonManager.setCompactOutput(Boolean.parseBoolean(option[1]));
+                default -> {
+                    System.err.println("Unrecognized option: " + option[0]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        // generateBookID() logs every ID at INFO, which would swamp the console
+        Logger.getLogger(DataBaseManager.class.getName()).setLevel(Level.WARNING);
+        for (Handler handler : Logger.getLogger("").getHandlers()) {
+            handler.setLevel(Level.INFO);
+        }
+
+        boolean written = new DatasetGenerator(seed, books, users, loans, overdue).writeTo(out);
+        System.exit(written ? 0 : 1);
+    }
+}
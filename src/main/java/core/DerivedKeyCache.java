@@ -0,0 +1,143 @@
+package core;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded least-recently-used cache of PBKDF2-derived key bytes, keyed by (password, salt).
+ * Deriving a key costs tens of milliseconds, and a single session decrypts the same
+ * records (user ID, name, loan dates) many times, so repeat derivations are served from here.
+ * Entries are indexed by a SHA-256 fingerprint of the password and salt, so the cache
+ * never holds the password itself. The cache is owned by core.SessionManager and wiped on logout.
+ */
+public class DerivedKeyCache {
+    private static final Logger logger = Logger.getLogger(DerivedKeyCache.class.getName());
+
+    /** Default maximum number of derived keys kept per session */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /** Maximum number of entries before the least recently used key is evicted */
+    private final int capacity;
+
+    /** Fingerprint to derived key bytes, in access order */
+    private final LinkedHashMap<String, byte[]> entries;
+
+    /** Number of lookups served from the cache */
+    private long hits;
+
+    /** Number of lookups that required a fresh derivation */
+    private long misses;
+
+    /**
+     * Creates a cache holding at most the given number of derived keys.
+     *
+     * @param capacity The maximum number of entries
+     */
+    public DerivedKeyCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                if (size() > DerivedKeyCache.this.capacity) {
+                    Arrays.fill(eldest.getValue(), (byte) 0);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Looks up the key previously derived for a password and salt.
+     *
+     * @param password The password the key was derived from
+     * @param salt The salt the key was derived with
+     * @return A copy of the derived key bytes, or null if not cached
+     */
+    public synchronized byte[] get(String password, byte[] salt) {
+        byte[] keyBytes = entries.get(fingerprint(password, salt));
+        if (keyBytes == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return keyBytes.clone();
+    }
+
+    /**
+     * Stores the key derived for a password and salt.
+     *
+     * @param password The password the key was derived from
+     * @param salt The salt the key was derived with
+     * @param keyBytes The derived key bytes (copied)
+     */
+    public synchronized void put(String password, byte[] salt, byte[] keyBytes) {
+        byte[] previous = entries.put(fingerprint(password, salt), keyBytes.clone());
+        if (previous != null) {
+            Arrays.fill(previous, (byte) 0);
+        }
+    }
+
+    /**
+     * Wipes all cached key material and resets the counters.
+     */
+    public synchronized void clear() {
+        logger.log(Level.FINE, "Clearing derived key cache: " + hits + " hits, " + misses + " misses, " + entries.size() + " entries");
+        for (byte[] keyBytes : entries.values()) {
+            Arrays.fill(keyBytes, (byte) 0);
+        }
+        entries.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * @return The number of lookups served from the cache since the last clear
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return The number of lookups that required a derivation since the last clear
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return The number of keys currently cached
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Computes the cache index for a password and salt.
+     *
+     * @param password The password
+     * @param salt The salt
+     * @return A Base64 SHA-256 fingerprint of the length-prefixed password and the salt
+     */
+    private static String fingerprint(String password, byte[] salt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+            digest.update((byte) (passwordBytes.length >>> 24));
+            digest.update((byte) (passwordBytes.length >>> 16));
+            digest.update((byte) (passwordBytes.length >>> 8));
+            digest.update((byte) passwordBytes.length);
+            digest.update(passwordBytes);
+            digest.update(salt);
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
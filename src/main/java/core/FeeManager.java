@@ -1,8 +1,5 @@
 package core;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -47,59 +44,24 @@ public class FeeManager {
 
     /**
      * Calculates the total fines for all overdue books of the current user.
+     * Screens that also list the loans should use DataBaseManager.getLoanSummary(), which includes the total.
      *
      * @return The total fine amount as a double
      */
     public static double calculateTotalFines() {
-        double totalFines = 0.0;
-
         try {
             if (SessionManager.getInstance().getCurrentUser() == null || SessionManager.getInstance().getKey() == null) {
                 return 0.0;
             }
 
             DataBaseManager dbm = new DataBaseManager();
-            JsonArray books = dbm.findBorrowedBooks(SessionManager.getInstance().getCurrentUser(), SessionManager.getInstance().getKey());
+            LoanSummary summary = dbm.getLoanSummary(SessionManager.getInstance().getCurrentUser(), SessionManager.getInstance().getKey());
+            return summary != null ? summary.totalFines() : 0.0;
 
-            if (books == null || books.isEmpty()) {
-                return 0.0;
-            }
-
-            String userType = dbm.getUserType(SessionManager.getInstance().getCurrentUser(), SessionManager.getInstance().getKey());
-            if (userType == null) {
-                return 0.0;
-            }
-
-            for (int i = 0; i < books.size(); i++) {
-                try {
-                    JsonObject book = books.get(i).getAsJsonObject();
-
-                    if (!book.has("DateIssued") || !book.has("Status")) {
-                        continue;
-                    }
-
-                    int status = book.get("Status").getAsInt();
-                    if (status == -1) { // Overdue
-                        String dateIssued = SecurityManager.decrypt(book.get("DateIssued").getAsString(), SessionManager.getInstance().getKey());
-                        String dateDue = dbm.getDueDate(dateIssued, userType);
-
-                        if (dateDue != null) {
-                            int daysOverdue = dbm.getDaysOverdue(dateDue);
-                            if (daysOverdue > 0) {
-                                double fine = calculateFee(daysOverdue, userType);
-                                totalFines += fine;
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    logger.log(Level.WARNING, "Error calculating fine for book at index " + i, e);
-                }
-            }
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error calculating total fines", e);
+            return 0.0;
         }
-
-        return totalFines;
     }
 
 }
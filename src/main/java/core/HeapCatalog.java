@@ -0,0 +1,356 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Default core.CatalogBackend: the catalog as a list of immutable core.Book records on the heap.
+ * An index from BookID to catalog position serves single-book lookups without scanning, and a
+ * core.CatalogSearchIndex serves substring search. The position index is keyed by IDs encoded with
+ * core.BookId in a core.LongIntHashMap, so lookups neither allocate nor box; the rare IDs that do
+ * not follow the BookID format are kept in a separate String-keyed map. Because books are
+ * immutable, a save snapshot is a copy of the list alone.
+ *
+ * Building the search index takes several seconds for a catalog of a million books, so for large
+ * catalogs it is built on a background thread from a copy of the list, and searches scan the
+ * catalog until it is ready. Changes made to the catalog during the build are recorded and applied
+ * to the finished index before it is installed, so steady edits and checkouts never restart it.
+ * Methods are synchronized so the background build can install the index safely.
+ *
+ * Books are matched by identity: replace() and remove() expect the instances this backend returned.
+ */
+public class HeapCatalog implements CatalogBackend {
+    private static final Logger logger = Logger.getLogger(HeapCatalog.class.getName());
+
+    /** The catalog */
+    private final List<Book> books;
+
+    /** Read-only view of the catalog handed out by books() */
+    private final List<Book> booksView;
+
+    /** Encoded BookID to catalog position; the first book wins if an ID is duplicated */
+    private final LongIntHashMap positionsByCode;
+
+    /** Catalog position of books whose ID cannot be encoded by core.BookId */
+    private final Map<String, Integer> irregularPositions = new HashMap<>();
+
+    /** Catalogs at least this large build their search index in the background */
+    private static final int BACKGROUND_INDEX_THRESHOLD = 50_000;
+
+    /** Trigram search index over the catalog, or null while it is being built */
+    private CatalogSearchIndex searchIndex;
+
+    /**
+     * A change to apply to a search index built in the background.
+     *
+     * @param current The book replaced or removed, or null for an addition
+     * @param updated The book added or replacing current, or null for a removal
+     */
+    private record Change(Book current, Book updated) {}
+
+    /** Changes made since the background build copied the catalog, or null when no build is running */
+    private List<Change> changesDuringBuild;
+
+    /** Whether close() has been called */
+    private boolean closed;
+
+    /** Whether the catalog contained the same BookID more than once when it was loaded */
+    private boolean hasDuplicateIds;
+
+    /**
+     * Takes over a loaded catalog and indexes it.
+     *
+     * @param books The loaded catalog; the backend takes ownership of the list
+     * @param filePath Path of the catalog file, for logging
+     */
+    public HeapCatalog(List<Book> books, String filePath) {
+        this.books = books;
+        this.booksView = Collections.unmodifiableList(books);
+        this.positionsByCode = new LongIntHashMap(books.size());
+
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            if (positionOf(book.bookId()) >= 0) {
+                hasDuplicateIds = true;
+            } else {
+                setPosition(book.bookId(), i);
+            }
+        }
+        if (!irregularPositions.isEmpty()) {
+            logger.log(Level.FINE, irregularPositions.size() + " book IDs do not follow the BookID format: " + filePath);
+        }
+        if (hasDuplicateIds) {
+            logger.log(Level.WARNING, "Catalog contains duplicate book IDs; lookups return the first record: " + filePath);
+        }
+
+        if (books.size() < BACKGROUND_INDEX_THRESHOLD) {
+            searchIndex = buildSearchIndex(books);
+        } else {
+            Thread.ofPlatform().daemon().name("catalog-search-index").start(() -> indexInBackground(filePath));
+        }
+    }
+
+    /**
+     * Builds the search index from a copy of the catalog, applies the changes made in the
+     * meantime, then installs it.
+     *
+     * @param filePath Path of the catalog file, for logging
+     */
+    private void indexInBackground(String filePath) {
+        long start = System.nanoTime();
+        List<Book> copy;
+        synchronized (this) {
+            if (closed) return;
+            copy = List.copyOf(books);
+            changesDuringBuild = new ArrayList<>();
+        }
+
+        CatalogSearchIndex built = buildSearchIndex(copy);
+
+        synchronized (this) {
+            if (closed) return;
+            // The copy holds the same instances, so the changes apply exactly as they would have live
+            for (Change change : changesDuringBuild) {
+                if (change.current() == null) {
+                    built.add(change.updated());
+                } else if (change.updated() == null) {
+                    built.remove(change.current());
+                } else {
+                    built.replace(change.current(), change.updated());
+                }
+            }
+            logger.log(Level.FINE, "Built search index for " + copy.size() + " books in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms, then applied "
+                    + changesDuringBuild.size() + " changes made meanwhile: " + filePath);
+            changesDuringBuild = null;
+            searchIndex = built;
+        }
+    }
+
+    /**
+     * Applies a change to the search index, or records it for the background build.
+     *
+     * @param current The book replaced or removed, or null for an addition
+     * @param updated The book added or replacing current, or null for a removal
+     */
+    private void indexChange(Book current, Book updated) {
+        if (searchIndex != null) {
+            if (current == null) {
+                searchIndex.add(updated);
+            } else if (updated == null) {
+                searchIndex.remove(current);
+            } else {
+                searchIndex.replace(current, updated);
+            }
+        } else if (changesDuringBuild != null) {
+            changesDuringBuild.add(new Change(current, updated));
+        }
+    }
+
+    /**
+     * @param books Books in catalog order
+     * @return A search index over them
+     */
+    private static CatalogSearchIndex buildSearchIndex(List<Book> books) {
+        CatalogSearchIndex index = new CatalogSearchIndex();
+        for (Book book : books) {
+            index.add(book);
+        }
+        return index;
+    }
+
+    @Override
+    public synchronized List<Book> books() {
+        return booksView;
+    }
+
+    @Override
+    public synchronized Book findById(String bookId) {
+        int position = positionOf(bookId);
+        return position >= 0 ? books.get(position) : null;
+    }
+
+    @Override
+    public synchronized Book findById(long code) {
+        int position = positionsByCode.get(code);
+        return position >= 0 ? books.get(position) : null;
+    }
+
+    @Override
+    public synchronized boolean add(Book book) {
+        String bookId = book.bookId();
+        if (positionOf(bookId) >= 0) {
+            return false;
+        }
+        books.add(book);
+        setPosition(bookId, books.size() - 1);
+        indexChange(null, book);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean replace(Book current, Book updated) {
+        String oldBookId = current.bookId();
+        String newBookId = updated.bookId();
+        boolean idChanged = !oldBookId.equals(newBookId);
+        if (idChanged && positionOf(newBookId) >= 0) {
+            return false;
+        }
+        int index = indexOf(current);
+        if (index < 0) {
+            return false;
+        }
+
+        books.set(index, updated);
+        if (idChanged) {
+            if (positionOf(oldBookId) == index) {
+                removePosition(oldBookId);
+                if (hasDuplicateIds) {
+                    reindexDuplicate(oldBookId);
+                }
+            }
+            setPosition(newBookId, index);
+        }
+        indexChange(current, updated);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Book book) {
+        int index = indexOf(book);
+        if (index < 0) {
+            return false;
+        }
+        books.remove(index);
+        indexChange(book, null);
+        String bookId = book.bookId();
+        boolean wasIndexed = positionOf(bookId) == index;
+        if (wasIndexed) {
+            removePosition(bookId);
+        }
+
+        // Every later book moved down one position
+        for (int i = index; i < books.size(); i++) {
+            String movedId = books.get(i).bookId();
+            if (positionOf(movedId) == i + 1) {
+                setPosition(movedId, i);
+            }
+        }
+
+        if (wasIndexed && hasDuplicateIds) {
+            reindexDuplicate(bookId);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized List<Book> search(String searchTerm) {
+        if (searchIndex != null) {
+            return searchIndex.search(searchTerm);
+        }
+
+        // The index is still being built
+        String term = searchTerm.toLowerCase();
+        List<Book> matches = new ArrayList<>();
+        for (Book book : books) {
+            if (term.isEmpty() || CatalogSearchIndex.matches(book, term)) {
+                matches.add(book);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public synchronized List<Book> snapshot() {
+        return List.copyOf(books);
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        positionsByCode.clear();
+        irregularPositions.clear();
+        searchIndex = null;
+    }
+
+    /**
+     * Re-indexes the next record carrying an ID after the indexed record with that ID was removed.
+     * Only matters for catalog files that contain duplicate IDs.
+     *
+     * @param bookId The ID whose index entry was removed
+     */
+    private void reindexDuplicate(String bookId) {
+        // Not worth tracking exactly when the last duplicate disappears; a reload resets the flag
+        for (int i = 0; i < books.size(); i++) {
+            if (books.get(i).bookId().equals(bookId)) {
+                setPosition(bookId, i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds the position of a book, through the index unless it is a duplicate.
+     *
+     * @param book The book
+     * @return Its index in the catalog, or -1 if it is not part of the catalog
+     */
+    private int indexOf(Book book) {
+        int position = positionOf(book.bookId());
+        if (position >= 0 && books.get(position) == book) {
+            return position;
+        }
+        if (!hasDuplicateIds) {
+            return -1;
+        }
+        for (int i = 0; i < books.size(); i++) {
+            if (books.get(i) == book) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param bookId A book ID
+     * @return The indexed catalog position of the ID, or -1 if it is not indexed
+     */
+    private int positionOf(String bookId) {
+        long code = BookId.encode(bookId);
+        if (code != BookId.INVALID) {
+            return positionsByCode.get(code);
+        }
+        Integer position = irregularPositions.get(bookId);
+        return position != null ? position : -1;
+    }
+
+    /**
+     * @param bookId A book ID
+     * @param position The catalog position to index it at
+     */
+    private void setPosition(String bookId, int position) {
+        long code = BookId.encode(bookId);
+        if (code != BookId.INVALID) {
+            positionsByCode.put(code, position);
+        } else {
+            irregularPositions.put(bookId, position);
+        }
+    }
+
+    /**
+     * @param bookId A book ID whose index entry to drop
+     */
+    private void removePosition(String bookId) {
+        long code = BookId.encode(bookId);
+        if (code != BookId.INVALID) {
+            positionsByCode.remove(code);
+        } else {
+            irregularPositions.remove(bookId);
+        }
+    }
+}
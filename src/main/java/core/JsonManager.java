@@ -1,6 +1,7 @@
 package core;
 
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import java.io.FileReader;
@@ -10,11 +11,23 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.io.File;
+import java.io.BufferedReader;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Utility class for handling JSON file operations in the library management system.
@@ -24,6 +37,28 @@ import java.io.File;
 public class JsonManager {
     private static final Logger logger = Logger.getLogger(JsonManager.class.getName());
 
+    /** User type categories stored in the user database */
+    private static final String[] USER_TYPES = {"Students", "General Public", "Admins"};
+
+    /** Name of the blind-index property stored next to each encrypted UserID */
+    public static final String LOOKUP_TAG = "LookupTag";
+
+    /** Shared Gson instances for writing data files; Gson is thread-safe */
+    private static final Gson PRETTY_GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final Gson COMPACT_GSON = new Gson();
+
+    /** Size of the character buffer between the JsonWriter and the file channel */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /** Size of the character buffer under the JsonReader when loading the catalog */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /** Writes book records; the plain adapter is stateless and can be shared */
+    private static final BookTypeAdapter BOOK_WRITER = new BookTypeAdapter();
+
+    /** Whether data files are written without pretty-printing */
+    private static volatile boolean compactOutput;
+
     /**
      * Determines if a path is an absolute file path or just a filename.
      * @param path The path to check
@@ -49,9 +84,14 @@ public class JsonManager {
 
     /**
      * Reads a JSON file from the user data directory or from a specified path.
+     * If a save of the file is still queued in core.PersistenceExecutor, a copy of the queued contents is returned.
      */
     public static JsonObject readJsonFile(String pathOrFileName) {
         String filePath = getProperFilePath(pathOrFileName);
+        JsonElement pendingSnapshot = PersistenceExecutor.pendingSnapshot(filePath);
+        if (pendingSnapshot != null) {
+            return pendingSnapshot.getAsJsonObject();
+        }
         try (Reader reader = new FileReader(filePath, StandardCharsets.UTF_8)) {
             JsonObject jsonObject = JsonParser.parseReader(reader).getAsJsonObject();
             logger.log(Level.FINE, "Successfully read JSON object from: " + filePath);
@@ -64,9 +104,14 @@ public class JsonManager {
 
     /**
      * Reads a JSON array file from the user data directory or from a specified path.
+     * If a save of the file is still queued in core.PersistenceExecutor, a copy of the queued contents is returned.
      */
     public static JsonArray readJsonArrayFile(String pathOrFileName) {
         String filePath = getProperFilePath(pathOrFileName);
+        JsonElement pendingSnapshot = PersistenceExecutor.pendingSnapshot(filePath);
+        if (pendingSnapshot != null) {
+            return pendingSnapshot.getAsJsonArray();
+        }
         try (Reader reader = new FileReader(filePath, StandardCharsets.UTF_8)) {
             JsonArray jsonArray = JsonParser.parseReader(reader).getAsJsonArray();
             logger.log(Level.FINE, "Successfully read JSON array from: " + filePath);
@@ -78,273 +123,274 @@ public class JsonManager {
     }
 
     /**
-     * Saves a JsonObject to the user data directory or to a specified path.
+     * Reads a book catalog file into typed records, streaming it through core.BookTypeAdapter so
+     * no JSON tree of the whole catalog is built. Author and publisher strings are shared between
+     * the books of one load. If a save of the file is still queued in core.PersistenceExecutor,
+     * a copy of the queued catalog is returned.
+     *
+     * @param pathOrFileName The catalog file name or path
+     * @return A new, modifiable list of the books in file order, or null if the file cannot be read
      */
-    public static boolean saveJsonFile(JsonObject jsonObject, String pathOrFileName) {
+    public static List<Book> readBooks(String pathOrFileName) {
         String filePath = getProperFilePath(pathOrFileName);
-        try {
-            Path path = Paths.get(filePath);
-            Files.createDirectories(path.getParent());
-            
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            String jsonString = gson.toJson(jsonObject);
-            
-            try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
-                writer.write(jsonString);
+        List<?> pendingSnapshot = PersistenceExecutor.pendingSnapshot(filePath, List.class);
+        if (pendingSnapshot != null) {
+            List<Book> books = new ArrayList<>(pendingSnapshot.size());
+            for (Object book : pendingSnapshot) {
+                books.add((Book) book);
             }
-            
-            logger.log(Level.FINE, "Successfully saved JSON object to: " + filePath);
-            return true;
+            return books;
+        }
+        try (JsonReader reader = new JsonReader(new BufferedReader(
+                Files.newBufferedReader(Paths.get(filePath), StandardCharsets.UTF_8), READ_BUFFER_SIZE))) {
+            BookTypeAdapter adapter = new BookTypeAdapter(true);
+            List<Book> books = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                Book book = adapter.read(reader);
+                if (book == null || book.bookId() == null) {
+                    throw new IOException("Book record without a BookID at index " + books.size());
+                }
+                books.add(book);
+            }
+            reader.endArray();
+            logger.log(Level.FINE, "Successfully read " + books.size() + " books from: " + filePath);
+            return books;
         } catch (Exception e) {
-            logger.log(Level.SEVERE, "Error saving JSON object to: " + filePath, e);
-            return false;
+            logger.log(Level.SEVERE, "Error reading book catalog file: " + filePath, e);
+            return null;
         }
     }
 
+    /**
+     * Saves a book catalog to the user data directory or to a specified path.
+     * Writes on the calling thread; the application's catalog is saved through core.CatalogStore instead.
+     *
+     * @param books The books, in file order
+     * @param pathOrFileName The catalog file name or path
+     * @return true if the file was written, false otherwise
+     */
+    public static boolean saveBooks(List<Book> books, String pathOrFileName) {
+        return writeBooks(books, getProperFilePath(pathOrFileName));
+    }
+
+    /**
+     * Saves a JsonObject to the user data directory or to a specified path.
+     * Writes on the calling thread; application data is saved through core.PersistenceExecutor instead.
+     */
+    public static boolean saveJsonFile(JsonObject jsonObject, String pathOrFileName) {
+        return writeJson(jsonObject, getProperFilePath(pathOrFileName));
+    }
+
     /**
      * Saves a JsonArray to the user data directory or to a specified path.
+     * Writes on the calling thread; application data is saved through core.PersistenceExecutor instead.
      */
     public static boolean saveJsonArrayFile(JsonArray jsonArray, String pathOrFileName) {
-        String filePath = getProperFilePath(pathOrFileName);
-        try {
-            Path path = Paths.get(filePath);
-            Files.createDirectories(path.getParent());
-            
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            String jsonString = gson.toJson(jsonArray);
-            
-            try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
-                writer.write(jsonString);
-            }
-            
-            logger.log(Level.FINE, "Successfully saved JSON array to: " + filePath);
-            return true;
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Error saving JSON array to: " + filePath, e);
-            return false;
-        }
+        return writeJson(jsonArray, getProperFilePath(pathOrFileName));
     }
 
     /**
-     * Updates the due status of a borrowed book for a specific user in the database.
-     * Finds the user by decrypting user IDs, then locates and updates the specific book's status.
+     * Selects whether data files are written compactly (no indentation or line breaks)
+     * instead of pretty-printed. Compact files are smaller and faster to write and read.
      *
-     * @param currentUser The ID of the user who borrowed the book
-     * @param bookId The ID of the book whose status needs to be updated
-     * @param statusActual The new status code (1: on time, 0: due today, -1: overdue)
-     * @param userDatabasePath Path to the user database file
-     * @param key The encryption key (user's password) for decrypting user IDs
+     * @param compact true for compact output, false for pretty-printed output (the default)
      */
-    public static void saveJsonDueStatus(String currentUser, String bookId, int statusActual, String userDatabasePath, String key) {
-        try {
-            JsonObject userData = JsonManager.readJsonFile(userDatabasePath);
-            if (userData == null) {
-                logger.log(Level.SEVERE, "User data is null. Cannot update due status.");
-                return;
-            }
-
-            boolean updated = false;
-            for (String userType : new String[]{"Students", "General Public", "Admins"}) {
-                if (!userData.has(userType)) continue;
-
-                JsonArray users = userData.getAsJsonArray(userType);
-                for (int i = 0; i < users.size(); i++) {
-                    JsonObject user = users.get(i).getAsJsonObject();
-                    String encryptedId = user.get("UserID").getAsString();
-
-                    try {
-                        String decryptedId = SecurityManager.decrypt(encryptedId, key);
-                        if (decryptedId.equals(currentUser)) {
-                            if (user.has("Books") && !user.get("Books").isJsonNull()) {
-                                JsonArray books = user.getAsJsonArray("Books");
-                                for (int j = 0; j < books.size(); j++) {
-                                    JsonObject book = books.get(j).getAsJsonObject();
-                                    String currentBookId = book.get("BookID").getAsString();
-
-                                    if (currentBookId.equals(bookId)) {
-                                        book.addProperty("Status", statusActual);
-                                        updated = true;
-                                        break;
-                                    }
-                                }
-                            }
-                        }
-
-                        if (updated) break;
-
-                    } catch (Exception e) {
-                        continue;
-                    }
-                }
+    public static void setCompactOutput(boolean compact) {
+        compactOutput = compact;
+    }
 
-                if (updated) break;
+    /**
+     * @return true if data files are written compactly, false if they are pretty-printed
+     */
+    public static boolean isCompactOutput() {
+        return compactOutput;
+    }
 
-            }
+    /**
+     * Writes a JSON tree to a file, replacing its contents.
+     * The tree is streamed token by token through a JsonWriter into a temporary file next to the
+     * target, so no String of the whole document is built and extra memory stays constant.
+     * The temporary file is forced to disk and then atomically renamed over the target, so a crash
+     * mid-write leaves the previous file intact.
+     *
+     * @param json The JSON object or array to write
+     * @param filePath Full path of the file
+     * @return true if the file was written, false otherwise
+     */
+    static boolean writeJson(JsonElement json, String filePath) {
+        return writeAtomically(filePath, (gson, jsonWriter) -> gson.toJson(json, jsonWriter));
+    }
 
-            if (updated) {
-                saveJsonFile(userData, userDatabasePath);
-                logger.log(Level.INFO, "Successfully updated due status for user: " + currentUser);
-            } else {
-                logger.log(Level.WARNING, "User not found or book not found for user: " + currentUser);
+    /**
+     * Writes a book catalog to a file through core.BookTypeAdapter, the same way as writeJson().
+     * Used by core.CatalogStore as its core.PersistenceExecutor snapshot writer.
+     *
+     * @param books The books, in file order
+     * @param filePath Full path of the file
+     * @return true if the file was written, false otherwise
+     */
+    static boolean writeBooks(List<Book> books, String filePath) {
+        return writeAtomically(filePath, (_, jsonWriter) -> {
+            jsonWriter.beginArray();
+            for (Book book : books) {
+                BOOK_WRITER.write(jsonWriter, book);
             }
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Error updating due status for user: " + currentUser, e);
-        }
+            jsonWriter.endArray();
+        });
     }
-    
-    public enum BookOperation {
-        BORROW,
-        RETURN
+
+    /**
+     * Streams a document into a file's JsonWriter.
+     */
+    @FunctionalInterface
+    private interface DocumentWriter {
+        void write(Gson gson, JsonWriter jsonWriter) throws IOException;
     }
 
     /**
-     * Updates book availability counts when a book is borrowed or returned.
+     * Streams a document through a JsonWriter into a temporary file next to the target, forces it
+     * to disk and atomically renames it over the target.
      *
-     * @param bookId The ID of the book
-     * @param bookDatabasePath Path to the book database file
-     * @param operation The type of operation (BORROW or RETURN)
-     * @return true if successful, false otherwise
+     * @param filePath Full path of the file
+     * @param document Writes the document
+     * @return true if the file was written, false otherwise
      */
-    public static boolean updateBookAvailability(String bookId, String bookDatabasePath, BookOperation operation) {
+    private static boolean writeAtomically(String filePath, DocumentWriter document) {
+        Path path = Paths.get(filePath);
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
         try {
-            JsonArray bookData = readJsonArrayFile(bookDatabasePath);
-            if (bookData == null) {
-                logger.log(Level.SEVERE, "Book data is null. Cannot update availability.");
-                return true;
+            Files.createDirectories(path.getParent());
+
+            Gson gson = compactOutput ? COMPACT_GSON : PRETTY_GSON;
+            try (FileChannel channel = FileChannel.open(tempPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+                JsonWriter jsonWriter = gson.newJsonWriter(writer);
+                document.write(gson, jsonWriter);
+                jsonWriter.flush();
+                channel.force(true);
             }
 
-            for (int i = 0; i < bookData.size(); i++) {
-                JsonObject book = bookData.get(i).getAsJsonObject();
-                if (book.get("BookID").getAsString().equals(bookId)) {
-                    int available = book.get("Available").getAsInt();
-                    int onLoan = book.get("OnLoan").getAsInt();
-
-                    switch (operation) {
-                        case BORROW:
-                            if (available <= 0) {
-                                logger.log(Level.WARNING, "Book not available for borrowing: " + bookId);
-                                return true;
-                            }
-                            book.addProperty("Available", available - 1);
-                            book.addProperty("OnLoan", onLoan + 1);
-                            break;
-
-                        case RETURN:
-                            book.addProperty("Available", available + 1);
-                            book.addProperty("OnLoan", Math.max(0, onLoan - 1));
-                            break;
-                    }
-                    
-                    boolean success = saveJsonArrayFile(bookData, bookDatabasePath);
-                    
-                    if (success) {
-                        logger.log(Level.INFO, "Successfully updated book availability for " + operation + ": " + bookId);
-                    } else {
-                        logger.log(Level.SEVERE, "Failed to save book data after availability update");
-                    }
-                    return !success;
-                }
+            try {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                logger.log(Level.WARNING, "Atomic rename not supported, replacing non-atomically: " + filePath);
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
             }
 
-            logger.log(Level.WARNING, "Book not found: " + bookId);
+            logger.log(Level.FINE, "Successfully saved JSON to: " + filePath);
             return true;
-
         } catch (Exception e) {
-            logger.log(Level.SEVERE, "Error updating book availability for " + operation + ": " + bookId, e);
-            return true;
+            logger.log(Level.SEVERE, "Error saving JSON to: " + filePath, e);
+            try {
+                Files.deleteIfExists(tempPath);
+            } catch (IOException cleanupError) {
+                logger.log(Level.WARNING, "Failed to remove temporary file: " + tempPath, cleanupError);
+            }
+            return false;
         }
     }
 
+    /**
+     * Reads the user database: the snapshot file plus every loan journal event not yet folded into it.
+     * All user data reads should go through here rather than readJsonFile().
+     *
+     * @param userDatabasePath Path to the user database file
+     * @return The current user data tree, or null if the snapshot cannot be read
+     */
+    public static JsonObject readUserData(String userDatabasePath) {
+        return LoanJournal.forPath(getProperFilePath(userDatabasePath)).readUserData();
+    }
 
     /**
-     * Removes a book from a user's borrowed books list.
-     * 
-     * @param userId The ID of the user
-     * @param bookId The ID of the book to remove
-     * @param password The encryption password
+     * Saves a user data tree obtained from readUserData() as the new snapshot
+     * and trims the loan journal events it already contains once the snapshot is on disk.
+     * The write happens on the core.PersistenceExecutor thread; the tree must not be modified afterwards.
+     *
+     * @param userData The user data tree to save
      * @param userDatabasePath Path to the user database file
-     * @param operation The type of operation (BORROW or RETURN)
-     * @return true if successful, false otherwise
+     * @return true if the snapshot was queued for saving, false otherwise
      */
-    public static boolean modifyUserBook(String userId, String bookId, String password, String userDatabasePath, BookOperation operation) {
-        try {
-            JsonObject userData = readJsonFile(userDatabasePath);
-            if (userData == null) {
-                logger.log(Level.SEVERE, "User data is null. Cannot modify book.");
-                return true;
-            }
+    public static boolean saveUserData(JsonObject userData, String userDatabasePath) {
+        return LoanJournal.forPath(getProperFilePath(userDatabasePath)).saveSnapshot(userData);
+    }
 
-            for (String userType : new String[]{"Students", "General Public", "Admins"}) {
-                JsonArray users = userData.getAsJsonArray(userType);
-                for (int i = 0; i < users.size(); i++) {
-                    JsonObject user = users.get(i).getAsJsonObject();
-                    String encryptedId = user.get("UserID").getAsString();
-
-                    try {
-                        String decryptedId = SecurityManager.decrypt(encryptedId, password);
-                        if (decryptedId.equals(userId)) {
-
-                            switch (operation) {
-                                case BORROW:
-                                    if (!user.has("Books")) {
-                                        user.add("Books", new JsonArray());
-                                    }
-
-                                    JsonArray borrowBooks = user.getAsJsonArray("Books");
-
-                                    JsonObject newBook = new JsonObject();
-                                    newBook.addProperty("BookID", bookId);
-
-                                    String currentDate = java.time.LocalDate.now().toString();
-                                    String encryptedDate = SecurityManager.encrypt(currentDate, password);
-                                    newBook.addProperty("DateIssued", encryptedDate);
-
-                                    newBook.addProperty("Status", 1);
-
-                                    borrowBooks.add(newBook);
-
-                                    // SAVE AND RETURN
-                                    boolean borrowSuccess = saveJsonFile(userData, userDatabasePath);
-                                    if (borrowSuccess) {
-                                        logger.log(Level.INFO, "Successfully added book " + bookId + " to user " + userId);
-                                    }
-                                    return !borrowSuccess;
-                                    
-                                case RETURN:
-                                    if (user.has("Books") && !user.get("Books").isJsonNull()) {
-                                        JsonArray returnBooks = user.getAsJsonArray("Books");
-                                        for (int j = 0; j < returnBooks.size(); j++) {
-                                            JsonObject book = returnBooks.get(j).getAsJsonObject();
-                                            if (book.get("BookID").getAsString().equals(bookId)) {
-                                                returnBooks.remove(j);
-                                                
-                                                // SAVE AND RETURN
-                                                boolean returnSuccess = saveJsonFile(userData, userDatabasePath);
-                                                if (returnSuccess) {
-                                                    logger.log(Level.INFO, "Successfully removed book " + bookId + " from user " + userId);
-                                                }
-                                                return !returnSuccess;
-                                            }
-                                        }
-                                    }
-                                    // User found but book not found for removal
-                                    logger.log(Level.WARNING, "Book " + bookId + " not found in user " + userId + "'s borrowed list");
-                                    return true;
-                            }
-                        }
-                    } catch (Exception _) {
-                        continue; // Wrong password, try next user
-                    }
+    /**
+     * Result of resolving a user record inside a loaded user data tree.
+     *
+     * @param userType The user type category the record belongs to (Students, General Public, Admins)
+     * @param index The position of the record inside its user type array
+     * @param user The user record itself
+     */
+    public record UserMatch(String userType, int index, JsonObject user) {}
+
+    /**
+     * Locates a user record inside an already loaded user data tree.
+     * Records are matched by their "LookupTag" blind index, which needs a single key derivation
+     * no matter how many users exist. Records written before lookup tags existed are found by
+     * the old decrypt-every-ID scan, which only visits untagged records; the matching record
+     * is stamped with its tag and a copy of the tree is saved, so each legacy user is migrated once
+     * and the caller remains free to modify the tree it passed in.
+     *
+     * @param userData The user data tree as read from the user database
+     * @param userDatabasePath Path to the user database file, used to persist migrated tags
+     * @param userId The plaintext ID of the user to find
+     * @param password The user's password
+     * @return The matching record and its location, or null if no record matches
+     */
+    public static UserMatch findUserRecord(JsonObject userData, String userDatabasePath, String userId, String password) {
+        String lookupTag = SecurityManager.computeLookupTag(userId, password);
+
+        boolean hasUntaggedUsers = false;
+        for (String userType : USER_TYPES) {
+            JsonArray users = userData.getAsJsonArray(userType);
+            if (users == null) continue;
+
+            for (int i = 0; i < users.size(); i++) {
+                JsonObject user = users.get(i).getAsJsonObject();
+                if (!user.has(LOOKUP_TAG)) {
+                    hasUntaggedUsers = true;
+                } else if (lookupTag.equals(user.get(LOOKUP_TAG).getAsString())) {
+                    return new UserMatch(userType, i, user);
                 }
             }
+        }
 
-            return true; // User not found
+        if (!hasUntaggedUsers) {
+            return null;
+        }
 
-        } catch (Exception e) {
-            String operationStr = (operation == BookOperation.BORROW) ? "adding" : "removing";
-            logger.log(Level.SEVERE, "Error " + operationStr + " book for user: " + userId, e);
-            return true;
+        // Legacy records: fall back to trial decryption of untagged IDs only.
+        // Records belonging to other users fail authentication, which tryDecrypt reports as null.
+        int mismatches = 0;
+        for (String userType : USER_TYPES) {
+            JsonArray users = userData.getAsJsonArray(userType);
+            if (users == null) continue;
+
+            for (int i = 0; i < users.size(); i++) {
+                JsonObject user = users.get(i).getAsJsonObject();
+                if (user.has(LOOKUP_TAG)) continue;
+
+                String decryptedId = SecurityManager.tryDecrypt(user.get("UserID").getAsString(), password);
+                if (decryptedId == null) {
+                    mismatches++;
+                    continue;
+                }
+
+                if (decryptedId.equals(userId)) {
+                    logger.log(Level.FINE, "Legacy user scan matched after " + mismatches + " mismatches");
+                    user.addProperty(LOOKUP_TAG, lookupTag);
+                    // Save a copy: the caller may go on to modify the record it is handed
+                    if (saveUserData(userData.deepCopy(), userDatabasePath)) {
+                        logger.log(Level.INFO, "Migrated user record to lookup tag index: " + userId);
+                    }
+                    return new UserMatch(userType, i, user);
+                }
+            }
         }
-    }
 
-}
\ No newline at end of file
+        logger.log(Level.FINE, "Legacy user scan found no match: " + mismatches + " mismatches");
+        return null;
+    }
+}
@@ -0,0 +1,536 @@
+package core;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Default core.StorageEngine: whole-file JSON. The catalog is BookData.json, held resident by
+ * core.CatalogStore; users are UserData.json, with loan changes appended to its core.LoanJournal
+ * rather than rewriting the file. The catalog's OnLoan counts are derived from that journal's loans.
+ */
+public class JsonStorageEngine implements StorageEngine {
+    private static final Logger logger = Logger.getLogger(JsonStorageEngine.class.getName());
+
+    /** Path of the book database file */
+    private final String bookDatabasePath;
+
+    /** Path of the user database file */
+    private final String userDatabasePath;
+
+    /**
+     * @param bookDatabasePath Full path of the book database file
+     * @param userDatabasePath Full path of the user database file
+     */
+    public JsonStorageEngine(String bookDatabasePath, String userDatabasePath) {
+        this.bookDatabasePath = bookDatabasePath;
+        this.userDatabasePath = userDatabasePath;
+        CatalogStore.forPath(bookDatabasePath).deriveOnLoanFrom(LoanJournal.forPath(userDatabasePath));
+    }
+
+    /**
+     * Searches the catalog's trigram search index. If the catalog is not resident and too large
+     * to load for a search, the file is scanned instead.
+     */
+    @Override
+    public List<Book> findBooks(String searchTerm) {
+        List<Book> filteredBooks = new ArrayList<>();
+        CatalogStore catalog = CatalogStore.forPath(bookDatabasePath);
+
+        if (catalog.shouldScan()) {
+            String term = searchTerm.toLowerCase();
+            try (CatalogScanner scanner = CatalogScanner.open(bookDatabasePath)) {
+                while (scanner.hasNext()) {
+                    Book book = scanner.next();
+                    if (term.isEmpty() || CatalogSearchIndex.matches(book, term)) {
+                        filteredBooks.add(book);
+                    }
+                }
+                logger.log(Level.INFO, "Book scan completed: found " + filteredBooks.size() + " books matching '" + searchTerm + "'");
+            } catch (IOException | UncheckedIOException e) {
+                logger.log(Level.SEVERE, "Failed to scan book database for search operation", e);
+            }
+            return filteredBooks;
+        }
+
+        synchronized (catalog) {
+            List<Book> matches = catalog.search(searchTerm);
+
+            if (matches != null) {
+                filteredBooks = matches;
+                logger.log(Level.INFO, "Book search completed: found " + filteredBooks.size() + " books matching '" + searchTerm + "'");
+            } else {
+                logger.log(Level.SEVERE, "Failed to load book database for search operation");
+            }
+        }
+        return filteredBooks;
+    }
+
+    @Override
+    public Book findBook(String bookId) {
+        return CatalogStore.forPath(bookDatabasePath).findById(bookId);
+    }
+
+    /**
+     * Titles are compared by Book.titleKey(), like core.SqlStorageEngine's title index. If the
+     * catalog is not resident and too large to load, the file is scanned up to the first match.
+     */
+    @Override
+    public String findBookId(String title) {
+        String titleKey = Book.titleKey(title);
+        CatalogStore catalog = CatalogStore.forPath(bookDatabasePath);
+
+        if (catalog.shouldScan()) {
+            try (CatalogScanner scanner = CatalogScanner.open(bookDatabasePath)) {
+                while (scanner.hasNext()) {
+                    Book book = scanner.next();
+                    if (book.title() != null && Book.titleKey(book.title()).equals(titleKey)) {
+                        return book.bookId();
+                    }
+                }
+            } catch (IOException | UncheckedIOException e) {
+                logger.log(Level.SEVERE, "Failed to scan book database for title: " + title, e);
+            }
+            return null;
+        }
+
+        synchronized (catalog) {
+            List<Book> bookData = catalog.getBooks();
+            if (bookData != null) {
+                for (Book book : bookData) {
+                    if (book.title() != null && Book.titleKey(book.title()).equals(titleKey)) {
+                        return book.bookId();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean addBook(Book book) {
+        CatalogStore catalog = CatalogStore.forPath(bookDatabasePath);
+        synchronized (catalog) {
+            List<Book> bookData = catalog.getBooks();
+            if (bookData == null) {
+                logger.log(Level.SEVERE, "No book data found in database file: " + bookDatabasePath);
+                return false;
+            }
+
+            // Check if book already exists
+            if (catalog.findById(book.bookId()) != null) {
+                logger.log(Level.WARNING, "Book with ID " + book.bookId() + " already exists");
+                return false;
+            }
+
+            catalog.addBook(book);
+
+            boolean success = catalog.save();
+
+            if (success) {
+                logger.log(Level.INFO, "Successfully added book: " + book.title() + " with ID: " + book.bookId());
+            } else {
+                logger.log(Level.SEVERE, "Failed to save book data after adding: " + book.title());
+            }
+
+            return success;
+        }
+    }
+
+    @Override
+    public boolean updateBook(String originalBookId, Book updated) {
+        String newBookId = updated.bookId();
+        CatalogStore catalog = CatalogStore.forPath(bookDatabasePath);
+        return catalog.circulation().withBookLocks(() -> updateBook(catalog, originalBookId, updated), originalBookId, newBookId);
+    }
+
+    /**
+     * Updates a book while holding the locks of its original and new IDs.
+     *
+     * @param catalog The catalog store
+     * @param originalBookId The ID of the book before the update
+     * @param updated The updated book
+     * @return true if the book was updated and the catalog save queued, false otherwise
+     */
+    private boolean updateBook(CatalogStore catalog, String originalBookId, Book updated) {
+        String newBookId = updated.bookId();
+        synchronized (catalog) {
+            List<Book> bookData = catalog.getBooks();
+            if (bookData == null) {
+                logger.log(Level.SEVERE, "No book data found for update operation");
+                return false;
+            }
+
+            // Find and update the book
+            Book book = catalog.findById(originalBookId);
+            if (book == null) {
+                logger.log(Level.WARNING, "Book with ID " + originalBookId + " not found for update");
+                return false;
+            }
+
+            // If book ID changed due to shelf/title change, this fails on a conflict
+            if (!catalog.replaceBook(book, updated)) {
+                logger.log(Level.WARNING, "Cannot update book: new ID " + newBookId + " already exists");
+                return false;
+            }
+
+            // The edit sets the counts outright
+            catalog.circulation().forget(originalBookId);
+            catalog.circulation().forget(newBookId);
+
+            // If book ID changed, move its loans to the new ID
+            if (!newBookId.equals(originalBookId)) {
+                if (LoanJournal.forPath(userDatabasePath).moveLoans(originalBookId, newBookId)) {
+                    logger.log(Level.INFO, "Loans moved successfully for book ID change");
+                } else {
+                    logger.log(Level.SEVERE, "Failed to move loans for book ID change from " + originalBookId + " to " + newBookId);
+                }
+            }
+
+            // Save updated data
+            boolean success = catalog.save();
+
+            if (success) {
+                logger.log(Level.INFO, "Successfully updated book: " + originalBookId + " -> " + newBookId);
+            } else {
+                logger.log(Level.SEVERE, "Failed to save book data after updating: " + originalBookId);
+            }
+
+            return success;
+        }
+    }
+
+    @Override
+    public boolean deleteBook(String bookId) {
+        CatalogStore catalog = CatalogStore.forPath(bookDatabasePath);
+        return catalog.circulation().withBookLocks(() -> deleteBook(catalog, bookId), bookId);
+    }
+
+    /**
+     * Deletes a book while holding its lock.
+     *
+     * @param catalog The catalog store
+     * @param bookId The ID of the book
+     * @return true if the book was deleted and the catalog save queued, false otherwise
+     */
+    private boolean deleteBook(CatalogStore catalog, String bookId) {
+        synchronized (catalog) {
+            List<Book> bookData = catalog.getBooks();
+            if (bookData == null) {
+                logger.log(Level.SEVERE, "No book data found for delete operation");
+                return false;
+            }
+
+            // Find and remove the book
+            Book book = catalog.findById(bookId);
+            if (book == null || !catalog.removeBook(book)) {
+                logger.log(Level.WARNING, "Book with ID " + bookId + " not found for deletion");
+                return false;
+            }
+            logger.log(Level.INFO, "Book with ID " + bookId + " deleted successfully");
+            catalog.circulation().forget(bookId);
+
+            // Remove the loans of the book
+            if (LoanJournal.forPath(userDatabasePath).moveLoans(bookId, null)) {
+                logger.log(Level.INFO, "Loans removed successfully for book deletion");
+            } else {
+                logger.log(Level.SEVERE, "Failed to remove loans for book deletion with ID: " + bookId);
+            }
+
+            // Save updated data
+            boolean success = catalog.save();
+            if (success) {
+                logger.log(Level.INFO, "Successfully saved updated book database after deletion");
+            } else {
+                logger.log(Level.SEVERE, "Failed to save book data after deletion");
+            }
+
+            return success;
+        }
+    }
+
+    /**
+     * Answered from the loan journal's core.LoanIndex.
+     */
+    @Override
+    public int countLentCopies(String bookId) {
+        return LoanJournal.forPath(userDatabasePath).lentCopies(bookId);
+    }
+
+    /**
+     * The handle's record key is the record's position within its user type category, and its
+     * version is the core.LoanJournal's.
+     */
+    @Override
+    public UserHandle resolveUser(String userId, String password) {
+        LoanJournal journal = LoanJournal.forPath(userDatabasePath);
+        synchronized (journal) {
+            JsonObject userData = JsonManager.readUserData(userDatabasePath);
+            if (userData == null) {
+                logger.log(Level.WARNING, "No user data found in database file: " + userDatabasePath);
+                return null;
+            }
+
+            JsonManager.UserMatch match = JsonManager.findUserRecord(userData, userDatabasePath, userId, password);
+            if (match == null) {
+                return null;
+            }
+
+            String storedPassword = SecurityManager.tryDecrypt(match.user().get("Password").getAsString(), password);
+            if (!password.equals(storedPassword)) {
+                logger.log(Level.WARNING, "Stored password does not match for user: " + userId);
+                return null;
+            }
+
+            // Read after the lookup, which may have saved a migrated record
+            long version = journal.version();
+            return new UserHandle(userDatabasePath, match.user().get(JsonManager.LOOKUP_TAG).getAsString(),
+                    User.fromRecord(match.user(), match.userType(), password), match.index(), version);
+        }
+    }
+
+    /**
+     * Re-reads the user database only if the journal reports the user's record changed since the
+     * handle was read (see LoanJournal.isCurrent()). The record is then
+     * looked for at its known position first and searched for only if it moved, for example to
+     * another user type category.
+     */
+    @Override
+    public boolean revalidate(UserHandle user, String password) {
+        if (!userDatabasePath.equals(user.store())) {
+            return false;
+        }
+
+        LoanJournal journal = LoanJournal.forPath(userDatabasePath);
+        synchronized (journal) {
+            UserHandle.Resolution resolution = user.resolution();
+            if (journal.isCurrent(user.lookupTag(), resolution.version())) {
+                return true;
+            }
+
+            JsonObject userData = JsonManager.readUserData(userDatabasePath);
+            if (userData == null) {
+                logger.log(Level.WARNING, "No user data found in database file: " + userDatabasePath);
+                return false;
+            }
+
+            String userType = resolution.user().userType();
+            int index = (int) resolution.recordKey();
+            JsonObject record = null;
+            JsonArray users = userData.getAsJsonArray(userType);
+            if (users != null && index < users.size()) {
+                JsonObject candidate = users.get(index).getAsJsonObject();
+                if (candidate.has(JsonManager.LOOKUP_TAG) && user.lookupTag().equals(candidate.get(JsonManager.LOOKUP_TAG).getAsString())) {
+                    record = candidate;
+                }
+            }
+            if (record == null) {
+                JsonManager.UserMatch match = JsonManager.findUserRecord(userData, userDatabasePath, user.userId(), password);
+                if (match == null) {
+                    logger.log(Level.WARNING, "User no longer found: " + user.userId());
+                    return false;
+                }
+                record = match.user();
+                userType = match.userType();
+                index = match.index();
+            }
+
+            user.update(User.fromRecord(record, userType, password), index, journal.version());
+            return true;
+        }
+    }
+
+    @Override
+    public boolean addUser(String userId, String name, String password, String userType) {
+        JsonObject userData = JsonManager.readUserData(userDatabasePath);
+        if (userData == null) {
+            logger.log(Level.SEVERE, "No user data found in database file: " + userDatabasePath);
+            return false;
+        }
+
+        // Check if user already exists
+        if (JsonManager.findUserRecord(userData, userDatabasePath, userId, password) != null) {
+            logger.log(Level.WARNING, "User with ID " + userId + " already exists");
+            return false;
+        }
+
+        // Create new user object
+        JsonObject newUser = new JsonObject();
+        newUser.addProperty("UserID", SecurityManager.encrypt(userId, password));
+        newUser.addProperty(JsonManager.LOOKUP_TAG, SecurityManager.computeLookupTag(userId, password));
+        newUser.addProperty("Name", SecurityManager.encrypt(name, password));
+        newUser.addProperty("Password", SecurityManager.encrypt(password, password));
+        newUser.add("Books", new JsonArray());
+
+        JsonArray userTypeArray = userData.getAsJsonArray(userType);
+
+        if (userTypeArray == null) {
+            logger.log(Level.SEVERE, "No user type array found in database file: " + userDatabasePath);
+            return false;
+        }
+
+        userTypeArray.add(newUser);
+
+        // Save updated data
+        return JsonManager.saveUserData(userData, userDatabasePath);
+    }
+
+    @Override
+    public boolean updateUser(String userId, String name, String password, String userType) {
+        JsonObject userData = JsonManager.readUserData(userDatabasePath);
+        if (userData == null) {
+            logger.log(Level.SEVERE, "No user data found for update operation");
+            return false;
+        }
+
+        // Find and update the user
+        JsonManager.UserMatch match = JsonManager.findUserRecord(userData, userDatabasePath, userId, password);
+        if (match == null) {
+            logger.log(Level.WARNING, "User with ID " + userId + " not found for update");
+            return false;
+        }
+
+        JsonObject user = match.user();
+        String currentType = match.userType();
+
+        // Update user details
+        user.addProperty("UserID", SecurityManager.encrypt(userId, password));
+        user.addProperty(JsonManager.LOOKUP_TAG, SecurityManager.computeLookupTag(userId, password));
+        user.addProperty("Name", SecurityManager.encrypt(name, password));
+        user.addProperty("Password", SecurityManager.encrypt(password, password));
+
+        // Handle type change if necessary
+        if (!currentType.equals(userType)) {
+            if (!moveUserToNewType(userData, user, currentType, userType)) {
+                logger.log(Level.SEVERE, "Failed to move user to new type: " + userType);
+                return false;
+            }
+        }
+
+        // Save and return
+        boolean success = JsonManager.saveUserData(userData, userDatabasePath);
+        if (success) {
+            logger.log(Level.INFO, "Successfully updated user: " + userId);
+        } else {
+            logger.log(Level.SEVERE, "Failed to save user data after update");
+        }
+        return success;
+    }
+
+    /**
+     * Moves a user from one type category to another.
+     *
+     * @param userData The complete user data JSON object
+     * @param user The user object to move
+     * @param oldType The old user type category
+     * @param newType The new user type category
+     * @return true if the move was successful, false otherwise
+     */
+    private boolean moveUserToNewType(JsonObject userData, JsonObject user, String oldType, String newType) {
+        try {
+            // Remove from old type
+            JsonArray oldTypeArray = userData.getAsJsonArray(oldType);
+            if (oldTypeArray != null) {
+                for (int i = 0; i < oldTypeArray.size(); i++) {
+                    if (oldTypeArray.get(i).getAsJsonObject().equals(user)) {
+                        oldTypeArray.remove(i);
+                        break;
+                    }
+                }
+            }
+
+            // Add to new type
+            JsonArray newTypeArray = userData.getAsJsonArray(newType);
+            if (newTypeArray == null) {
+                newTypeArray = new JsonArray();
+                userData.add(newType, newTypeArray);
+            }
+            newTypeArray.add(user);
+
+            logger.log(Level.INFO, "Successfully moved user from " + oldType + " to " + newType);
+            return true;
+
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error moving user between types", e);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean removeUser(String userId, String password) {
+        JsonObject userData = JsonManager.readUserData(userDatabasePath);
+        if (userData == null) {
+            logger.log(Level.SEVERE, "Failed to read user database");
+            return false;
+        }
+
+        // Find and remove user from appropriate category (admins cannot be removed)
+        JsonManager.UserMatch match = JsonManager.findUserRecord(userData, userDatabasePath, userId, password);
+        if (match != null && !match.userType().equals("Admins")) {
+            userData.getAsJsonArray(match.userType()).remove(match.index());
+            return JsonManager.saveUserData(userData, userDatabasePath);
+        }
+
+        logger.log(Level.WARNING, "User not found for removal: " + userId);
+        return false;
+    }
+
+    /**
+     * Stages the loan and the availability change in a core.LoanUnitOfWork and commits both
+     * together, so a loan is never recorded without its copy leaving the shelf. Only the book's
+     * lock is held throughout; the last copy is reserved atomically by core.CirculationEngine.
+     */
+    @Override
+    public boolean borrowBook(UserHandle user, String bookId, String password) {
+        CatalogStore catalog = CatalogStore.forPath(bookDatabasePath);
+        return catalog.circulation().withBookLocks(() -> {
+            LoanUnitOfWork work = new LoanUnitOfWork(catalog, userDatabasePath);
+            if (!revalidate(user, password) || !work.borrow(user, bookId, password) || !work.commit()) {
+                logger.log(Level.SEVERE, "Failed to add book " + bookId + " to user " + user.userId() + "'s borrowed list");
+                return false;
+            }
+            logger.log(Level.INFO, "Successfully added book " + bookId + " to user " + user.userId());
+            return true;
+        }, bookId);
+    }
+
+    /**
+     * Stages the return and the availability change in a core.LoanUnitOfWork and commits both
+     * together, holding only the book's lock.
+     */
+    @Override
+    public boolean returnBook(UserHandle user, String bookId, String password) {
+        CatalogStore catalog = CatalogStore.forPath(bookDatabasePath);
+        return catalog.circulation().withBookLocks(() -> {
+            LoanUnitOfWork work = new LoanUnitOfWork(catalog, userDatabasePath);
+            if (!revalidate(user, password) || !work.returnBook(user, bookId) || !work.commit()) {
+                logger.log(Level.SEVERE, "Failed to remove book " + bookId + " from user " + user.userId() + "'s borrowed list");
+                return false;
+            }
+            logger.log(Level.INFO, "Successfully removed book " + bookId + " from user " + user.userId());
+            return true;
+        }, bookId);
+    }
+
+    /**
+     * Stages every status change in one core.LoanUnitOfWork and commits them as a single journal
+     * append. Availability does not change, so no book locks are needed.
+     */
+    @Override
+    public boolean updateDueStatuses(UserHandle user, Map<String, Integer> statuses, String password) {
+        LoanUnitOfWork work = new LoanUnitOfWork(CatalogStore.forPath(bookDatabasePath), userDatabasePath);
+        if (!revalidate(user, password) || !work.updateStatuses(user, statuses) || !work.commit()) {
+            logger.log(Level.WARNING, "Failed to update due statuses for user: " + user.userId());
+            return false;
+        }
+        logger.log(Level.INFO, "Successfully updated " + statuses.size() + " due statuses for user: " + user.userId());
+        return true;
+    }
+}
@@ -0,0 +1,170 @@
+package core;
+
+import com.google.gson.JsonObject;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A book on loan to a user, as seen after decryption.
+ * The issue date is decrypted and parsed once when the loan is read and held as an epoch day,
+ * so due dates and statuses are plain integer arithmetic.
+ *
+ * @param bookId The ID of the borrowed book
+ * @param issuedEpochDay The day the book was issued (LocalDate.toEpochDay()), or UNKNOWN_DATE if it could not be decrypted
+ * @param status The due status saved with the loan: 1 (on time), 0 (due today), -1 (overdue)
+ */
+public record Loan(String bookId, int issuedEpochDay, int status) {
+
+    /** Issue date of a loan whose DateIssued could not be decrypted or parsed */
+    public static final int UNKNOWN_DATE = Integer.MIN_VALUE;
+
+    /** Loan periods in days */
+    public static final int STUDENT_LOAN_DAYS = 15;
+    public static final int PUBLIC_LOAN_DAYS = 7;
+
+    /** Date embedded in an issue date string, for values that are not a bare ISO date */
+    private static final Pattern DATE_PATTERN = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+
+    /**
+     * Reads a loan from a user record's "Books" array, decrypting its issue date.
+     *
+     * @param record The loan record
+     * @param password The user's password
+     * @return The loan, or null if the record lacks its BookID or Status
+     */
+    public static Loan fromRecord(JsonObject record, String password) {
+        if (!record.has("BookID") || !record.has("Status")) {
+            return null;
+        }
+
+        String encryptedDateIssued = record.has("DateIssued") ? record.get("DateIssued").getAsString() : null;
+        return decrypt(record.get("BookID").getAsString(), encryptedDateIssued, record.get("Status").getAsInt(), password);
+    }
+
+    /**
+     * Builds a loan from its stored fields, decrypting its issue date.
+     *
+     * @param bookId The ID of the borrowed book
+     * @param encryptedDateIssued The encrypted issue date, or null if none is stored
+     * @param status The saved due status
+     * @param password The user's password
+     * @return The loan; its issue date is UNKNOWN_DATE if it cannot be decrypted or parsed
+     */
+    public static Loan decrypt(String bookId, String encryptedDateIssued, int status, String password) {
+        int issuedEpochDay = UNKNOWN_DATE;
+        if (encryptedDateIssued != null) {
+            String dateIssued = SecurityManager.tryDecrypt(encryptedDateIssued, password);
+            if (dateIssued != null) {
+                issuedEpochDay = parseEpochDay(dateIssued);
+            }
+        }
+        return new Loan(bookId, issuedEpochDay, status);
+    }
+
+    /**
+     * Parses an issue date in "YYYY-MM-DD" form, also accepting a string that merely contains one.
+     *
+     * @param date The issue date
+     * @return The epoch day, or UNKNOWN_DATE if no valid date is found
+     */
+    public static int parseEpochDay(String date) {
+        try {
+            return (int) LocalDate.parse(date).toEpochDay();
+        } catch (DateTimeParseException e) {
+            Matcher matcher = DATE_PATTERN.matcher(date);
+            if (matcher.find()) {
+                try {
+                    return (int) LocalDate.parse(matcher.group()).toEpochDay();
+                } catch (DateTimeParseException ignored) {
+                    // Falls through to UNKNOWN_DATE
+                }
+            }
+            return UNKNOWN_DATE;
+        }
+    }
+
+    /**
+     * Number of days a user type may keep a book.
+     *
+     * @param userType The type of user
+     * @return 15 for Students, 7 for General Public, or -1 for types without a loan period
+     */
+    public static int loanDays(String userType) {
+        return switch (userType) {
+            case "Students" -> STUDENT_LOAN_DAYS;
+            case "General Public" -> PUBLIC_LOAN_DAYS;
+            default -> -1;
+        };
+    }
+
+    /**
+     * @return The book ID encoded with core.BookId, or BookId.INVALID if it does not follow the format
+     */
+    public long bookCode() {
+        return BookId.encode(bookId);
+    }
+
+    /**
+     * @return true if the issue date is known
+     */
+    public boolean hasIssueDate() {
+        return issuedEpochDay != UNKNOWN_DATE;
+    }
+
+    /**
+     * @return The issue date, or null if it is unknown
+     */
+    public LocalDate issueDate() {
+        return hasIssueDate() ? LocalDate.ofEpochDay(issuedEpochDay) : null;
+    }
+
+    /**
+     * @param userType The type of the borrowing user
+     * @return The epoch day the book is due, or UNKNOWN_DATE if the issue date or loan period is unknown
+     */
+    public int dueEpochDay(String userType) {
+        int loanDays = loanDays(userType);
+        return hasIssueDate() && loanDays >= 0 ? issuedEpochDay + loanDays : UNKNOWN_DATE;
+    }
+
+    /**
+     * @param userType The type of the borrowing user
+     * @return The due date, or null if the issue date or loan period is unknown
+     */
+    public LocalDate dueDate(String userType) {
+        int dueEpochDay = dueEpochDay(userType);
+        return dueEpochDay != UNKNOWN_DATE ? LocalDate.ofEpochDay(dueEpochDay) : null;
+    }
+
+    /**
+     * Computes the due status on a given day.
+     *
+     * @param userType The type of the borrowing user
+     * @param today The current day
+     * @return 1 for on time, 0 for due today, -1 for overdue, or -2 if the due date is unknown
+     */
+    public int dueStatus(String userType, LocalDate today) {
+        int dueEpochDay = dueEpochDay(userType);
+        if (dueEpochDay == UNKNOWN_DATE) {
+            return -2;
+        }
+        return Long.signum(dueEpochDay - today.toEpochDay());
+    }
+
+    /**
+     * @param userType The type of the borrowing user
+     * @param today The current day
+     * @return Number of days the book is overdue, or 0 if it is not overdue or the due date is unknown
+     */
+    public int daysOverdue(String userType, LocalDate today) {
+        int dueEpochDay = dueEpochDay(userType);
+        if (dueEpochDay == UNKNOWN_DATE) {
+            return 0;
+        }
+        return (int) Math.max(0, ChronoUnit.DAYS.between(LocalDate.ofEpochDay(dueEpochDay), today));
+    }
+}
@@ -0,0 +1,191 @@
+package core;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reverse index of the loans in a user database: for each BookID, which users hold copies of the
+ * book and how many copies are lent in total. It is built once from the user data tree and then
+ * kept current by core.LoanJournal, which applies every appended loan event to it. A book ID
+ * change or deletion therefore finds the affected loans without reading every user record, and
+ * the number of copies lent is a single lookup.
+ *
+ * Users are identified by their "LookupTag", like journal events. Loans of legacy records that do
+ * not have a lookup tag yet are only counted, since journal events cannot address them.
+ *
+ * Books are keyed like core.HeapCatalog: IDs encoded with core.BookId in a core.LongIntHashMap of
+ * positions in a list, and the rare IDs that do not follow the format in a String-keyed map. A book
+ * keeps its entry once lent, so entries are bounded by the books ever lent.
+ *
+ * Not thread-safe; the owning LoanJournal guards it with its monitor.
+ */
+public class LoanIndex {
+
+    /** User type categories stored in the user database */
+    private static final String[] USER_TYPES = {"Students", "General Public", "Admins"};
+
+    /** Loans of one book */
+    private static final class Borrowers {
+        /** Number of loans per lookup tag */
+        private final Map<String, Integer> loansByTag = new HashMap<>();
+
+        /** Number of loans held by users without a lookup tag */
+        private int untaggedLoans;
+
+        /** Total number of loans */
+        private int loans;
+    }
+
+    /** Loans of every book with an entry, by position */
+    private final List<Borrowers> borrowers = new ArrayList<>();
+
+    /** Position in borrowers by encoded BookID */
+    private final LongIntHashMap positionsByCode = new LongIntHashMap();
+
+    /** Loans by BookID, for IDs that do not encode */
+    private final Map<String, Borrowers> irregularBorrowers = new HashMap<>();
+
+    /**
+     * Private constructor; use build() to index a user data tree.
+     */
+    private LoanIndex() {
+    }
+
+    /**
+     * Indexes every loan in a user data tree.
+     *
+     * @param userData The user data tree, with journal events already replayed
+     * @return The index
+     */
+    public static LoanIndex build(JsonObject userData) {
+        LoanIndex index = new LoanIndex();
+        for (String userType : USER_TYPES) {
+            JsonArray users = userData.getAsJsonArray(userType);
+            if (users == null) continue;
+
+            for (JsonElement element : users) {
+                JsonObject user = element.getAsJsonObject();
+                if (!user.has("Books") || user.get("Books").isJsonNull()) continue;
+
+                String lookupTag = user.has(JsonManager.LOOKUP_TAG) ? user.get(JsonManager.LOOKUP_TAG).getAsString() : null;
+                for (JsonElement book : user.getAsJsonArray("Books")) {
+                    index.add(book.getAsJsonObject().get("BookID").getAsString(), lookupTag, 1);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @param bookId The ID of a book
+     * @return The number of copies of the book currently lent
+     */
+    public int lentCopies(String bookId) {
+        Borrowers borrowers = borrowersOf(bookId, false);
+        return borrowers != null ? borrowers.loans : 0;
+    }
+
+    /**
+     * @param bookId The ID of a book
+     * @return The number of loans of the book per lookup tag of the borrower, as a copy; loans of
+     *         users without a lookup tag are not included
+     */
+    public Map<String, Integer> loansByTag(String bookId) {
+        Borrowers borrowers = borrowersOf(bookId, false);
+        return borrowers != null ? new HashMap<>(borrowers.loansByTag) : new HashMap<>();
+    }
+
+    /**
+     * @param bookId The ID of a book
+     * @return The number of loans of the book held by users without a lookup tag
+     */
+    public int untaggedLoans(String bookId) {
+        Borrowers borrowers = borrowersOf(bookId, false);
+        return borrowers != null ? borrowers.untaggedLoans : 0;
+    }
+
+    /**
+     * Updates the index for a loan event that was appended to the journal.
+     *
+     * @param event The event
+     */
+    public void apply(LoanJournal.Event event) {
+        switch (event.operation()) {
+            case BORROW -> add(event.bookId(), event.lookupTag(), 1);
+            case RETURN -> add(event.bookId(), event.lookupTag(), -1);
+            case RENAME -> {
+                if (add(event.bookId(), event.lookupTag(), -1)) {
+                    add(event.newBookId(), event.lookupTag(), 1);
+                }
+            }
+            case STATUS -> {
+                // Does not change who holds the book
+            }
+        }
+    }
+
+    /**
+     * Adds or removes loans of a book by one user. Removing a loan the index does not hold is ignored.
+     *
+     * @param bookId The ID of the book
+     * @param lookupTag The lookup tag of the user, or null if the user has none
+     * @param delta The number of loans to add, negative to remove
+     * @return true if the index changed
+     */
+    private boolean add(String bookId, String lookupTag, int delta) {
+        Borrowers borrowers = borrowersOf(bookId, delta > 0);
+        if (borrowers == null) {
+            return false;
+        }
+
+        if (lookupTag == null) {
+            if (borrowers.untaggedLoans + delta < 0) {
+                return false;
+            }
+            borrowers.untaggedLoans += delta;
+        } else {
+            int loans = borrowers.loansByTag.getOrDefault(lookupTag, 0) + delta;
+            if (loans < 0) {
+                return false;
+            }
+            if (loans == 0) {
+                borrowers.loansByTag.remove(lookupTag);
+            } else {
+                borrowers.loansByTag.put(lookupTag, loans);
+            }
+        }
+
+        borrowers.loans += delta;
+        return true;
+    }
+
+    /**
+     * @param bookId The ID of a book
+     * @param create Whether to add an entry if the book has none
+     * @return The book's entry, or null if it has none and none was created
+     */
+    private Borrowers borrowersOf(String bookId, boolean create) {
+        long code = BookId.encode(bookId);
+        if (code == BookId.INVALID) {
+            return create ? irregularBorrowers.computeIfAbsent(bookId, _ -> new Borrowers()) : irregularBorrowers.get(bookId);
+        }
+
+        int position = positionsByCode.get(code);
+        if (position != LongIntHashMap.NO_VALUE) {
+            return borrowers.get(position);
+        }
+        if (!create) {
+            return null;
+        }
+        Borrowers added = new Borrowers();
+        positionsByCode.put(code, borrowers.size());
+        borrowers.add(added);
+        return added;
+    }
+}
@@ -0,0 +1,789 @@
+package core;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only journal of loan events (borrow, return, status change, book ID change) kept next to the user database.
+ * A checkout appends one small line instead of rewriting the whole user file. Reading the user
+ * database replays the journal on top of the snapshot, and a background compaction periodically
+ * folds the journal into a new snapshot.
+ *
+ * Every event carries a sequence number. The snapshot records the highest sequence number it
+ * already contains in its "JournalSeq" property, so replay skips events that are already folded in
+ * and a crash between writing the snapshot and trimming the journal never applies an event twice.
+ * Events identify the user by the record's "LookupTag", so the journal holds no plaintext user data.
+ *
+ * Reads are incremental. The journal remembers how far into the file it has read, and the Seq of
+ * the last event there, so replay only parses events appended since. A file shorter than that
+ * position, or one whose next event does not continue the sequence, was truncated or rewritten and
+ * is read again from the start. The last user data tree read is kept too, with the modification
+ * time and size of the snapshot file it came from; while the file is unchanged, reading the user
+ * database copies that tree and applies only the new events.
+ *
+ * The journal also keeps a core.LoanIndex of who holds which book, current with every append. When a
+ * book's ID changes or the book is deleted, moveLoans() uses it to append one event per affected
+ * loan instead of rewriting every user record.
+ */
+public class LoanJournal {
+    private static final Logger logger = Logger.getLogger(LoanJournal.class.getName());
+
+    /** Snapshot property holding the highest journal sequence number folded into it */
+    public static final String JOURNAL_SEQ = "JournalSeq";
+
+    /** Number of journal events after which a background compaction is scheduled */
+    private static final int COMPACTION_THRESHOLD = 256;
+
+    /** User type categories stored in the user database */
+    private static final String[] USER_TYPES = {"Students", "General Public", "Admins"};
+
+    /** One journal per user database file */
+    private static final Map<String, LoanJournal> journals = new HashMap<>();
+
+    /** Single background thread shared by all journals for compaction */
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "loan-journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Compact Gson instance; each event must serialize to a single line */
+    private static final Gson gson = new Gson();
+
+    /** Types of loan events recorded in the journal */
+    public enum Operation {
+        BORROW,
+        RETURN,
+        STATUS,
+        RENAME
+    }
+
+    /** Path of the user database snapshot */
+    private final String userDatabasePath;
+
+    /** Path of the journal file */
+    private final Path journalPath;
+
+    /** Highest sequence number known to exist in the snapshot or the journal, or -1 if not yet read */
+    private long lastSeq = -1;
+
+    /** Number of events currently in the journal file */
+    private int pendingEvents;
+
+    /** Whether a compaction has been scheduled and has not run yet */
+    private boolean compactionScheduled;
+
+    /** Number of snapshots queued on core.PersistenceExecutor and not yet written */
+    private int snapshotsInFlight;
+
+    /** Reverse loan index, built on first use; null until then and after a snapshot replaces the user data */
+    private LoanIndex index;
+
+    /** Number of changes to the user data made through this journal, for validating core.UserHandle instances */
+    private long version;
+
+    /** Highest sequence number trimmed from the journal; a tree read before then lacks events only the file has */
+    private long trimmedThrough;
+
+    /** Byte offset in the journal file up to which complete events have been read, or -1 to read it from the start */
+    private long readOffset = -1;
+
+    /** Seq of the last event before readOffset */
+    private long readSeq;
+
+    /** Number of events before readOffset */
+    private int readCount;
+
+    /** The last user data tree read, with every event before readOffset applied; null if none is kept */
+    private JsonObject cachedUserData;
+
+    /** Users of cachedUserData by lookup tag, or null until an event is applied to it */
+    private Map<String, JsonObject> cachedUsersByTag;
+
+    /** Modification time of the snapshot file cachedUserData was read from */
+    private FileTime cachedModifiedTime;
+
+    /** Size of the snapshot file cachedUserData was read from */
+    private long cachedSize;
+
+    /** Set when the journal no longer continues from readOffset and is read again from the start */
+    private boolean journalRewound;
+
+    /** Version of the last snapshot saved from outside the journal */
+    private long snapshotVersion;
+
+    /** Version of the last append that changed each user's loans, by lookup tag; cleared by a snapshot */
+    private final Map<String, Long> versionsByTag = new HashMap<>();
+
+    /**
+     * Private constructor; use forPath() to obtain the journal for a user database.
+     *
+     * @param userDatabasePath Path of the user database snapshot
+     */
+    private LoanJournal(String userDatabasePath) {
+        this.userDatabasePath = userDatabasePath;
+        this.journalPath = Paths.get(journalPathFor(userDatabasePath));
+    }
+
+    /**
+     * Returns the shared journal for a user database, creating it on first use.
+     *
+     * @param userDatabasePath Path of the user database snapshot
+     * @return The journal belonging to that database
+     */
+    public static LoanJournal forPath(String userDatabasePath) {
+        synchronized (journals) {
+            return journals.computeIfAbsent(userDatabasePath, LoanJournal::new);
+        }
+    }
+
+    /**
+     * Derives the journal file path from the user database path (UserData.json -> UserData.journal).
+     *
+     * @param userDatabasePath Path of the user database snapshot
+     * @return Path of the journal file
+     */
+    public static String journalPathFor(String userDatabasePath) {
+        if (userDatabasePath.endsWith(".json")) {
+            return userDatabasePath.substring(0, userDatabasePath.length() - ".json".length()) + ".journal";
+        }
+        return userDatabasePath + ".journal";
+    }
+
+    /**
+     * Applies every journal event newer than the snapshot to a freshly read user data tree.
+     * The tree's "JournalSeq" is advanced to the last applied event, so saving the tree
+     * as a new snapshot folds those events in.
+     * A torn final line (for example from a crash mid-append) ends the replay.
+     *
+     * @param userData The user data tree read from the snapshot
+     */
+    public synchronized void replay(JsonObject userData) {
+        replay(userData, null);
+    }
+
+    /**
+     * Replays events into a tree like replay(JsonObject), reusing an index of its users.
+     *
+     * @param userData The user data tree
+     * @param usersByTag The tree's users by lookup tag, or null to index them if an event applies
+     * @return The index of the tree's users, or null if no event applied and none was given
+     */
+    private Map<String, JsonObject> replay(JsonObject userData, Map<String, JsonObject> usersByTag) {
+        long snapshotSeq = userData.has(JOURNAL_SEQ) ? userData.get(JOURNAL_SEQ).getAsLong() : 0;
+        long appliedSeq = snapshotSeq;
+
+        for (JsonObject event : readEventsAfter(snapshotSeq)) {
+            long seq = event.get("Seq").getAsLong();
+            if (usersByTag == null) {
+                usersByTag = indexUsersByTag(userData);
+            }
+
+            JsonObject user = usersByTag.get(event.get("User").getAsString());
+            if (user == null) {
+                logger.log(Level.FINE, "Skipping journal event " + seq + " for a user that no longer exists");
+            } else {
+                apply(user, event);
+            }
+            appliedSeq = Math.max(appliedSeq, seq);
+        }
+
+        userData.addProperty(JOURNAL_SEQ, appliedSeq);
+        lastSeq = Math.max(lastSeq, appliedSeq);
+        pendingEvents = readCount;
+        return usersByTag;
+    }
+
+    /**
+     * Reads the user database: the snapshot plus every event not yet folded into it. While the
+     * snapshot file is unchanged since the last read, the tree kept from that read is brought up
+     * to date with the events appended since and copied, instead of parsing the file and the
+     * whole journal again. A snapshot still queued for writing is read as usual and not kept.
+     *
+     * @return The current user data tree, owned by the caller, or null if the snapshot cannot be read
+     */
+    public synchronized JsonObject readUserData() {
+        BasicFileAttributes attributes = null;
+        if (!PersistenceExecutor.hasPendingSave(userDatabasePath)) {
+            try {
+                attributes = Files.readAttributes(Paths.get(userDatabasePath), BasicFileAttributes.class);
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Cannot read attributes of user database, not keeping it: " + userDatabasePath);
+            }
+        }
+
+        boolean cacheCurrent = cachedUserData != null && attributes != null
+                && attributes.lastModifiedTime().equals(cachedModifiedTime) && attributes.size() == cachedSize;
+        if (cacheCurrent) {
+            journalRewound = false;
+            cachedUsersByTag = replay(cachedUserData, cachedUsersByTag);
+            if (!journalRewound) {
+                return cachedUserData.deepCopy();
+            }
+            // The kept tree may hold events that are no longer in the journal
+        }
+
+        cachedUserData = null;
+        JsonObject userData = JsonManager.readJsonFile(userDatabasePath);
+        if (userData == null) {
+            return null;
+        }
+        Map<String, JsonObject> usersByTag = replay(userData, null);
+        if (attributes == null) {
+            return userData;
+        }
+        cachedUserData = userData;
+        cachedUsersByTag = usersByTag;
+        cachedModifiedTime = attributes.lastModifiedTime();
+        cachedSize = attributes.size();
+        return userData.deepCopy();
+    }
+
+    /**
+     * A loan event to append.
+     *
+     * @param operation The kind of loan event
+     * @param lookupTag The LookupTag of the user the event belongs to
+     * @param bookId The ID of the book concerned
+     * @param encryptedDateIssued The encrypted issue date (BORROW only, otherwise null)
+     * @param status The loan status to record (BORROW and STATUS)
+     * @param newBookId The ID the loan moves to (RENAME only, otherwise null)
+     */
+    public record Event(Operation operation, String lookupTag, String bookId, String encryptedDateIssued, int status, String newBookId) {
+
+        /**
+         * An event that does not move a loan to another book ID.
+         */
+        public Event(Operation operation, String lookupTag, String bookId, String encryptedDateIssued, int status) {
+            this(operation, lookupTag, bookId, encryptedDateIssued, status, null);
+        }
+    }
+
+    /**
+     * Appends one loan event to the journal and forces it to disk.
+     *
+     * @param operation The kind of loan event
+     * @param lookupTag The LookupTag of the user the event belongs to
+     * @param bookId The ID of the book concerned
+     * @param encryptedDateIssued The encrypted issue date (BORROW only, otherwise null)
+     * @param status The loan status to record (BORROW and STATUS)
+     * @return true if the event was durably appended, false otherwise
+     */
+    public boolean append(Operation operation, String lookupTag, String bookId, String encryptedDateIssued, int status) {
+        return appendAll(List.of(new Event(operation, lookupTag, bookId, encryptedDateIssued, status)));
+    }
+
+    /**
+     * Appends loan events to the journal in order with a single write and forces them to disk
+     * once. Either all events are appended or none are: if the write fails, the journal is
+     * truncated back to its previous length.
+     *
+     * @param events The events, in the order they happened
+     * @return true if the events were durably appended, false otherwise
+     */
+    public synchronized boolean appendAll(List<Event> events) {
+        if (events.isEmpty()) {
+            return true;
+        }
+        try {
+            if (lastSeq < 0) {
+                // Establish the current sequence number from the snapshot and journal
+                JsonObject userData = readUserData();
+                if (userData == null) {
+                    logger.log(Level.SEVERE, "Cannot append loan event: user database unreadable");
+                    return false;
+                }
+            }
+
+            StringBuilder lines = new StringBuilder();
+            long seq = lastSeq;
+            for (Event event : events) {
+                JsonObject line = new JsonObject();
+                line.addProperty("Seq", ++seq);
+                line.addProperty("Op", event.operation().name());
+                line.addProperty("User", event.lookupTag());
+                line.addProperty("BookID", event.bookId());
+                if (event.encryptedDateIssued() != null) {
+                    line.addProperty("DateIssued", event.encryptedDateIssued());
+                }
+                if (event.operation() == Operation.BORROW || event.operation() == Operation.STATUS) {
+                    line.addProperty("Status", event.status());
+                }
+                if (event.newBookId() != null) {
+                    line.addProperty("NewBookID", event.newBookId());
+                }
+                lines.append(gson.toJson(line)).append('\n');
+            }
+
+            try (FileChannel channel = FileChannel.open(journalPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long previousSize = channel.size();
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    // Do not leave part of the batch behind for replay to pick up
+                    channel.truncate(previousSize);
+                    throw e;
+                }
+            }
+
+            lastSeq = seq;
+            pendingEvents += events.size();
+            version++;
+            for (Event event : events) {
+                versionsByTag.put(event.lookupTag(), version);
+            }
+            if (index != null) {
+                for (Event event : events) {
+                    index.apply(event);
+                }
+            }
+            logger.log(Level.FINE, "Appended loan events through " + lastSeq + " (" + events.size() + " events)");
+
+            if (pendingEvents >= COMPACTION_THRESHOLD && !compactionScheduled && snapshotsInFlight == 0) {
+                compactionScheduled = true;
+                compactor.execute(this::compact);
+            }
+            return true;
+
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Failed to append " + events.size() + " loan events", e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the user data version, which changes with every append and every snapshot saved from
+     * outside the journal. Compaction does not change it, since it leaves the data the same.
+     * Hold the journal's monitor to read user data consistent with the version.
+     *
+     * @return The current version
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Tells whether a user read at some version is still current: no snapshot was saved since,
+     * and no append changed that user's loans. Appends for other users do not make it stale.
+     *
+     * @param lookupTag The user's lookup tag
+     * @param version The version the user was read at
+     * @return true if the user's record is unchanged since that version
+     */
+    public synchronized boolean isCurrent(String lookupTag, long version) {
+        return version >= snapshotVersion && versionsByTag.getOrDefault(lookupTag, 0L) <= version;
+    }
+
+    /**
+     * @param bookId The ID of a book
+     * @return The number of copies of the book currently lent, or -1 if the user database cannot be read
+     */
+    public synchronized int lentCopies(String bookId) {
+        LoanIndex loans = loanIndex();
+        return loans != null ? loans.lentCopies(bookId) : -1;
+    }
+
+    /**
+     * Moves every loan of a book to a new book ID, or removes them if the book was deleted. The
+     * loan index names the affected users, and one event per loan is appended in a single write.
+     * If a legacy user without a lookup tag holds the book, the user database is rewritten once instead.
+     *
+     * @param oldBookId The book ID the loans refer to
+     * @param newBookId The new book ID, or null to remove the loans
+     * @return true if the loans were moved or removed (or there were none), false otherwise
+     */
+    public synchronized boolean moveLoans(String oldBookId, String newBookId) {
+        LoanIndex loans = loanIndex();
+        if (loans == null) {
+            logger.log(Level.SEVERE, "Cannot move loans of book " + oldBookId + ": user database unreadable");
+            return false;
+        }
+        if (loans.untaggedLoans(oldBookId) > 0) {
+            return rewriteLoans(oldBookId, newBookId);
+        }
+
+        List<Event> events = new ArrayList<>();
+        for (Map.Entry<String, Integer> borrower : loans.loansByTag(oldBookId).entrySet()) {
+            for (int i = 0; i < borrower.getValue(); i++) {
+                events.add(newBookId == null
+                        ? new Event(Operation.RETURN, borrower.getKey(), oldBookId, null, 0)
+                        : new Event(Operation.RENAME, borrower.getKey(), oldBookId, null, 0, newBookId));
+            }
+        }
+        if (events.isEmpty()) {
+            logger.log(Level.INFO, "No loans of book " + oldBookId + " to move");
+            return true;
+        }
+        return appendAll(events);
+    }
+
+    /**
+     * Moves or removes the loans of a book by rewriting the user database, for loans the journal
+     * cannot address.
+     *
+     * @param oldBookId The book ID the loans refer to
+     * @param newBookId The new book ID, or null to remove the loans
+     * @return true if the new snapshot was queued, false otherwise
+     */
+    private boolean rewriteLoans(String oldBookId, String newBookId) {
+        JsonObject userData = readUserData();
+        if (userData == null) {
+            logger.log(Level.SEVERE, "Cannot move loans of book " + oldBookId + ": user database unreadable");
+            return false;
+        }
+
+        for (String userType : USER_TYPES) {
+            JsonArray users = userData.getAsJsonArray(userType);
+            if (users == null) continue;
+
+            for (JsonElement element : users) {
+                JsonObject user = element.getAsJsonObject();
+                if (!user.has("Books") || user.get("Books").isJsonNull()) continue;
+
+                // Iterate backwards to safely remove elements during iteration
+                JsonArray books = user.getAsJsonArray("Books");
+                for (int i = books.size() - 1; i >= 0; i--) {
+                    JsonObject book = books.get(i).getAsJsonObject();
+                    if (!book.get("BookID").getAsString().equals(oldBookId)) continue;
+
+                    if (newBookId == null) {
+                        books.remove(i);
+                    } else {
+                        book.addProperty("BookID", newBookId);
+                    }
+                }
+            }
+        }
+
+        logger.log(Level.INFO, "Rewriting user database to move loans of book " + oldBookId + " held by users without a lookup tag");
+        return saveSnapshot(userData);
+    }
+
+    /**
+     * Returns the loan index, building it from the user database on first use.
+     *
+     * @return The index, or null if the user database cannot be read
+     */
+    private LoanIndex loanIndex() {
+        if (index == null) {
+            JsonObject userData = readUserData();
+            if (userData == null) {
+                return null;
+            }
+            index = LoanIndex.build(userData);
+        }
+        return index;
+    }
+
+    /**
+     * Queues a user data tree as the new snapshot on core.PersistenceExecutor. Once the snapshot is
+     * on disk, journal events the tree already contains are dropped; events appended after the tree
+     * was read have a higher sequence number and are kept. Until then, readers see the queued
+     * snapshot and replay skips the events it contains, so the journal is never trimmed ahead of
+     * the file that makes it redundant.
+     *
+     * Events appended since the tree was read are replayed into it first, so a snapshot never
+     * goes back on a loan. A tree read before events it lacks were trimmed is rejected, since
+     * those events now exist only in the newer file.
+     *
+     * @param userData The user data tree to save (read through JsonManager.readUserData); must not be modified afterwards
+     * @return true if the snapshot was queued, false if the tree is too old to save
+     */
+    public synchronized boolean saveSnapshot(JsonObject userData) {
+        long treeSeq = userData.has(JOURNAL_SEQ) ? userData.get(JOURNAL_SEQ).getAsLong() : 0;
+        if (treeSeq < trimmedThrough) {
+            logger.log(Level.SEVERE, "Rejecting user data snapshot read at journal event " + treeSeq
+                    + ", before events through " + trimmedThrough + " were folded into the file: " + userDatabasePath);
+            return false;
+        }
+        replay(userData);
+
+        // The tree may have changed users and loans outside the journal; rebuild the index when next needed
+        index = null;
+        version++;
+        snapshotVersion = version;
+        versionsByTag.clear();
+        return queueSnapshot(userData);
+    }
+
+    /**
+     * Queues a user data tree as the new snapshot and trims the journal once it is written.
+     *
+     * @param userData The user data tree to save; must not be modified afterwards
+     * @return true if the snapshot was queued
+     */
+    private boolean queueSnapshot(JsonObject userData) {
+        long snapshotSeq = userData.has(JOURNAL_SEQ) ? userData.get(JOURNAL_SEQ).getAsLong() : 0;
+        cachedUserData = null;
+        snapshotsInFlight++;
+        PersistenceExecutor.submit(userDatabasePath, userData).thenAccept(saved -> {
+            synchronized (this) {
+                snapshotsInFlight--;
+                if (saved) {
+                    trimThrough(snapshotSeq);
+                } else {
+                    logger.log(Level.SEVERE, "Failed to save user database snapshot; loan journal kept: " + userDatabasePath);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Folds the whole journal into a new snapshot; the journal is emptied once the snapshot is written.
+     * Runs on the background compaction thread; appends wait while it holds the journal lock.
+     */
+    public void compact() {
+        synchronized (this) {
+            compactionScheduled = false;
+            try {
+                JsonObject userData = readUserData();
+                if (userData == null) {
+                    logger.log(Level.SEVERE, "Skipping journal compaction: user database unreadable");
+                    return;
+                }
+                int folded = pendingEvents;
+                // Folding events in leaves the data the same, so the index and version stay valid
+                queueSnapshot(userData);
+                logger.log(Level.INFO, "Queued compaction of " + folded + " loan events into " + userDatabasePath);
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Journal compaction failed for " + userDatabasePath, e);
+            }
+        }
+    }
+
+    /**
+     * Removes events with a sequence number up to and including the given one from the journal.
+     *
+     * @param seq The highest sequence number already contained in the snapshot
+     */
+    private void trimThrough(long seq) {
+        try {
+            List<JsonObject> remaining = new ArrayList<>();
+            for (JsonObject event : readEvents()) {
+                if (event.get("Seq").getAsLong() > seq) {
+                    remaining.add(event);
+                }
+            }
+
+            if (remaining.isEmpty()) {
+                Files.deleteIfExists(journalPath);
+            } else {
+                StringBuilder sb = new StringBuilder();
+                for (JsonObject event : remaining) {
+                    sb.append(gson.toJson(event)).append('\n');
+                }
+                Path tempPath = journalPath.resolveSibling(journalPath.getFileName() + ".tmp");
+                Files.writeString(tempPath, sb, StandardCharsets.UTF_8);
+                Files.move(tempPath, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            pendingEvents = remaining.size();
+            trimmedThrough = Math.max(trimmedThrough, seq);
+            readOffset = -1;
+        } catch (Exception e) {
+            // The snapshot already contains these events and replay skips them, so this is harmless
+            logger.log(Level.WARNING, "Failed to trim loan journal: " + journalPath, e);
+        }
+    }
+
+    /**
+     * Reads all complete events from the journal file, stopping at the first malformed line.
+     *
+     * @return The events in the order they were appended
+     */
+    private List<JsonObject> readEvents() {
+        readOffset = -1;
+        return readEventsAfter(0);
+    }
+
+    /**
+     * Returns the journal events with a sequence number above the given one. Only the part of the
+     * file appended since the last read is parsed, unless the file no longer continues from there
+     * or older events are asked for, in which case it is read from the start. Reading stops at the
+     * first torn or malformed line, which is read again next time.
+     *
+     * @param seq The highest sequence number not wanted
+     * @return The events after seq, in the order they were appended
+     */
+    private List<JsonObject> readEventsAfter(long seq) {
+        List<JsonObject> events = new ArrayList<>();
+        if (readOffset > 0 && seq >= readSeq) {
+            if (readTail(events)) {
+                return events;
+            }
+            journalRewound = true;
+        }
+
+        // Read the whole file
+        events.clear();
+        readOffset = 0;
+        readSeq = 0;
+        readCount = 0;
+        if (!readTail(events)) {
+            logger.log(Level.WARNING, "Loan journal does not continue its own sequence: " + journalPath);
+        }
+        events.removeIf(event -> event.get("Seq").getAsLong() <= seq);
+        return events;
+    }
+
+    /**
+     * Reads the complete events between readOffset and the end of the file into a list and moves
+     * readOffset past them.
+     *
+     * @param events Receives the events read
+     * @return false if the file is shorter than readOffset or its next event does not follow readSeq,
+     *         so it was truncated or rewritten since the last read; true otherwise
+     */
+    private boolean readTail(List<JsonObject> events) {
+        byte[] tail;
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < readOffset) {
+                return false;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) (size - readOffset));
+            while (buffer.hasRemaining() && channel.read(buffer, readOffset + buffer.position()) >= 0) {
+                // Keep reading until the buffer is full
+            }
+            tail = buffer.array();
+        } catch (NoSuchFileException e) {
+            // No journal yet, or it was emptied since the last read
+            return readOffset == 0;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to read loan journal: " + journalPath, e);
+            return true;
+        }
+
+        int lineStart = 0;
+        for (int i = 0; i < tail.length; i++) {
+            if (tail[i] != '\n') continue;
+
+            String line = new String(tail, lineStart, i - lineStart, StandardCharsets.UTF_8);
+            if (!line.isBlank()) {
+                JsonObject event;
+                try {
+                    event = JsonParser.parseString(line).getAsJsonObject();
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "Ignoring torn or malformed loan journal entry after " + readCount + " events");
+                    break;
+                }
+                long seq = event.get("Seq").getAsLong();
+                if (readCount > 0 && seq != readSeq + 1) {
+                    return false;
+                }
+                events.add(event);
+                readSeq = seq;
+                readCount++;
+            }
+            readOffset += i + 1 - lineStart;
+            lineStart = i + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Builds a LookupTag to user record map for replaying events.
+     *
+     * @param userData The user data tree
+     * @return Map from lookup tag to the user record
+     */
+    private static Map<String, JsonObject> indexUsersByTag(JsonObject userData) {
+        Map<String, JsonObject> usersByTag = new HashMap<>();
+        for (String userType : USER_TYPES) {
+            JsonArray users = userData.getAsJsonArray(userType);
+            if (users == null) continue;
+
+            for (JsonElement element : users) {
+                JsonObject user = element.getAsJsonObject();
+                if (user.has(JsonManager.LOOKUP_TAG)) {
+                    usersByTag.put(user.get(JsonManager.LOOKUP_TAG).getAsString(), user);
+                }
+            }
+        }
+        return usersByTag;
+    }
+
+    /**
+     * Applies a single event to a user record.
+     *
+     * @param user The user record
+     * @param event The journal event
+     */
+    private static void apply(JsonObject user, JsonObject event) {
+        String bookId = event.get("BookID").getAsString();
+        Operation operation = Operation.valueOf(event.get("Op").getAsString());
+
+        if (!user.has("Books") || user.get("Books").isJsonNull()) {
+            user.add("Books", new JsonArray());
+        }
+        JsonArray books = user.getAsJsonArray("Books");
+
+        switch (operation) {
+            case BORROW:
+                JsonObject newBook = new JsonObject();
+                newBook.addProperty("BookID", bookId);
+                newBook.add("DateIssued", event.get("DateIssued"));
+                newBook.addProperty("Status", event.get("Status").getAsInt());
+                books.add(newBook);
+                break;
+
+            case RETURN:
+                for (int i = 0; i < books.size(); i++) {
+                    if (books.get(i).getAsJsonObject().get("BookID").getAsString().equals(bookId)) {
+                        books.remove(i);
+                        break;
+                    }
+                }
+                break;
+
+            case STATUS:
+                for (int i = 0; i < books.size(); i++) {
+                    JsonObject book = books.get(i).getAsJsonObject();
+                    if (book.get("BookID").getAsString().equals(bookId)) {
+                        book.addProperty("Status", event.get("Status").getAsInt());
+                        break;
+                    }
+                }
+                break;
+
+            case RENAME:
+                for (int i = 0; i < books.size(); i++) {
+                    JsonObject book = books.get(i).getAsJsonObject();
+                    if (book.get("BookID").getAsString().equals(bookId)) {
+                        book.addProperty("BookID", event.get("NewBookID").getAsString());
+                        break;
+                    }
+                }
+                break;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package core;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * A user's loans fully resolved for display: each loan with its book title, due date, current
+ * due status and overdue fee, plus the total fines. DataBaseManager.getLoanSummary() builds it
+ * from one user lookup and one catalog lookup per loan, so a screen showing loans and fines does
+ * not resolve the user again for each loan.
+ *
+ * @param userType The user type category of the borrower (Students, General Public, Admins)
+ * @param entries The resolved loans, in record order
+ * @param totalFines The sum of the entries' fees
+ */
+public record LoanSummary(String userType, List<Entry> entries, double totalFines) {
+
+    public LoanSummary {
+        entries = List.copyOf(entries);
+    }
+
+    /**
+     * One resolved loan.
+     *
+     * @param loan The loan as stored, including its saved due status
+     * @param title The title of the book, or null if the book is no longer in the catalog
+     * @param dueDate The due date, or null if the issue date or loan period is unknown
+     * @param status The due status today: 1 (on time), 0 (due today), -1 (overdue), or -2 if the due date is unknown
+     * @param daysOverdue Number of days the book is overdue, or 0 if it is not
+     * @param fee The overdue fee for the loan, or 0 if it is not overdue
+     */
+    public record Entry(Loan loan, String title, LocalDate dueDate, int status, int daysOverdue, float fee) {
+
+        /**
+         * @return true if the status today differs from the saved one and should be saved
+         */
+        public boolean statusChanged() {
+            return status != -2 && status != loan.status();
+        }
+    }
+}
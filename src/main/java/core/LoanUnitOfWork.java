@@ -0,0 +1,284 @@
+package core;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Borrows, returns and due status changes staged in memory and committed together. Users are
+ * given as core.UserHandle instances that are current (see StorageEngine.revalidate()), so
+ * staging validates each change against the handles' loans without reading the user database:
+ * for a return or status change the loan must exist. A borrow reserves a copy through the
+ * catalog's core.CirculationEngine, which fails if none is available. Nothing is written until
+ * commit().
+ *
+ * commit() checks that no other change reached the users' records since the handles were
+ * validated and then appends all loan events to the core.LoanJournal in one forced write. That append is
+ * the commit point: if it fails, the reserved copies are put back and nothing has changed. Once
+ * it succeeds, returned copies go back on the shelf, the handles are brought up to date with their
+ * new loans, and the availability changes are applied to the resident catalog with one
+ * coalesced background save. The append also makes the counts durable: core.CatalogStore derives
+ * each book's OnLoan count from the recorded loans whenever it loads the catalog, so a save that
+ * is lost or fails costs no count.
+ *
+ * The caller must hold the book locks (CirculationEngine.withBookLocks()) of every book it
+ * borrows or returns from the first staged change through commit(), so the books are not edited
+ * or deleted in between. Due status changes need no locks. A unit that is not committed must be
+ * rolled back, or its reserved copies stay off the shelf.
+ */
+public class LoanUnitOfWork {
+    private static final Logger logger = Logger.getLogger(LoanUnitOfWork.class.getName());
+
+    /** A copy reserved by a staged borrow */
+    private record Reservation(String bookId, AtomicLong counter) {}
+
+    /** The catalog whose availability counts change */
+    private final CatalogStore catalog;
+
+    /** Path of the user database whose loans change */
+    private final String userDatabasePath;
+
+    /** Loan events to append, in staging order */
+    private final List<LoanJournal.Event> events = new ArrayList<>();
+
+    /** Copies reserved by staged borrows, in staging order */
+    private final List<Reservation> reservations = new ArrayList<>();
+
+    /** IDs of the books of staged returns, in staging order */
+    private final List<String> returnedBooks = new ArrayList<>();
+
+    /** Resolution of each user with staged changes, as it was validated */
+    private final Map<UserHandle, UserHandle.Resolution> validated = new IdentityHashMap<>();
+
+    /** Staged loans of each user with staged changes */
+    private final Map<UserHandle, List<Loan>> stagedLoans = new IdentityHashMap<>();
+
+    /**
+     * @param catalog The catalog store
+     * @param userDatabasePath Path of the user database file
+     */
+    public LoanUnitOfWork(CatalogStore catalog, String userDatabasePath) {
+        this.catalog = catalog;
+        this.userDatabasePath = userDatabasePath;
+    }
+
+    /**
+     * Stages a loan issued today, reserving one copy of the book. The copy stays reserved unless
+     * the unit fails to commit.
+     *
+     * @param user The user borrowing the book, current
+     * @param bookId The ID of the book
+     * @param password The user's password, used to encrypt the issue date
+     * @return true if the borrow was staged, false if the book is not found or no copy is available
+     */
+    public boolean borrow(UserHandle user, String bookId, String password) {
+        CirculationEngine circulation = catalog.circulation();
+        AtomicLong counter = circulation.reserve(bookId);
+        if (counter == null) {
+            logger.log(Level.WARNING, circulation.availableCopies(bookId) < 0
+                    ? "Book not found: " + bookId
+                    : "Book not available for borrowing: " + bookId);
+            return false;
+        }
+        reservations.add(new Reservation(bookId, counter));
+
+        LocalDate today = LocalDate.now();
+        String encryptedDate = SecurityManager.encrypt(today.toString(), password);
+        events.add(new LoanJournal.Event(LoanJournal.Operation.BORROW, user.lookupTag(), bookId, encryptedDate, 1));
+        loansOf(user).add(new Loan(bookId, (int) today.toEpochDay(), 1));
+        return true;
+    }
+
+    /**
+     * Stages the removal of a user's loan; the copy goes back on the shelf once the unit commits.
+     * A loan of a book that is no longer in the catalog is removed without changing any counts.
+     *
+     * @param user The user returning the book, current
+     * @param bookId The ID of the book
+     * @return true if the return was staged, false if the user has no such loan
+     */
+    public boolean returnBook(UserHandle user, String bookId) {
+        List<Loan> loans = loansOf(user);
+        int loan = indexOfLoan(loans, bookId);
+        if (loan < 0) {
+            logger.log(Level.WARNING, "Book " + bookId + " not found in user " + user.userId() + "'s borrowed list");
+            return false;
+        }
+
+        events.add(new LoanJournal.Event(LoanJournal.Operation.RETURN, user.lookupTag(), bookId, null, 0));
+        loans.remove(loan);
+        returnedBooks.add(bookId);
+        return true;
+    }
+
+    /**
+     * Stages new due statuses for several of a user's loans.
+     *
+     * @param user The user, current
+     * @param statuses New status code per book ID: 1 (on time), 0 (due today), -1 (overdue)
+     * @return true if every status was staged, false (staging none of them) if one of the loans is not found
+     */
+    public boolean updateStatuses(UserHandle user, Map<String, Integer> statuses) {
+        List<Loan> loans = loansOf(user);
+        for (String bookId : statuses.keySet()) {
+            if (indexOfLoan(loans, bookId) < 0) {
+                logger.log(Level.WARNING, "Book " + bookId + " not found in user " + user.userId() + "'s borrowed list");
+                return false;
+            }
+        }
+        for (Map.Entry<String, Integer> entry : statuses.entrySet()) {
+            int loan = indexOfLoan(loans, entry.getKey());
+            Loan current = loans.get(loan);
+            loans.set(loan, new Loan(current.bookId(), current.issuedEpochDay(), entry.getValue()));
+            events.add(new LoanJournal.Event(LoanJournal.Operation.STATUS, user.lookupTag(), entry.getKey(), null, entry.getValue()));
+        }
+        return true;
+    }
+
+    /**
+     * Commits every staged change: all loan events in one journal append, then the availability
+     * changes. If the append fails, or a user's record changed since it was validated, the
+     * reserved copies are put back.
+     *
+     * @return true if the changes were committed (or nothing was staged), false if nothing changed
+     */
+    public boolean commit() {
+        if (events.isEmpty()) {
+            return true;
+        }
+
+        LoanJournal journal = LoanJournal.forPath(userDatabasePath);
+        synchronized (journal) {
+            for (Map.Entry<UserHandle, UserHandle.Resolution> entry : validated.entrySet()) {
+                if (!journal.isCurrent(entry.getKey().lookupTag(), entry.getValue().version())) {
+                    logger.log(Level.SEVERE, "User data changed while loan changes were staged for user " + entry.getKey().userId());
+                    rollback();
+                    return false;
+                }
+            }
+
+            if (!journal.appendAll(events)) {
+                logger.log(Level.SEVERE, "Failed to record " + events.size() + " loan events, putting back reserved copies");
+                rollback();
+                return false;
+            }
+
+            // Nothing else changed the user data in between, so the staged loans are now current
+            long version = journal.version();
+            for (Map.Entry<UserHandle, UserHandle.Resolution> entry : validated.entrySet()) {
+                UserHandle.Resolution resolution = entry.getValue();
+                entry.getKey().update(resolution.user().withLoans(stagedLoans.get(entry.getKey())), resolution.recordKey(), version);
+            }
+        }
+
+        // Net copies taken off the shelf per book
+        Map<String, Integer> copiesTaken = new LinkedHashMap<>();
+        for (Reservation reservation : reservations) {
+            copiesTaken.merge(reservation.bookId(), 1, Integer::sum);
+        }
+        for (String bookId : returnedBooks) {
+            if (catalog.circulation().releaseCopy(bookId)) {
+                copiesTaken.merge(bookId, -1, Integer::sum);
+            } else {
+                logger.log(Level.WARNING, "Returned book is no longer in the catalog, availability not updated: " + bookId);
+            }
+        }
+
+        int changed = applyToCatalog(copiesTaken);
+        logger.log(Level.FINE, "Committed " + events.size() + " loan events and " + changed + " availability changes");
+        return true;
+    }
+
+    /**
+     * Abandons every staged change, putting back the copies reserved by staged borrows. A unit
+     * that is not committed must be rolled back.
+     */
+    public void rollback() {
+        for (Reservation reservation : reservations) {
+            CirculationEngine.release(reservation.counter());
+        }
+        reservations.clear();
+        returnedBooks.clear();
+        events.clear();
+        validated.clear();
+        stagedLoans.clear();
+    }
+
+    /**
+     * Applies committed availability changes to the resident catalog and queues one save. Each
+     * book's OnLoan count is set to the copies the journal now records as lent rather than moved by
+     * the change, the same rule core.CatalogStore applies when it loads the catalog, so a catalog
+     * reloaded after the append already holds the change and is left as it is.
+     *
+     * @param copiesTaken Net copies taken off the shelf per book ID, negative for copies put back
+     * @return The number of books changed
+     */
+    private int applyToCatalog(Map<String, Integer> copiesTaken) {
+        LoanJournal journal = LoanJournal.forPath(userDatabasePath);
+        int changed = 0;
+        synchronized (catalog) {
+            for (Map.Entry<String, Integer> entry : copiesTaken.entrySet()) {
+                int taken = entry.getValue();
+                if (taken == 0) continue;
+
+                Book book = catalog.findById(entry.getKey());
+                if (book == null) {
+                    logger.log(Level.SEVERE, "Loan events recorded but the book is no longer in the catalog: " + entry.getKey());
+                    continue;
+                }
+                int lent = journal.lentCopies(book.bookId());
+                Book counted = lent >= 0
+                        ? book.withCounts(Math.max(0, book.available() + book.onLoan() - lent), lent)
+                        : book.withCounts(Math.max(0, book.available() - taken), Math.max(0, book.onLoan() + taken));
+                if (counted.available() == book.available() && counted.onLoan() == book.onLoan()) continue;
+
+                if (!catalog.replaceBook(book, counted)) {
+                    logger.log(Level.SEVERE, "Loan events recorded but the book is no longer in the catalog: " + entry.getKey());
+                    continue;
+                }
+                changed++;
+            }
+            if (changed > 0 && !catalog.save()) {
+                logger.log(Level.SEVERE, "Loan events recorded but the catalog save could not be queued: " + userDatabasePath);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns a user's loans as staged so far, taking the handle's resolution on first use.
+     *
+     * @param user A user handle
+     * @return The staged loans, modifiable
+     */
+    private List<Loan> loansOf(UserHandle user) {
+        List<Loan> loans = stagedLoans.get(user);
+        if (loans == null) {
+            UserHandle.Resolution resolution = user.resolution();
+            validated.put(user, resolution);
+            loans = new ArrayList<>(resolution.user().loans());
+            stagedLoans.put(user, loans);
+        }
+        return loans;
+    }
+
+    /**
+     * @param loans A user's loans
+     * @param bookId The ID of a book
+     * @return Position of the first loan of the book, the one journal events apply to, or -1 if there is none
+     */
+    private static int indexOfLoan(List<Loan> loans, String bookId) {
+        for (int i = 0; i < loans.size(); i++) {
+            if (loans.get(i).bookId().equals(bookId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
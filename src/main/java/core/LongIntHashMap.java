@@ -0,0 +1,235 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive long keys to primitive int values, such as encoded book IDs
+ * (see core.BookId) to catalog positions. Open addressing with linear probing over parallel
+ * arrays: lookups and updates neither box keys nor allocate, and removal shifts later entries of
+ * the probe run back instead of leaving tombstones.
+ *
+ * Long.MIN_VALUE marks free slots and cannot be used as a key. Not thread-safe.
+ */
+public class LongIntHashMap {
+
+    /** Returned by get(), put() and remove() when the key has no value */
+    public static final int NO_VALUE = -1;
+
+    /** Key of a free slot */
+    private static final long FREE = Long.MIN_VALUE;
+
+    /** Largest share of slots in use before the table grows */
+    private static final double LOAD_FACTOR = 0.6;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    /**
+     * Creates an empty map.
+     */
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty map sized to hold a number of entries without growing.
+     *
+     * @param expectedSize The expected number of entries
+     */
+    public LongIntHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @param key The key
+     * @return The value mapped to the key, or NO_VALUE if there is none
+     */
+    public int get(long key) {
+        int slot = slotOf(key);
+        return slot >= 0 ? values[slot] : NO_VALUE;
+    }
+
+    /**
+     * @param key The key
+     * @return true if the key has a value
+     */
+    public boolean containsKey(long key) {
+        return slotOf(key) >= 0;
+    }
+
+    /**
+     * Maps a key to a value, replacing any previous value.
+     *
+     * @param key The key (not Long.MIN_VALUE)
+     * @param value The value
+     * @return The previous value, or NO_VALUE if there was none
+     */
+    public int put(long key, int value) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Long.MIN_VALUE cannot be used as a key");
+        }
+
+        int slot = hash(key) & mask;
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeAt) {
+            rehash(keys.length * 2);
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Maps a key to a value unless it already has one.
+     *
+     * @param key The key (not Long.MIN_VALUE)
+     * @param value The value
+     * @return The existing value, or NO_VALUE if the key was added
+     */
+    public int putIfAbsent(long key, int value) {
+        int slot = slotOf(key);
+        if (slot >= 0) {
+            return values[slot];
+        }
+        put(key, value);
+        return NO_VALUE;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key The key
+     * @return The value the key had, or NO_VALUE if it had none
+     */
+    public int remove(long key) {
+        int slot = slotOf(key);
+        if (slot < 0) {
+            return NO_VALUE;
+        }
+        int removed = values[slot];
+
+        // Shift later entries of the probe run into the gap if their home slot allows it
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != FREE) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = FREE;
+        size--;
+        return removed;
+    }
+
+    /**
+     * @return The number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the map has no keys
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every key, keeping the current capacity.
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    /**
+     * Finds the slot holding a key.
+     *
+     * @param key The key
+     * @return The slot, or -1 if the key is not present
+     */
+    private int slotOf(long key) {
+        if (key == FREE) {
+            return -1;
+        }
+        int slot = hash(key) & mask;
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Moves every entry into a table of a new capacity.
+     *
+     * @param capacity The new number of slots, a power of two
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * @param capacity The number of slots, a power of two
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, FREE);
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * @param expectedSize The expected number of entries
+     * @return The smallest power-of-two capacity that holds them below the load factor
+     */
+    private static int capacityFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Spreads the bits of a key, since encoded book IDs are dense and sequential.
+     *
+     * @param key The key
+     * @return The hash
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,985 @@
+package core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * core.CatalogBackend that keeps the catalog in native memory through the Foreign Function &amp;
+ * Memory API, so the heap and GC work stay flat however large the catalog is.
+ *
+ * Each book is a fixed-width row: encoded ID (see core.BookId), shelf number, Available, OnLoan and
+ * a reference (offset and length) into a separate area of UTF-8 text for the ID, title, author and
+ * publisher. Lookups by ID go through an open-addressing hash table from encoded ID to row, also in
+ * native memory; IDs that do not follow the BookID format are kept in a small map on the heap.
+ * Books are only materialized as core.Book records when they are returned, so callers compare them
+ * by value rather than identity. Searches scan the rows and match ASCII text in place.
+ *
+ * Memory is anonymous by default. Given a directory, every area is instead a temporary file mapped
+ * with FileChannel.map(), so the operating system can page the catalog out under memory pressure.
+ * Text replaced or removed stays in the text area until it next has to grow, when live text is
+ * compacted. close() releases everything; the backend must not be used afterwards.
+ */
+public class OffHeapCatalog implements CatalogBackend {
+    private static final Logger logger = Logger.getLogger(OffHeapCatalog.class.getName());
+
+    /** Bytes per row and the offset of each field within a row */
+    private static final long ROW_BYTES = 56;
+    private static final long CODE = 0;
+    private static final long SHELF = 8;
+    private static final long AVAILABLE = 12;
+    private static final long ON_LOAN = 16;
+    private static final long BOOK_ID = 24;
+    private static final long TITLE = 32;
+    private static final long AUTHOR = 40;
+    private static final long PUBLISHER = 48;
+
+    /** A text reference packs the offset into the text area above a 24-bit length */
+    private static final int LENGTH_BITS = 24;
+    private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+
+    /** Text reference of a missing field */
+    private static final long MISSING = -1;
+
+    /** Bytes per hash table slot: encoded ID, then row */
+    private static final long SLOT_BYTES = 16;
+
+    /** Encoded ID of a free slot; shelf numbers start at 1, so no valid ID encodes to 0 */
+    private static final long FREE = 0;
+
+    /** Largest share of slots in use before the hash table grows */
+    private static final double LOAD_FACTOR = 0.6;
+
+    /** Smallest number of rows and bytes of text allocated */
+    private static final int MIN_ROWS = 1024;
+    private static final long MIN_TEXT_BYTES = 64 * 1024;
+
+    /** Directory for the mapped files, or null for anonymous memory */
+    private final Path directory;
+
+    private Region rows;
+    private int rowCount;
+
+    private Region text;
+    private long textUsed;
+
+    private Region slots;
+    private int slotMask;
+    private int slotsUsed;
+
+    /** Row of books whose ID cannot be encoded by core.BookId */
+    private final Map<String, Integer> irregularRows = new HashMap<>();
+
+    /** Whether the catalog contained the same BookID more than once when it was loaded */
+    private boolean hasDuplicateIds;
+
+    /** Read-only view handed out by books() */
+    private final List<Book> booksView = new AbstractList<>() {
+        @Override
+        public Book get(int index) {
+            if (index < 0 || index >= rowCount) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return readBook(rows.segment(), text.segment(), index);
+        }
+
+        @Override
+        public int size() {
+            return rowCount;
+        }
+    };
+
+    /**
+     * Memory owned by one arena: anonymous, or a mapped temporary file.
+     *
+     * @param arena The arena owning the segment
+     * @param segment The memory
+     * @param file The mapped file, or null for anonymous memory
+     */
+    private record Region(Arena arena, MemorySegment segment, Path file) {
+        void release() {
+            arena.close();
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Failed to delete catalog memory file: " + file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates an empty catalog.
+     *
+     * @param expectedBooks Number of books to allocate room for
+     * @param directory Directory for the mapped files, or null to use anonymous memory
+     */
+    public OffHeapCatalog(int expectedBooks, Path directory) {
+        this(Math.max(MIN_ROWS, expectedBooks), Math.max(MIN_TEXT_BYTES, Math.max(MIN_ROWS, expectedBooks) * 64L),
+                slotCapacityFor(Math.max(MIN_ROWS, expectedBooks)), directory);
+    }
+
+    /**
+     * @param rowCapacity Number of rows to allocate
+     * @param textCapacity Number of bytes of text to allocate
+     * @param slotCapacity Number of hash table slots, a power of two
+     * @param directory Directory for the mapped files, or null to use anonymous memory
+     */
+    private OffHeapCatalog(int rowCapacity, long textCapacity, int slotCapacity, Path directory) {
+        this.directory = directory;
+        rows = allocate(rowCapacity * ROW_BYTES, "rows");
+        text = allocate(textCapacity, "text");
+        allocateSlots(slotCapacity);
+    }
+
+    /**
+     * Loads a catalog file into native memory without building it on the heap. If a save of the
+     * file is still queued in core.PersistenceExecutor, the queued catalog is loaded instead.
+     *
+     * @param filePath Path of the catalog file
+     * @param directory Directory for the mapped files, or null to use anonymous memory
+     * @return The loaded catalog, or null if the file cannot be read
+     */
+    public static OffHeapCatalog load(String filePath, Path directory) {
+        List<?> pendingSnapshot = PersistenceExecutor.pendingSnapshot(filePath, List.class);
+        if (pendingSnapshot != null) {
+            List<Book> books = new ArrayList<>(pendingSnapshot.size());
+            for (Object book : pendingSnapshot) {
+                books.add((Book) book);
+            }
+            return of(books, filePath, directory);
+        }
+
+        OffHeapCatalog catalog = null;
+        try (CatalogScanner scanner = CatalogScanner.open(filePath)) {
+            catalog = new OffHeapCatalog(0, directory);
+            while (scanner.hasNext()) {
+                catalog.append(scanner.next());
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Failed to load catalog into native memory: " + filePath, e);
+            if (catalog != null) {
+                catalog.close();
+            }
+            return null;
+        }
+
+        if (catalog.hasDuplicateIds) {
+            logger.log(Level.WARNING, "Catalog contains duplicate book IDs; lookups return the first record: " + filePath);
+        }
+        logger.log(Level.FINE, "Loaded catalog into native memory: " + catalog.rowCount + " books, "
+                + catalog.textUsed + " bytes of text from " + filePath);
+        return catalog;
+    }
+
+    /**
+     * Copies a catalog into native memory, for example from a core.CatalogSnapshot.
+     *
+     * @param books The books in catalog order, read one at a time
+     * @param filePath Path of the catalog file, for logging
+     * @param directory Directory for the mapped files, or null to use anonymous memory
+     * @return The catalog, or null if it cannot be copied
+     */
+    public static OffHeapCatalog of(List<Book> books, String filePath, Path directory) {
+        OffHeapCatalog catalog;
+        try {
+            catalog = build(books, directory);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Failed to copy catalog into native memory: " + filePath, e);
+            return null;
+        }
+        if (catalog.hasDuplicateIds) {
+            logger.log(Level.WARNING, "Catalog contains duplicate book IDs; lookups return the first record: " + filePath);
+        }
+        return catalog;
+    }
+
+    /**
+     * Builds a catalog in native memory.
+     *
+     * @param books The books in catalog order
+     * @param directory Directory for the mapped files, or null to use anonymous memory
+     * @return The catalog
+     * @throws IllegalArgumentException if a book has no ID
+     */
+    static OffHeapCatalog build(List<Book> books, Path directory) {
+        OffHeapCatalog catalog = new OffHeapCatalog(books.size(), directory);
+        try {
+            for (Book book : books) {
+                catalog.append(book);
+            }
+            return catalog;
+        } catch (RuntimeException e) {
+            catalog.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Copies a catalog image, as written by core.CatalogSnapshot, into new native memory. Nothing
+     * is decoded: the rows, text and hash table are copied as they are.
+     *
+     * @param rowImage The rows, as returned by rowImage()
+     * @param textImage The text, as returned by textImage()
+     * @param slotImage The hash table, as returned by slotImage()
+     * @param slotsUsed Number of IDs in the hash table
+     * @param hasDuplicateIds Whether the catalog contains the same BookID more than once
+     * @param directory Directory for the mapped files, or null to use anonymous memory
+     * @return The catalog
+     * @throws IllegalArgumentException if the images do not fit together
+     */
+    static OffHeapCatalog fromImage(MemorySegment rowImage, MemorySegment textImage, MemorySegment slotImage,
+                                    int slotsUsed, boolean hasDuplicateIds, Path directory) {
+        long slotCapacity = slotImage.byteSize() / SLOT_BYTES;
+        if (rowImage.byteSize() % ROW_BYTES != 0 || rowImage.byteSize() / ROW_BYTES > Integer.MAX_VALUE
+                || slotImage.byteSize() % SLOT_BYTES != 0 || Long.bitCount(slotCapacity) != 1
+                || slotCapacity > Integer.MAX_VALUE || slotsUsed < 0 || slotsUsed > slotCapacity * LOAD_FACTOR) {
+            throw new IllegalArgumentException("Inconsistent catalog image");
+        }
+
+        int rowCount = (int) (rowImage.byteSize() / ROW_BYTES);
+        OffHeapCatalog catalog = new OffHeapCatalog(Math.max(MIN_ROWS, rowCount),
+                Math.max(MIN_TEXT_BYTES, textImage.byteSize() + textImage.byteSize() / 4), (int) slotCapacity, directory);
+        MemorySegment.copy(rowImage, 0, catalog.rows.segment(), 0, rowImage.byteSize());
+        MemorySegment.copy(textImage, 0, catalog.text.segment(), 0, textImage.byteSize());
+        MemorySegment.copy(slotImage, 0, catalog.slots.segment(), 0, slotImage.byteSize());
+        catalog.rowCount = rowCount;
+        catalog.textUsed = textImage.byteSize();
+        catalog.slotsUsed = slotsUsed;
+        catalog.hasDuplicateIds = hasDuplicateIds;
+
+        // IDs outside the BookID format are not in the hash table
+        MemorySegment rowSegment = catalog.rows.segment();
+        for (int row = 0; row < rowCount; row++) {
+            long base = row * ROW_BYTES;
+            if (rowSegment.get(ValueLayout.JAVA_LONG, base + CODE) == BookId.INVALID) {
+                String bookId = readText(catalog.text.segment(), rowSegment.get(ValueLayout.JAVA_LONG, base + BOOK_ID));
+                catalog.irregularRows.putIfAbsent(bookId, row);
+            }
+        }
+        return catalog;
+    }
+
+    /**
+     * @return The rows in use, in native byte order; valid until the catalog changes
+     */
+    MemorySegment rowImage() {
+        return rows.segment().asSlice(0, rowCount * ROW_BYTES);
+    }
+
+    /**
+     * @return The text in use; valid until the catalog changes
+     */
+    MemorySegment textImage() {
+        return text.segment().asSlice(0, textUsed);
+    }
+
+    /**
+     * @return The hash table from encoded ID to row, in native byte order; valid until the catalog changes
+     */
+    MemorySegment slotImage() {
+        return slots.segment();
+    }
+
+    /**
+     * @return Number of IDs in the hash table
+     */
+    int slotsUsed() {
+        return slotsUsed;
+    }
+
+    /**
+     * @return Whether the catalog contains the same BookID more than once
+     */
+    boolean hasDuplicateIds() {
+        return hasDuplicateIds;
+    }
+
+    /**
+     * Materializes every row of a catalog image as a book, as core.CatalogSnapshot does to load a
+     * catalog onto the heap.
+     *
+     * @param rowImage The rows
+     * @param textImage The text
+     * @param sharedStrings Author and publisher strings to share between the books
+     * @return A new, modifiable list of the books in catalog order
+     */
+    static List<Book> readBooks(MemorySegment rowImage, MemorySegment textImage, Map<String, String> sharedStrings) {
+        int rowCount = (int) (rowImage.byteSize() / ROW_BYTES);
+        List<Book> books = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            long base = row * ROW_BYTES;
+            books.add(new Book(
+                    readText(textImage, rowImage.get(ValueLayout.JAVA_LONG, base + BOOK_ID)),
+                    readText(textImage, rowImage.get(ValueLayout.JAVA_LONG, base + TITLE)),
+                    share(readText(textImage, rowImage.get(ValueLayout.JAVA_LONG, base + AUTHOR)), sharedStrings),
+                    share(readText(textImage, rowImage.get(ValueLayout.JAVA_LONG, base + PUBLISHER)), sharedStrings),
+                    rowImage.get(ValueLayout.JAVA_INT, base + AVAILABLE),
+                    rowImage.get(ValueLayout.JAVA_INT, base + ON_LOAN),
+                    rowImage.get(ValueLayout.JAVA_INT, base + SHELF)));
+        }
+        return books;
+    }
+
+    /**
+     * @param value A string just read, possibly null
+     * @param sharedStrings Distinct strings seen so far
+     * @return The shared instance equal to the string
+     */
+    private static String share(String value, Map<String, String> sharedStrings) {
+        if (value == null) {
+            return null;
+        }
+        String shared = sharedStrings.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+
+    @Override
+    public List<Book> books() {
+        return booksView;
+    }
+
+    @Override
+    public Book findById(String bookId) {
+        int row = indexedRow(bookId);
+        return row >= 0 ? readBook(rows.segment(), text.segment(), row) : null;
+    }
+
+    @Override
+    public Book findById(long code) {
+        int row = slotRow(code);
+        return row >= 0 ? readBook(rows.segment(), text.segment(), row) : null;
+    }
+
+    @Override
+    public boolean add(Book book) {
+        if (indexedRow(book.bookId()) >= 0) {
+            return false;
+        }
+        append(book);
+        return true;
+    }
+
+    @Override
+    public boolean replace(Book current, Book updated) {
+        String oldBookId = current.bookId();
+        String newBookId = updated.bookId();
+        boolean idChanged = !oldBookId.equals(newBookId);
+        if (idChanged && indexedRow(newBookId) >= 0) {
+            return false;
+        }
+        int row = rowOf(current);
+        if (row < 0) {
+            return false;
+        }
+
+        long base = row * ROW_BYTES;
+        if (idChanged || !sameText(current, updated)) {
+            writeText(row, updated);
+        }
+        MemorySegment segment = rows.segment();
+        segment.set(ValueLayout.JAVA_LONG, base + CODE, BookId.encode(newBookId));
+        segment.set(ValueLayout.JAVA_INT, base + SHELF, updated.shelfNumber());
+        segment.set(ValueLayout.JAVA_INT, base + AVAILABLE, updated.available());
+        segment.set(ValueLayout.JAVA_INT, base + ON_LOAN, updated.onLoan());
+
+        if (idChanged) {
+            if (indexedRow(oldBookId) == row) {
+                unindex(oldBookId);
+                if (hasDuplicateIds) {
+                    reindexDuplicate(oldBookId);
+                }
+            }
+            index(newBookId, row);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(Book book) {
+        int row = rowOf(book);
+        if (row < 0) {
+            return false;
+        }
+        String bookId = book.bookId();
+        boolean wasIndexed = indexedRow(bookId) == row;
+        if (wasIndexed) {
+            unindex(bookId);
+        }
+
+        // Close the gap and move every later row's index entry down one row
+        MemorySegment segment = rows.segment();
+        MemorySegment.copy(segment, (row + 1) * ROW_BYTES, segment, row * ROW_BYTES, (rowCount - row - 1) * ROW_BYTES);
+        rowCount--;
+        MemorySegment slotSegment = slots.segment();
+        for (long slot = 0; slot <= slotMask; slot++) {
+            long offset = slot * SLOT_BYTES;
+            if (slotSegment.get(ValueLayout.JAVA_LONG, offset) != FREE) {
+                int indexed = slotSegment.get(ValueLayout.JAVA_INT, offset + 8);
+                if (indexed > row) {
+                    slotSegment.set(ValueLayout.JAVA_INT, offset + 8, indexed - 1);
+                }
+            }
+        }
+        irregularRows.replaceAll((_, indexed) -> indexed > row ? indexed - 1 : indexed);
+
+        if (wasIndexed && hasDuplicateIds) {
+            reindexDuplicate(bookId);
+        }
+        return true;
+    }
+
+    @Override
+    public List<Book> search(String searchTerm) {
+        List<Book> matches = new ArrayList<>();
+        String term = searchTerm.toLowerCase();
+        byte[] asciiTerm = asciiBytes(term);
+        MemorySegment rowSegment = rows.segment();
+        MemorySegment textSegment = text.segment();
+
+        for (int row = 0; row < rowCount; row++) {
+            if (term.isEmpty() || matches(rowSegment, textSegment, row, term, asciiTerm)) {
+                matches.add(readBook(rowSegment, textSegment, row));
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public List<Book> snapshot() {
+        // Copied into memory the garbage collector frees once the save has dropped the list
+        Arena arena = Arena.ofAuto();
+        int count = rowCount;
+        MemorySegment rowCopy = arena.allocate(Math.max(1, count * ROW_BYTES), 8);
+        MemorySegment.copy(rows.segment(), 0, rowCopy, 0, count * ROW_BYTES);
+        MemorySegment textCopy = arena.allocate(Math.max(1, textUsed), 8);
+        MemorySegment.copy(text.segment(), 0, textCopy, 0, textUsed);
+
+        return new AbstractList<>() {
+            @Override
+            public Book get(int index) {
+                if (index < 0 || index >= count) {
+                    throw new IndexOutOfBoundsException(index);
+                }
+                return readBook(rowCopy, textCopy, index);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        rows.release();
+        text.release();
+        slots.release();
+        irregularRows.clear();
+        rowCount = 0;
+    }
+
+    /**
+     * Appends a book as the last row, indexing its ID unless an earlier row already has it.
+     *
+     * @param book The book
+     */
+    private void append(Book book) {
+        if (book == null || book.bookId() == null) {
+            throw new IllegalArgumentException("Catalog record without a BookID");
+        }
+        if ((rowCount + 1) * ROW_BYTES > rows.segment().byteSize()) {
+            rows = grow(rows, rowCount * ROW_BYTES, rows.segment().byteSize() * 2, "rows");
+        }
+        int row = rowCount++;
+        long base = row * ROW_BYTES;
+        writeText(row, book);
+        MemorySegment segment = rows.segment();
+        segment.set(ValueLayout.JAVA_LONG, base + CODE, BookId.encode(book.bookId()));
+        segment.set(ValueLayout.JAVA_INT, base + SHELF, book.shelfNumber());
+        segment.set(ValueLayout.JAVA_INT, base + AVAILABLE, book.available());
+        segment.set(ValueLayout.JAVA_INT, base + ON_LOAN, book.onLoan());
+
+        if (indexedRow(book.bookId()) >= 0) {
+            hasDuplicateIds = true;
+        } else {
+            index(book.bookId(), row);
+        }
+    }
+
+    /**
+     * Stores the text fields of a book and points a row at them.
+     *
+     * @param row The row
+     * @param book The book whose text to store
+     */
+    private void writeText(int row, Book book) {
+        byte[][] fields = {
+                utf8(book.bookId()), utf8(book.title()), utf8(book.author()), utf8(book.publisher())
+        };
+        long needed = 0;
+        for (byte[] field : fields) {
+            if (field != null) {
+                if (field.length > LENGTH_MASK) {
+                    throw new IllegalArgumentException("Text field too long for the catalog: " + field.length + " bytes");
+                }
+                needed += field.length;
+            }
+        }
+        // Old text of the row stays counted until compaction; mark it missing so compaction skips it
+        clearText(row);
+        ensureTextCapacity(needed);
+
+        long base = row * ROW_BYTES;
+        long[] offsets = {BOOK_ID, TITLE, AUTHOR, PUBLISHER};
+        MemorySegment textSegment = text.segment();
+        for (int i = 0; i < fields.length; i++) {
+            long reference = MISSING;
+            if (fields[i] != null) {
+                MemorySegment.copy(fields[i], 0, textSegment, ValueLayout.JAVA_BYTE, textUsed, fields[i].length);
+                reference = (textUsed << LENGTH_BITS) | fields[i].length;
+                textUsed += fields[i].length;
+            }
+            rows.segment().set(ValueLayout.JAVA_LONG, base + offsets[i], reference);
+        }
+    }
+
+    /**
+     * @param row A row whose text references to reset
+     */
+    private void clearText(int row) {
+        long base = row * ROW_BYTES;
+        for (long offset : new long[] {BOOK_ID, TITLE, AUTHOR, PUBLISHER}) {
+            rows.segment().set(ValueLayout.JAVA_LONG, base + offset, MISSING);
+        }
+    }
+
+    /**
+     * Makes room for more text, compacting the live text of every row into a new area if the
+     * current one is full.
+     *
+     * @param needed Number of bytes about to be appended
+     */
+    private void ensureTextCapacity(long needed) {
+        MemorySegment oldText = text.segment();
+        if (textUsed + needed <= oldText.byteSize()) {
+            return;
+        }
+
+        long live = 0;
+        MemorySegment rowSegment = rows.segment();
+        for (int row = 0; row < rowCount; row++) {
+            for (long offset : new long[] {BOOK_ID, TITLE, AUTHOR, PUBLISHER}) {
+                long reference = rowSegment.get(ValueLayout.JAVA_LONG, row * ROW_BYTES + offset);
+                if (reference != MISSING) {
+                    live += reference & LENGTH_MASK;
+                }
+            }
+        }
+
+        Region compacted = allocate(Math.max(MIN_TEXT_BYTES, (live + needed) * 2), "text");
+        MemorySegment newText = compacted.segment();
+        long used = 0;
+        for (int row = 0; row < rowCount; row++) {
+            for (long offset : new long[] {BOOK_ID, TITLE, AUTHOR, PUBLISHER}) {
+                long field = row * ROW_BYTES + offset;
+                long reference = rowSegment.get(ValueLayout.JAVA_LONG, field);
+                if (reference != MISSING) {
+                    long length = reference & LENGTH_MASK;
+                    MemorySegment.copy(oldText, reference >>> LENGTH_BITS, newText, used, length);
+                    rowSegment.set(ValueLayout.JAVA_LONG, field, (used << LENGTH_BITS) | length);
+                    used += length;
+                }
+            }
+        }
+        text.release();
+        text = compacted;
+        textUsed = used;
+    }
+
+    /**
+     * Checks one row against a lowercased search term the same way core.CatalogSearchIndex does.
+     *
+     * @param rowSegment The rows
+     * @param textSegment The text area
+     * @param row The row
+     * @param term The lowercased search term
+     * @param asciiTerm The term's bytes if ASCII text can be matched in place, otherwise null
+     * @return true if the book's ID, title, author, publisher or shelf number contains the term
+     */
+    private static boolean matches(MemorySegment rowSegment, MemorySegment textSegment, int row, String term, byte[] asciiTerm) {
+        long base = row * ROW_BYTES;
+        for (long offset : new long[] {BOOK_ID, TITLE, AUTHOR, PUBLISHER}) {
+            long reference = rowSegment.get(ValueLayout.JAVA_LONG, base + offset);
+            if (reference == MISSING) {
+                continue;
+            }
+            int found = asciiTerm != null ? containsAscii(textSegment, reference, asciiTerm) : -1;
+            if (found == 1) {
+                return true;
+            }
+            if (found == -1 && readText(textSegment, reference).toLowerCase().contains(term)) {
+                return true;
+            }
+        }
+        return String.valueOf(rowSegment.get(ValueLayout.JAVA_INT, base + SHELF)).contains(term);
+    }
+
+    /**
+     * Looks for a lowercase ASCII term in stored text, lowercasing ASCII letters on the fly.
+     *
+     * @param textSegment The text area
+     * @param reference Reference to the text
+     * @param term The lowercase ASCII term
+     * @return 1 if found, 0 if not, -1 if the text is not ASCII and has to be decoded instead
+     */
+    private static int containsAscii(MemorySegment textSegment, long reference, byte[] term) {
+        long start = reference >>> LENGTH_BITS;
+        int length = (int) (reference & LENGTH_MASK);
+        int found = 0;
+        for (int i = 0; i < length; i++) {
+            if (textSegment.get(ValueLayout.JAVA_BYTE, start + i) < 0) {
+                return -1;
+            }
+            if (found == 0 && i + term.length <= length) {
+                int j = 0;
+                while (j < term.length && asciiLower(textSegment.get(ValueLayout.JAVA_BYTE, start + i + j)) == term[j]) {
+                    j++;
+                }
+                if (j == term.length) {
+                    found = 1; // Keep checking the rest is ASCII, or the result could differ from toLowerCase()
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param b An ASCII byte
+     * @return The byte with A-Z lowercased
+     */
+    private static byte asciiLower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    /**
+     * @param term A lowercased search term
+     * @return Its bytes if it is ASCII and the default locale lowercases ASCII letters to ASCII,
+     *         otherwise null
+     */
+    private static byte[] asciiBytes(String term) {
+        if (!"I".toLowerCase().equals("i")) {
+            return null; // For example Turkish, where 'I' lowercases to a dotless i
+        }
+        for (int i = 0; i < term.length(); i++) {
+            if (term.charAt(i) >= 0x80) {
+                return null;
+            }
+        }
+        return term.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param current The stored book
+     * @param updated Its replacement
+     * @return true if both have the same title, author and publisher
+     */
+    private static boolean sameText(Book current, Book updated) {
+        return Objects.equals(current.title(), updated.title())
+                && Objects.equals(current.author(), updated.author())
+                && Objects.equals(current.publisher(), updated.publisher());
+    }
+
+    /**
+     * Finds the row of a book, through the index unless it is a duplicate.
+     *
+     * @param book A book returned by this catalog
+     * @return Its row, or -1 if no row holds an equal book
+     */
+    private int rowOf(Book book) {
+        int row = indexedRow(book.bookId());
+        if (row >= 0 && readBook(rows.segment(), text.segment(), row).equals(book)) {
+            return row;
+        }
+        if (!hasDuplicateIds) {
+            return -1;
+        }
+        for (int i = 0; i < rowCount; i++) {
+            if (readBook(rows.segment(), text.segment(), i).equals(book)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Re-indexes the next row carrying an ID after the indexed row with that ID was removed.
+     *
+     * @param bookId The ID whose index entry was removed
+     */
+    private void reindexDuplicate(String bookId) {
+        for (int row = 0; row < rowCount; row++) {
+            long reference = rows.segment().get(ValueLayout.JAVA_LONG, row * ROW_BYTES + BOOK_ID);
+            if (bookId.equals(readText(text.segment(), reference))) {
+                index(bookId, row);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param bookId A book ID
+     * @return The indexed row of the ID, or -1 if it is not indexed
+     */
+    private int indexedRow(String bookId) {
+        long code = BookId.encode(bookId);
+        if (code != BookId.INVALID) {
+            return slotRow(code);
+        }
+        Integer row = irregularRows.get(bookId);
+        return row != null ? row : -1;
+    }
+
+    /**
+     * @param bookId A book ID
+     * @param row The row to index it at
+     */
+    private void index(String bookId, int row) {
+        long code = BookId.encode(bookId);
+        if (code == BookId.INVALID) {
+            irregularRows.put(bookId, row);
+            return;
+        }
+
+        MemorySegment segment = slots.segment();
+        long slot = hash(code) & slotMask;
+        while (segment.get(ValueLayout.JAVA_LONG, slot * SLOT_BYTES) != FREE) {
+            if (segment.get(ValueLayout.JAVA_LONG, slot * SLOT_BYTES) == code) {
+                segment.set(ValueLayout.JAVA_INT, slot * SLOT_BYTES + 8, row);
+                return;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        segment.set(ValueLayout.JAVA_LONG, slot * SLOT_BYTES, code);
+        segment.set(ValueLayout.JAVA_INT, slot * SLOT_BYTES + 8, row);
+        if (++slotsUsed > (slotMask + 1) * LOAD_FACTOR) {
+            rehash((slotMask + 1) * 2);
+        }
+    }
+
+    /**
+     * @param bookId A book ID whose index entry to drop
+     */
+    private void unindex(String bookId) {
+        long code = BookId.encode(bookId);
+        if (code == BookId.INVALID) {
+            irregularRows.remove(bookId);
+            return;
+        }
+
+        MemorySegment segment = slots.segment();
+        long slot = slotOf(code);
+        if (slot < 0) {
+            return;
+        }
+        // Shift later entries of the probe run into the gap if their home slot allows it
+        long gap = slot;
+        long next = (gap + 1) & slotMask;
+        long key;
+        while ((key = segment.get(ValueLayout.JAVA_LONG, next * SLOT_BYTES)) != FREE) {
+            long home = hash(key) & slotMask;
+            if (((next - home) & slotMask) >= ((next - gap) & slotMask)) {
+                MemorySegment.copy(segment, next * SLOT_BYTES, segment, gap * SLOT_BYTES, SLOT_BYTES);
+                gap = next;
+            }
+            next = (next + 1) & slotMask;
+        }
+        segment.set(ValueLayout.JAVA_LONG, gap * SLOT_BYTES, FREE);
+        slotsUsed--;
+    }
+
+    /**
+     * @param code An encoded ID
+     * @return The indexed row of the ID, or -1 if it is not indexed
+     */
+    private int slotRow(long code) {
+        long slot = slotOf(code);
+        return slot >= 0 ? slots.segment().get(ValueLayout.JAVA_INT, slot * SLOT_BYTES + 8) : -1;
+    }
+
+    /**
+     * @param code An encoded ID
+     * @return The slot holding the ID, or -1 if it is not indexed
+     */
+    private long slotOf(long code) {
+        if (code == FREE || code == BookId.INVALID) {
+            return -1;
+        }
+        MemorySegment segment = slots.segment();
+        long slot = hash(code) & slotMask;
+        long key;
+        while ((key = segment.get(ValueLayout.JAVA_LONG, slot * SLOT_BYTES)) != FREE) {
+            if (key == code) {
+                return slot;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        return -1;
+    }
+
+    /**
+     * Moves every index entry into a hash table of a new capacity.
+     *
+     * @param capacity The new number of slots, a power of two
+     */
+    private void rehash(int capacity) {
+        Region old = slots;
+        int oldCapacity = slotMask + 1;
+        allocateSlots(capacity);
+        MemorySegment from = old.segment();
+        MemorySegment to = slots.segment();
+        for (long i = 0; i < oldCapacity; i++) {
+            long key = from.get(ValueLayout.JAVA_LONG, i * SLOT_BYTES);
+            if (key != FREE) {
+                long slot = hash(key) & slotMask;
+                while (to.get(ValueLayout.JAVA_LONG, slot * SLOT_BYTES) != FREE) {
+                    slot = (slot + 1) & slotMask;
+                }
+                MemorySegment.copy(from, i * SLOT_BYTES, to, slot * SLOT_BYTES, SLOT_BYTES);
+            }
+        }
+        old.release();
+    }
+
+    /**
+     * @param capacity The number of slots, a power of two
+     */
+    private void allocateSlots(int capacity) {
+        slots = allocate(capacity * SLOT_BYTES, "slots");
+        slotMask = capacity - 1;
+    }
+
+    /**
+     * @param expectedSize The expected number of IDs
+     * @return The smallest power-of-two capacity that holds them below the load factor
+     */
+    private static int slotCapacityFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Spreads the bits of an encoded ID, since encoded IDs are dense and sequential.
+     *
+     * @param key The encoded ID
+     * @return The hash
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Moves the used part of a region into a larger one.
+     *
+     * @param region The region
+     * @param used Number of bytes in use
+     * @param bytes Size of the new region
+     * @param name Name prefix of a mapped file
+     * @return The new region; the old one is released
+     */
+    private Region grow(Region region, long used, long bytes, String name) {
+        Region grown = allocate(bytes, name);
+        MemorySegment.copy(region.segment(), 0, grown.segment(), 0, used);
+        region.release();
+        return grown;
+    }
+
+    /**
+     * Allocates zeroed memory in its own arena, so it can be released on its own when it grows.
+     *
+     * @param bytes Size of the region
+     * @param name Name prefix of a mapped file
+     * @return The region
+     * @throws UncheckedIOException if a mapped file cannot be created
+     */
+    private Region allocate(long bytes, String name) {
+        Arena arena = Arena.ofShared();
+        if (directory == null) {
+            return new Region(arena, arena.allocate(bytes, 8), null);
+        }
+        Path file = null;
+        try {
+            file = Files.createTempFile(directory, "catalog-" + name + "-", ".bin");
+            file.toFile().deleteOnExit(); // In case the catalog is never closed
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return new Region(arena, channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes, arena), file);
+            }
+        } catch (IOException e) {
+            arena.close();
+            throw new UncheckedIOException("Failed to map catalog memory file in " + directory, e);
+        }
+    }
+
+    /**
+     * Materializes one row as a book.
+     *
+     * @param rowSegment The rows
+     * @param textSegment The text area
+     * @param row The row
+     * @return The book
+     */
+    private static Book readBook(MemorySegment rowSegment, MemorySegment textSegment, int row) {
+        long base = row * ROW_BYTES;
+        return new Book(
+                readText(textSegment, rowSegment.get(ValueLayout.JAVA_LONG, base + BOOK_ID)),
+                readText(textSegment, rowSegment.get(ValueLayout.JAVA_LONG, base + TITLE)),
+                readText(textSegment, rowSegment.get(ValueLayout.JAVA_LONG, base + AUTHOR)),
+                readText(textSegment, rowSegment.get(ValueLayout.JAVA_LONG, base + PUBLISHER)),
+                rowSegment.get(ValueLayout.JAVA_INT, base + AVAILABLE),
+                rowSegment.get(ValueLayout.JAVA_INT, base + ON_LOAN),
+                rowSegment.get(ValueLayout.JAVA_INT, base + SHELF));
+    }
+
+    /**
+     * @param textSegment The text area
+     * @param reference A text reference
+     * @return The text, or null if the field is missing
+     */
+    private static String readText(MemorySegment textSegment, long reference) {
+        if (reference == MISSING) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) (reference & LENGTH_MASK)];
+        MemorySegment.copy(textSegment, ValueLayout.JAVA_BYTE, reference >>> LENGTH_BITS, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param value A text field, possibly missing
+     * @return Its UTF-8 bytes, or null if it is missing
+     */
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+}
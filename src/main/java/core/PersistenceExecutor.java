@@ -0,0 +1,264 @@
+package core;
+
+import com.google.gson.JsonElement;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Single writer thread that saves file snapshots to disk off the calling thread.
+ * A caller hands over a snapshot of a whole file and continues immediately. If another snapshot of
+ * the same file is submitted before the writer has started on the first, it replaces it, so a
+ * burst of saves results in a single write of the latest state.
+ *
+ * Until a snapshot has been written, JsonManager.readJsonFile(), readJsonArrayFile() and readBooks()
+ * return (a copy of) it instead of the outdated file, so readers always see the latest submitted state.
+ * Callers that need the data on disk (for example before exiting) use flush().
+ *
+ * A submitted snapshot belongs to the executor: the caller must not modify it afterwards.
+ */
+public class PersistenceExecutor {
+    private static final Logger logger = Logger.getLogger(PersistenceExecutor.class.getName());
+
+    /** How long shutdown() waits for queued saves to be written */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    /** The writer thread; daemon so it never keeps the JVM alive, shutdown() drains it instead */
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "persistence-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Latest snapshot per file that is not yet on disk; also the lock for all executor state */
+    private static final Map<String, PendingSave> pending = new HashMap<>();
+
+    /** Whether shutdown() has been called; later saves are written on the caller's thread */
+    private static boolean shutdown;
+
+    /** Serializes the saves written on callers' threads after shutdown() */
+    private static final Object lateWriteLock = new Object();
+
+    /** Number of saves merged into an already queued save, for logging */
+    private static long coalescedSaves;
+
+    /**
+     * Writes a snapshot of some type to a file.
+     *
+     * @param <T> The snapshot type
+     */
+    @FunctionalInterface
+    public interface SnapshotWriter<T> {
+        /**
+         * @param snapshot The snapshot to write
+         * @param filePath Full path of the file
+         * @return true if the file was written, false otherwise
+         */
+        boolean write(T snapshot, String filePath);
+    }
+
+    /**
+     * A snapshot waiting for, or undergoing, its write.
+     */
+    private static final class PendingSave {
+        /** Snapshot to write and the writer for it; replaced while the save has not started */
+        Object snapshot;
+        SnapshotWriter<Object> snapshotWriter;
+
+        /** Whether the writer has taken the snapshot */
+        boolean started;
+
+        /** Completed with the outcome of the write */
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        PendingSave(Object snapshot, SnapshotWriter<Object> snapshotWriter) {
+            this.snapshot = snapshot;
+            this.snapshotWriter = snapshotWriter;
+        }
+    }
+
+    /**
+     * Queues a JSON snapshot of a file to be written.
+     *
+     * @param filePath Full path of the file
+     * @param snapshot The complete file contents; ownership passes to the executor
+     * @return Completed with true once the snapshot (or a later one replacing it) is on disk, or false if the write failed
+     */
+    public static CompletableFuture<Boolean> submit(String filePath, JsonElement snapshot) {
+        return submit(filePath, snapshot, JsonManager::writeJson);
+    }
+
+    /**
+     * Queues a snapshot of a file to be written by the given writer.
+     *
+     * @param <T> The snapshot type
+     * @param filePath Full path of the file
+     * @param snapshot The complete file contents; ownership passes to the executor
+     * @param snapshotWriter Writes the snapshot to the file on the writer thread
+     * @return Completed with true once the snapshot (or a later one replacing it) is on disk, or false if the write failed
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<Boolean> submit(String filePath, T snapshot, SnapshotWriter<? super T> snapshotWriter) {
+        String key = keyFor(filePath);
+        SnapshotWriter<Object> untypedWriter = (SnapshotWriter<Object>) snapshotWriter;
+        PendingSave earlier;
+        synchronized (pending) {
+            earlier = pending.get(key);
+            if (!shutdown) {
+                PendingSave queued = pending.get(key);
+                if (queued != null && !queued.started) {
+                    queued.snapshot = snapshot;
+                    queued.snapshotWriter = untypedWriter;
+                    coalescedSaves++;
+                    logger.log(Level.FINE, "Coalesced save of " + filePath + " (" + coalescedSaves + " saves coalesced so far)");
+                    return queued.result;
+                }
+
+                PendingSave save = new PendingSave(snapshot, untypedWriter);
+                pending.put(key, save);
+                writer.execute(() -> write(key, filePath, save));
+                return save.result;
+            }
+        }
+
+        // The writer thread may still be writing an earlier save of the file; let it finish first,
+        // so the two writes neither share the temporary file nor land out of order
+        logger.log(Level.WARNING, "Persistence executor is shut down, saving on the calling thread: " + filePath);
+        if (earlier != null) {
+            earlier.result.join();
+        }
+        synchronized (lateWriteLock) {
+            return CompletableFuture.completedFuture(snapshotWriter.write(snapshot, filePath));
+        }
+    }
+
+    /**
+     * Returns a copy of the JSON snapshot of a file that has been submitted but is not yet on disk.
+     *
+     * @param filePath Full path of the file
+     * @return A private copy of the latest submitted contents, or null if the file on disk is current
+     *         or the pending snapshot is not a JSON tree
+     */
+    public static JsonElement pendingSnapshot(String filePath) {
+        JsonElement snapshot = pendingSnapshot(filePath, JsonElement.class);
+        // Submitted snapshots are never modified, so copying outside the lock is safe
+        return snapshot != null ? snapshot.deepCopy() : null;
+    }
+
+    /**
+     * Returns the snapshot of a file that has been submitted but is not yet on disk.
+     * The snapshot itself is returned, not a copy; it must not be modified.
+     *
+     * @param <T> The expected snapshot type
+     * @param filePath Full path of the file
+     * @param type The expected snapshot class
+     * @return The latest submitted contents, or null if the file on disk is current or the snapshot is of another type
+     */
+    public static <T> T pendingSnapshot(String filePath, Class<T> type) {
+        synchronized (pending) {
+            PendingSave save = pending.get(keyFor(filePath));
+            return save != null && type.isInstance(save.snapshot) ? type.cast(save.snapshot) : null;
+        }
+    }
+
+    /**
+     * @param filePath Full path of the file
+     * @return true if a save of the file has been submitted but is not yet on disk
+     */
+    public static boolean hasPendingSave(String filePath) {
+        synchronized (pending) {
+            return pending.containsKey(keyFor(filePath));
+        }
+    }
+
+    /**
+     * Waits until every save submitted so far is on disk.
+     *
+     * @return true if all of those saves succeeded, false if any failed
+     */
+    public static boolean flush() {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        synchronized (pending) {
+            for (PendingSave save : pending.values()) {
+                results.add(save.result);
+            }
+        }
+
+        boolean success = true;
+        for (CompletableFuture<Boolean> result : results) {
+            success &= result.join();
+        }
+        return success;
+    }
+
+    /**
+     * Writes every queued save and stops the writer thread.
+     * Saves submitted afterwards are written on the caller's thread, one at a time and only
+     * after any save of the same file still being written by the writer thread.
+     * Called from the application's shutdown hook.
+     */
+    public static void shutdown() {
+        synchronized (pending) {
+            if (shutdown) return;
+            shutdown = true;
+            logger.log(Level.INFO, "Shutting down persistence executor with " + pending.size() + " pending saves");
+        }
+
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.log(Level.SEVERE, "Timed out waiting for pending saves to be written");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.log(Level.SEVERE, "Interrupted while waiting for pending saves to be written", e);
+        }
+    }
+
+    /**
+     * Writes one save on the writer thread.
+     *
+     * @param key Normalized path of the file
+     * @param filePath Path of the file as submitted
+     * @param save The save to write
+     */
+    private static void write(String key, String filePath, PendingSave save) {
+        Object snapshot;
+        SnapshotWriter<Object> snapshotWriter;
+        synchronized (pending) {
+            save.started = true;
+            snapshot = save.snapshot;
+            snapshotWriter = save.snapshotWriter;
+        }
+
+        boolean success = false;
+        try {
+            success = snapshotWriter.write(snapshot, filePath);
+        } finally {
+            synchronized (pending) {
+                // A newer snapshot may have been queued while this one was being written
+                if (pending.get(key) == save) {
+                    pending.remove(key);
+                }
+            }
+            save.result.complete(success);
+        }
+    }
+
+    /**
+     * @param filePath A file path
+     * @return The normalized absolute form used to identify the file
+     */
+    private static String keyFor(String filePath) {
+        return Paths.get(filePath).toAbsolutePath().normalize().toString();
+    }
+}
@@ -1,15 +1,19 @@
 package core;
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.security.spec.KeySpec;
 import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -27,6 +31,21 @@ public class SecurityManager {
     private static final int KEY_LENGTH = 256;
     private static final int ITERATION_COUNT = 65536;
 
+    /** Domain separator for the deterministic salt used by user lookup tags */
+    private static final String LOOKUP_TAG_CONTEXT = "LibraryManager/UserLookupTag/v1";
+
+    /** Authentication mismatches reported by tryDecrypt() since startup */
+    private static final AtomicLong authenticationMismatches = new AtomicLong();
+
+    /** SecretKeyFactory instances are not thread-safe, so each thread keeps its own */
+    private static final ThreadLocal<SecretKeyFactory> KEY_FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        } catch (Exception e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 not available", e);
+        }
+    });
+
     /**
      * Encrypts a string using AES-GCM with a password-derived key.
      * The encryption process includes:
@@ -48,7 +67,8 @@ public class SecurityManager {
             SecureRandom random = new SecureRandom();
             random.nextBytes(salt);
 
-            SecretKey key = getKeyFromPassword(password, salt);
+            // The salt is fresh, so the key is never looked up again and is not cached
+            SecretKey key = new SecretKeySpec(deriveKey(password, salt), "AES");
 
             byte[] iv = new byte[GCM_IV_LENGTH];
             random.nextBytes(iv);
@@ -89,46 +109,140 @@ public class SecurityManager {
     public static String decrypt(String ciphertext, String password) {
         logger.fine("Decryption operation initiated");
         try {
-            byte[] decoded = Base64.getDecoder().decode(ciphertext);
+            String plaintext = decryptOrThrow(ciphertext, password);
+            logger.fine("Decryption operation completed successfully");
+            return plaintext;
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Decryption operation failed - possibly wrong password", e);
+            throw new RuntimeException("Error decrypting data", e);
+        }
+    }
 
-            byte[] salt = new byte[SALT_LENGTH];
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            byte[] encrypted = new byte[decoded.length - salt.length - iv.length];
+    /**
+     * Attempts to decrypt a string that was encrypted with the encrypt() method.
+     * Unlike decrypt(), an authentication mismatch (wrong password, or a record belonging to
+     * someone else) is an expected outcome here: it is counted and reported as null, without
+     * throwing or logging. Use this when scanning records that mostly will not match.
+     * Malformed input is still logged as a warning, since that points to corrupted data.
+     *
+     * @param ciphertext The Base64-encoded encrypted string (containing salt, IV, and encrypted data)
+     * @param password The password to derive the decryption key from
+     * @return The decrypted plaintext string, or null if the data could not be decrypted with this password
+     */
+    public static String tryDecrypt(String ciphertext, String password) {
+        try {
+            return decryptOrThrow(ciphertext, password);
+        } catch (AEADBadTagException e) {
+            authenticationMismatches.incrementAndGet();
+            return null;
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Decryption failed on malformed data: " + e.getClass().getSimpleName());
+            return null;
+        }
+    }
 
-            System.arraycopy(decoded, 0, salt, 0, salt.length);
-            System.arraycopy(decoded, salt.length, iv, 0, iv.length);
-            System.arraycopy(decoded, salt.length + iv.length, encrypted, 0, encrypted.length);
+    /**
+     * @return The number of authentication mismatches reported by tryDecrypt() since startup
+     */
+    public static long getAuthenticationMismatchCount() {
+        return authenticationMismatches.get();
+    }
 
-            SecretKey key = getKeyFromPassword(password, salt);
+    /**
+     * Decrypts a salt + IV + ciphertext string, propagating any failure to the caller.
+     * A key derived afresh is added to the session's DerivedKeyCache only once the data has
+     * authenticated under it, so trial decryptions of other users' records never fill the cache.
+     *
+     * @param ciphertext The Base64-encoded encrypted string
+     * @param password The password to derive the decryption key from
+     * @return The decrypted plaintext string
+     * @throws AEADBadTagException if the data does not authenticate under this password
+     * @throws Exception if the data is malformed or decryption fails for another reason
+     */
+    private static String decryptOrThrow(String ciphertext, String password) throws Exception {
+        byte[] decoded = Base64.getDecoder().decode(ciphertext);
+
+        byte[] salt = new byte[SALT_LENGTH];
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        byte[] encrypted = new byte[decoded.length - salt.length - iv.length];
+
+        System.arraycopy(decoded, 0, salt, 0, salt.length);
+        System.arraycopy(decoded, salt.length, iv, 0, iv.length);
+        System.arraycopy(decoded, salt.length + iv.length, encrypted, 0, encrypted.length);
+
+        DerivedKeyCache cache = SessionManager.getInstance().getKeyCache();
+        byte[] keyBytes = cache.get(password, salt);
+        boolean derived = keyBytes == null;
+        if (derived) {
+            keyBytes = deriveKey(password, salt);
+        }
 
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            cipher.init(Cipher.DECRYPT_MODE, key, spec);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(keyBytes, "AES"), spec);
 
-            cipher.updateAAD(salt);
+        cipher.updateAAD(salt);
 
-            byte[] decrypted = cipher.doFinal(encrypted);
-            logger.fine("Decryption operation completed successfully");
-            return new String(decrypted, StandardCharsets.UTF_8);
+        byte[] decrypted = cipher.doFinal(encrypted);
+        if (derived) {
+            cache.put(password, salt, keyBytes);
+        }
+        return new String(decrypted, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Computes the blind-index lookup tag for a user record.
+     * The tag is an HMAC-SHA256 of the user ID, keyed with a PBKDF2 key derived from the user's
+     * password and a salt that is itself derived from the user ID. It is deterministic, so the
+     * record can be located by plain string comparison, but it cannot be reversed or recomputed
+     * without knowing both the ID and the password.
+     * Computing a tag costs exactly one key derivation. The salt is the same every time for a
+     * user, so the key is kept in the session's DerivedKeyCache and later tags cost none.
+     *
+     * @param userId The plaintext user ID
+     * @param password The user's password
+     * @return The Base64-encoded lookup tag
+     * @throws RuntimeException if the tag cannot be computed
+     */
+    public static String computeLookupTag(String userId, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(LOOKUP_TAG_CONTEXT.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            byte[] saltSource = digest.digest(userId.getBytes(StandardCharsets.UTF_8));
+
+            byte[] salt = new byte[SALT_LENGTH];
+            System.arraycopy(saltSource, 0, salt, 0, SALT_LENGTH);
+
+            DerivedKeyCache cache = SessionManager.getInstance().getKeyCache();
+            byte[] keyBytes = cache.get(password, salt);
+            if (keyBytes == null) {
+                keyBytes = deriveKey(password, salt);
+                cache.put(password, salt, keyBytes);
+            }
+
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(keyBytes, "HmacSHA256"));
+            byte[] tag = mac.doFinal(userId.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(tag);
         } catch (Exception e) {
-            logger.log(Level.WARNING, "Decryption operation failed - possibly wrong password", e);
-            throw new RuntimeException("Error decrypting data", e);
+            logger.log(Level.SEVERE, "Lookup tag computation failed", e);
+            throw new RuntimeException("Error computing lookup tag", e);
         }
     }
 
     /**
      * Derives a cryptographic key from a password using PBKDF2 with HMAC-SHA256.
-     * Uses the provided salt and a fixed iteration count (65,536 iterations) to derive a 256-bit AES key.
+     * Uses the provided salt and a fixed iteration count (65,536 iterations) to derive a 256-bit key.
+     * Callers decide whether the key is worth keeping in the session's DerivedKeyCache.
      *
      * @param password The password to derive the key from
      * @param salt The cryptographic salt to use for key derivation (must be at least 16 bytes)
-     * @return A SecretKey object suitable for AES encryption/decryption operations
+     * @return The derived key bytes
      * @throws Exception if key derivation fails due to invalid parameters or cryptographic errors
      */
-    private static SecretKey getKeyFromPassword(String password, byte[] salt) throws Exception {
+    private static byte[] deriveKey(String password, byte[] salt) throws Exception {
         KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, ITERATION_COUNT, KEY_LENGTH);
-        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-        byte[] keyBytes = factory.generateSecret(spec).getEncoded();
-        return new SecretKeySpec(keyBytes, "AES");
+        return KEY_FACTORY.get().generateSecret(spec).getEncoded();
     }
 }
\ No newline at end of file
@@ -30,6 +30,12 @@ public class SessionManager {
     /** Encryption key for the current session */
     private String key;
 
+    /** The current user as resolved at login, or null if the session has none */
+    private UserHandle userHandle;
+
+    /** Keys derived during this session, wiped on logout */
+    private final DerivedKeyCache keyCache = new DerivedKeyCache(DerivedKeyCache.DEFAULT_CAPACITY);
+
     /**
      * Private constructor to prevent instantiation from outside the class.
      * Initializes the session manager.
@@ -63,21 +69,39 @@ public class SessionManager {
      * @param encryptionKey The encryption key for the session
      */
     public synchronized void login(String user, String name, String encryptionKey) {
+        login(user, name, encryptionKey, null);
+    }
+
+    /**
+     * Logs in a user with the specified credentials, keeping the user as resolved at login so
+     * later operations do not look the user up again.
+     *
+     * @param user The user ID of the logging-in user
+     * @param name The name of the logging-in user
+     * @param encryptionKey The encryption key for the session
+     * @param handle The user as resolved at login, or null to resolve on each operation
+     */
+    public synchronized void login(String user, String name, String encryptionKey, UserHandle handle) {
         this.currentUser = user;
         this.currentUserName = name;
         this.key = encryptionKey;
+        this.userHandle = handle;
         logger.log(Level.INFO, "User logged in: " + user);
     }
 
     /**
      * Logs out the current user, clearing the session details.
-     * Sets the current user, user name, and encryption key to null.
+     * Sets the current user, user name, encryption key and user handle to null
+     * and wipes every key derived during the session.
      */
     public synchronized void logout() {
         logger.log(Level.INFO, "User logging out: " + currentUser);
+        logger.log(Level.INFO, "Derived key cache for session: " + keyCache.getHitCount() + " hits, " + keyCache.getMissCount() + " misses");
         this.currentUser = null;
         this.currentUserName = null;
         this.key = null;
+        this.userHandle = null;
+        keyCache.clear();
     }
 
     /**
@@ -116,4 +140,23 @@ public class SessionManager {
     public synchronized String getKey() {
         return key;
     }
+
+    /**
+     * Retrieves the current user as resolved at login.
+     *
+     * @return The user handle, or null if no user is logged in or none was kept
+     */
+    public synchronized UserHandle getUserHandle() {
+        return userHandle;
+    }
+
+    /**
+     * Retrieves the derived key cache for the current session.
+     * The cache is not guarded by the session lock; it synchronizes internally.
+     *
+     * @return The session's derived key cache
+     */
+    public DerivedKeyCache getKeyCache() {
+        return keyCache;
+    }
 }
\ No newline at end of file
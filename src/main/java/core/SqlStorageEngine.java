@@ -0,0 +1,873 @@
+package core;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * core.StorageEngine over an embedded, file-based SQL database reached through JDBC, H2 by
+ * default (jdbc:h2:file:...). Any in-process engine whose driver is on the classpath can be used
+ * by pointing the system property library.storage.url at it; the SQL is kept to what H2 and
+ * SQLite both accept.
+ *
+ * Books, users and loans are rows in three tables. Book IDs and lookup tags have unique indexes
+ * and loans are indexed by user and by book, so a lookup, checkout or return touches a handful of
+ * rows instead of rewriting a file. Each operation runs in one transaction, so for example a
+ * borrow records the loan and updates the book's counts together or not at all. User fields are
+ * stored exactly as in UserData.json: encrypted with the user's password, with the "LookupTag"
+ * blind index as the lookup key. Catalog order and loan order are kept in explicit sequence
+ * columns.
+ *
+ * An engine holds a single connection and serializes operations on it; forUrl() shares one engine
+ * per database.
+ */
+public class SqlStorageEngine implements StorageEngine {
+    private static final Logger logger = Logger.getLogger(SqlStorageEngine.class.getName());
+
+    /** One engine per database URL */
+    private static final Map<String, SqlStorageEngine> engines = new HashMap<>();
+
+    /** User type categories, as in the user database */
+    private static final String[] USER_TYPES = {"Students", "General Public", "Admins"};
+
+    /** Rows sent to the database per batch when importing */
+    private static final int BATCH_SIZE = 1000;
+
+    /** Columns read by book() */
+    private static final String BOOK_COLUMNS = "book_id, title, author, publisher, available, on_loan";
+
+    /** Columns read by userRow() */
+    private static final String USER_COLUMNS = "user_key, user_type, user_id, name, password";
+
+    /** Schema, created on first connection if missing */
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS books ("
+                    + "seq BIGINT PRIMARY KEY, "
+                    + "book_id VARCHAR(64) NOT NULL, "
+                    + "shelf INTEGER NOT NULL, "
+                    + "title VARCHAR(1024), "
+                    + "title_key VARCHAR(1024), "
+                    + "author VARCHAR(1024), "
+                    + "publisher VARCHAR(1024), "
+                    + "available INTEGER NOT NULL, "
+                    + "on_loan INTEGER NOT NULL)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS books_by_id ON books (book_id)",
+            "CREATE INDEX IF NOT EXISTS books_by_title ON books (title_key)",
+            "CREATE TABLE IF NOT EXISTS users ("
+                    + "user_key BIGINT PRIMARY KEY, "
+                    + "user_type VARCHAR(32) NOT NULL, "
+                    + "lookup_tag VARCHAR(64), "
+                    + "user_id VARCHAR(1024) NOT NULL, "
+                    + "name VARCHAR(4096) NOT NULL, "
+                    + "password VARCHAR(1024) NOT NULL)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS users_by_tag ON users (lookup_tag)",
+            "CREATE TABLE IF NOT EXISTS loans ("
+                    + "seq BIGINT PRIMARY KEY, "
+                    + "user_key BIGINT NOT NULL REFERENCES users (user_key), "
+                    + "book_id VARCHAR(64) NOT NULL, "
+                    + "date_issued VARCHAR(1024), "
+                    + "status INTEGER NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS loans_by_user ON loans (user_key, seq)",
+            "CREATE INDEX IF NOT EXISTS loans_by_book ON loans (book_id)"
+    };
+
+    /** JDBC URL of the database */
+    private final String url;
+
+    /** Open connection, or null until first use and after close() */
+    private Connection connection;
+
+    /** Number of committed changes to users and loans, for validating core.UserHandle instances; guarded by the engine's monitor */
+    private long userDataVersion;
+
+    /**
+     * Private constructor; use forUrl() to obtain the engine for a database.
+     *
+     * @param url JDBC URL of the database
+     */
+    private SqlStorageEngine(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Returns the shared engine for a database, creating it on first use.
+     * The connection is opened by the first operation.
+     *
+     * @param url JDBC URL of the database
+     * @return The engine for the given database
+     */
+    public static SqlStorageEngine forUrl(String url) {
+        synchronized (engines) {
+            return engines.computeIfAbsent(url, SqlStorageEngine::new);
+        }
+    }
+
+    /**
+     * @return URL of an H2 database named LibraryData in the user data directory
+     */
+    public static String defaultUrl() {
+        return "jdbc:h2:file:" + AppDataManager.getDataFilePath("LibraryData");
+    }
+
+    /**
+     * Closes the connections of all engines. Called on application shutdown.
+     */
+    public static void closeAll() {
+        synchronized (engines) {
+            for (SqlStorageEngine engine : engines.values()) {
+                engine.close();
+            }
+        }
+    }
+
+    /**
+     * Closes the engine's connection. A later operation opens a new one.
+     */
+    public synchronized void close() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+            logger.log(Level.INFO, "Closed storage database: " + url);
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "Failed to close storage database: " + url, e);
+        }
+        connection = null;
+    }
+
+    /**
+     * Work done inside one transaction.
+     */
+    @FunctionalInterface
+    private interface Transaction<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Runs work in a transaction on the engine's connection, opening it and creating the schema
+     * on first use. The transaction is committed if the work returns and rolled back if it throws.
+     *
+     * @param failureMessage Logged if the work throws
+     * @param failureResult Returned if the work throws
+     * @param work The work
+     * @return The work's result, or failureResult if it threw
+     */
+    private synchronized <T> T inTransaction(String failureMessage, T failureResult, Transaction<T> work) {
+        try {
+            if (connection == null) {
+                connection = open();
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Failed to open storage database: " + url, e);
+            return failureResult;
+        }
+
+        try {
+            T result = work.run(connection);
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            logger.log(Level.SEVERE, failureMessage, e);
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                logger.log(Level.SEVERE, "Failed to roll back transaction, closing connection: " + url, rollbackError);
+                close();
+            }
+            return failureResult;
+        }
+    }
+
+    /**
+     * Opens a connection with auto-commit off and creates any missing tables and indexes.
+     *
+     * @return The connection
+     * @throws SQLException if the database cannot be opened or the schema cannot be created
+     */
+    private Connection open() throws SQLException {
+        Connection opened = DriverManager.getConnection(url);
+        try {
+            opened.setAutoCommit(false);
+            try (Statement statement = opened.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    statement.execute(ddl);
+                }
+            }
+            opened.commit();
+            logger.log(Level.INFO, "Opened storage database: " + url);
+            return opened;
+        } catch (SQLException e) {
+            opened.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Book> findBooks(String searchTerm) {
+        String term = searchTerm.toLowerCase();
+        List<Book> matches = inTransaction("Failed to search book database for '" + searchTerm + "'", null, c -> {
+            String sql = "SELECT " + BOOK_COLUMNS + " FROM books";
+            if (!term.isEmpty()) {
+                // Substring matches cannot use an index; the scan stays inside the database
+                sql += " WHERE LOWER(book_id) LIKE ? ESCAPE '\\'"
+                        + " OR CAST(shelf AS VARCHAR(11)) LIKE ? ESCAPE '\\'"
+                        + " OR LOWER(title) LIKE ? ESCAPE '\\'"
+                        + " OR LOWER(author) LIKE ? ESCAPE '\\'"
+                        + " OR LOWER(publisher) LIKE ? ESCAPE '\\'";
+            }
+            sql += " ORDER BY seq";
+
+            try (PreparedStatement statement = c.prepareStatement(sql)) {
+                if (!term.isEmpty()) {
+                    String pattern = "%" + escapeLike(term) + "%";
+                    for (int i = 1; i <= 5; i++) {
+                        statement.setString(i, pattern);
+                    }
+                }
+                List<Book> books = new ArrayList<>();
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        books.add(book(rows));
+                    }
+                }
+                return books;
+            }
+        });
+
+        if (matches == null) {
+            return new ArrayList<>();
+        }
+        logger.log(Level.INFO, "Book search completed: found " + matches.size() + " books matching '" + searchTerm + "'");
+        return matches;
+    }
+
+    @Override
+    public Book findBook(String bookId) {
+        return inTransaction("Failed to read book: " + bookId, null, c -> findBook(c, bookId));
+    }
+
+    @Override
+    public String findBookId(String title) {
+        return inTransaction("Failed to find book with title: " + title, null, c -> {
+            try (PreparedStatement statement = c.prepareStatement(
+                    "SELECT book_id FROM books WHERE title_key = ? ORDER BY seq")) {
+                statement.setMaxRows(1);
+                statement.setString(1, Book.titleKey(title));
+                try (ResultSet rows = statement.executeQuery()) {
+                    return rows.next() ? rows.getString(1) : null;
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean addBook(Book book) {
+        return inTransaction("Error adding book: " + book.title(), false, c -> {
+            if (findBook(c, book.bookId()) != null) {
+                logger.log(Level.WARNING, "Book with ID " + book.bookId() + " already exists");
+                return false;
+            }
+
+            try (PreparedStatement statement = c.prepareStatement(
+                    "INSERT INTO books (seq, book_id, shelf, title, title_key, author, publisher, available, on_loan)"
+                            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                statement.setLong(1, nextKey(c, "books", "seq"));
+                setBookColumns(statement, 2, book);
+                statement.executeUpdate();
+            }
+            logger.log(Level.INFO, "Successfully added book: " + book.title() + " with ID: " + book.bookId());
+            return true;
+        });
+    }
+
+    @Override
+    public boolean updateBook(String originalBookId, Book updated) {
+        String newBookId = updated.bookId();
+        return inTransaction("Error updating book: " + originalBookId, false, c -> {
+            if (findBook(c, originalBookId) == null) {
+                logger.log(Level.WARNING, "Book with ID " + originalBookId + " not found for update");
+                return false;
+            }
+            boolean idChanged = !newBookId.equals(originalBookId);
+            if (idChanged && findBook(c, newBookId) != null) {
+                logger.log(Level.WARNING, "Cannot update book: new ID " + newBookId + " already exists");
+                return false;
+            }
+
+            try (PreparedStatement statement = c.prepareStatement(
+                    "UPDATE books SET book_id = ?, shelf = ?, title = ?, title_key = ?, author = ?, publisher = ?,"
+                            + " available = ?, on_loan = ? WHERE book_id = ?")) {
+                setBookColumns(statement, 1, updated);
+                statement.setString(9, originalBookId);
+                statement.executeUpdate();
+            }
+
+            if (idChanged) {
+                try (PreparedStatement statement = c.prepareStatement("UPDATE loans SET book_id = ? WHERE book_id = ?")) {
+                    statement.setString(1, newBookId);
+                    statement.setString(2, originalBookId);
+                    int moved = statement.executeUpdate();
+                    logger.log(Level.INFO, "Updated " + moved + " user book references from " + originalBookId + " to " + newBookId);
+                }
+                userDataVersion++;
+            }
+            logger.log(Level.INFO, "Successfully updated book: " + originalBookId + " -> " + newBookId);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean deleteBook(String bookId) {
+        return inTransaction("Error deleting book with ID: " + bookId, false, c -> {
+            try (PreparedStatement statement = c.prepareStatement("DELETE FROM books WHERE book_id = ?")) {
+                statement.setString(1, bookId);
+                if (statement.executeUpdate() == 0) {
+                    logger.log(Level.WARNING, "Book with ID " + bookId + " not found for deletion");
+                    return false;
+                }
+            }
+            try (PreparedStatement statement = c.prepareStatement("DELETE FROM loans WHERE book_id = ?")) {
+                statement.setString(1, bookId);
+                int removed = statement.executeUpdate();
+                logger.log(Level.INFO, "Removed " + removed + " user book references for deleted book: " + bookId);
+            }
+            userDataVersion++;
+            logger.log(Level.INFO, "Book with ID " + bookId + " deleted successfully");
+            return true;
+        });
+    }
+
+    /**
+     * Answered from the index on loans.book_id.
+     */
+    @Override
+    public int countLentCopies(String bookId) {
+        return inTransaction("Failed to count loans of book: " + bookId, -1, c -> {
+            try (PreparedStatement statement = c.prepareStatement("SELECT COUNT(*) FROM loans WHERE book_id = ?")) {
+                statement.setString(1, bookId);
+                try (ResultSet rows = statement.executeQuery()) {
+                    return rows.next() ? rows.getInt(1) : 0;
+                }
+            }
+        });
+    }
+
+    /**
+     * The handle's record key is the user's row key.
+     */
+    @Override
+    public UserHandle resolveUser(String userId, String password) {
+        return inTransaction("Failed to find user: " + userId, null, c -> {
+            UserRow row = findUserRow(c, userId, password);
+            if (row == null) {
+                return null;
+            }
+
+            String storedPassword = SecurityManager.tryDecrypt(row.password(), password);
+            if (!password.equals(storedPassword)) {
+                logger.log(Level.WARNING, "Stored password does not match for user: " + userId);
+                return null;
+            }
+
+            User user = new User(SecurityManager.decrypt(row.userId(), password),
+                    SecurityManager.decrypt(row.name(), password), row.userType(), findLoans(c, row.key(), password));
+            return new UserHandle(url, SecurityManager.computeLookupTag(userId, password), user, row.key(), userDataVersion);
+        });
+    }
+
+    /**
+     * If users or loans changed since the handle was resolved, its row is re-read by key.
+     */
+    @Override
+    public boolean revalidate(UserHandle user, String password) {
+        if (!url.equals(user.store())) {
+            return false;
+        }
+        return inTransaction("Failed to revalidate user: " + user.userId(), false, c -> {
+            UserHandle.Resolution resolution = user.resolution();
+            if (resolution.version() == userDataVersion) {
+                return true;
+            }
+
+            UserRow row = handleRow(c, user);
+            if (row == null) {
+                logger.log(Level.WARNING, "User no longer found: " + user.userId());
+                return false;
+            }
+            user.update(new User(resolution.user().userId(), SecurityManager.decrypt(row.name(), password), row.userType(),
+                    findLoans(c, row.key(), password)), row.key(), userDataVersion);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean addUser(String userId, String name, String password, String userType) {
+        if (!List.of(USER_TYPES).contains(userType)) {
+            logger.log(Level.SEVERE, "Unknown user type for new user: " + userType);
+            return false;
+        }
+        return inTransaction("Error adding user: " + name, false, c -> {
+            if (findUserRow(c, userId, password) != null) {
+                logger.log(Level.WARNING, "User with ID " + userId + " already exists");
+                return false;
+            }
+
+            try (PreparedStatement statement = c.prepareStatement(
+                    "INSERT INTO users (user_key, user_type, lookup_tag, user_id, name, password) VALUES (?, ?, ?, ?, ?, ?)")) {
+                statement.setLong(1, nextKey(c, "users", "user_key"));
+                statement.setString(2, userType);
+                statement.setString(3, SecurityManager.computeLookupTag(userId, password));
+                statement.setString(4, SecurityManager.encrypt(userId, password));
+                statement.setString(5, SecurityManager.encrypt(name, password));
+                statement.setString(6, SecurityManager.encrypt(password, password));
+                statement.executeUpdate();
+            }
+            return true;
+        });
+    }
+
+    @Override
+    public boolean updateUser(String userId, String name, String password, String userType) {
+        return inTransaction("Error updating user: " + userId, false, c -> {
+            UserRow row = findUserRow(c, userId, password);
+            if (row == null) {
+                logger.log(Level.WARNING, "User with ID " + userId + " not found for update");
+                return false;
+            }
+
+            try (PreparedStatement statement = c.prepareStatement(
+                    "UPDATE users SET user_type = ?, lookup_tag = ?, user_id = ?, name = ?, password = ? WHERE user_key = ?")) {
+                statement.setString(1, userType);
+                statement.setString(2, SecurityManager.computeLookupTag(userId, password));
+                statement.setString(3, SecurityManager.encrypt(userId, password));
+                statement.setString(4, SecurityManager.encrypt(name, password));
+                statement.setString(5, SecurityManager.encrypt(password, password));
+                statement.setLong(6, row.key());
+                statement.executeUpdate();
+            }
+            userDataVersion++;
+            logger.log(Level.INFO, "Successfully updated user: " + userId);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean removeUser(String userId, String password) {
+        return inTransaction("Failed to remove user from database: " + userId, false, c -> {
+            UserRow row = findUserRow(c, userId, password);
+            if (row == null || row.userType().equals("Admins")) {
+                logger.log(Level.WARNING, "User not found for removal: " + userId);
+                return false;
+            }
+
+            try (PreparedStatement statement = c.prepareStatement("DELETE FROM loans WHERE user_key = ?")) {
+                statement.setLong(1, row.key());
+                statement.executeUpdate();
+            }
+            try (PreparedStatement statement = c.prepareStatement("DELETE FROM users WHERE user_key = ?")) {
+                statement.setLong(1, row.key());
+                statement.executeUpdate();
+            }
+            userDataVersion++;
+            return true;
+        });
+    }
+
+    @Override
+    public boolean borrowBook(UserHandle user, String bookId, String password) {
+        String userId = user.userId();
+        return inTransaction("Failed to borrow book " + bookId + " for user " + userId, false, c -> {
+            UserRow row = handleRow(c, user);
+            if (row == null) {
+                logger.log(Level.SEVERE, "Failed to add book " + bookId + " to user " + userId + "'s borrowed list");
+                return false;
+            }
+
+            // Take the copy first; nothing has been written if none is available
+            try (PreparedStatement statement = c.prepareStatement(
+                    "UPDATE books SET available = available - 1, on_loan = on_loan + 1 WHERE book_id = ? AND available > 0")) {
+                statement.setString(1, bookId);
+                if (statement.executeUpdate() == 0) {
+                    logger.log(Level.WARNING, "Book not found or not available for borrowing: " + bookId);
+                    return false;
+                }
+            }
+
+            try (PreparedStatement statement = c.prepareStatement(
+                    "INSERT INTO loans (seq, user_key, book_id, date_issued, status) VALUES (?, ?, ?, ?, 1)")) {
+                statement.setLong(1, nextKey(c, "loans", "seq"));
+                statement.setLong(2, row.key());
+                statement.setString(3, bookId);
+                statement.setString(4, SecurityManager.encrypt(LocalDate.now().toString(), password));
+                statement.executeUpdate();
+            }
+            userDataVersion++;
+            logger.log(Level.INFO, "Successfully added book " + bookId + " to user " + userId);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean returnBook(UserHandle user, String bookId, String password) {
+        String userId = user.userId();
+        return inTransaction("Failed to return book " + bookId + " for user " + userId, false, c -> {
+            UserRow row = handleRow(c, user);
+            long loan = row != null ? findLoan(c, row.key(), bookId) : -1;
+            if (loan < 0) {
+                logger.log(Level.SEVERE, "Failed to remove book " + bookId + " from user " + userId + "'s borrowed list");
+                return false;
+            }
+
+            try (PreparedStatement statement = c.prepareStatement("DELETE FROM loans WHERE seq = ?")) {
+                statement.setLong(1, loan);
+                statement.executeUpdate();
+            }
+            userDataVersion++;
+            logger.log(Level.INFO, "Successfully removed book " + bookId + " from user " + userId);
+
+            try (PreparedStatement statement = c.prepareStatement(
+                    "UPDATE books SET available = available + 1, on_loan = CASE WHEN on_loan > 0 THEN on_loan - 1 ELSE 0 END"
+                            + " WHERE book_id = ?")) {
+                statement.setString(1, bookId);
+                if (statement.executeUpdate() == 0) {
+                    logger.log(Level.WARNING, "Failed to update book availability after return. Book removed from user but availability not updated for: " + bookId);
+                }
+            }
+            return true;
+        });
+    }
+
+    @Override
+    public boolean updateDueStatuses(UserHandle user, Map<String, Integer> statuses, String password) {
+        String userId = user.userId();
+        return inTransaction("Error updating due statuses for user: " + userId, false, c -> {
+            UserRow row = handleRow(c, user);
+            if (row == null) {
+                logger.log(Level.WARNING, "User not found for due status update: " + userId);
+                return false;
+            }
+
+            try (PreparedStatement statement = c.prepareStatement("UPDATE loans SET status = ? WHERE seq = ?")) {
+                for (Map.Entry<String, Integer> entry : statuses.entrySet()) {
+                    long loan = findLoan(c, row.key(), entry.getKey());
+                    if (loan < 0) {
+                        logger.log(Level.WARNING, "Book " + entry.getKey() + " not found for user: " + userId);
+                        return false;
+                    }
+                    statement.setInt(1, entry.getValue());
+                    statement.setLong(2, loan);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            userDataVersion++;
+            logger.log(Level.INFO, "Successfully updated " + statuses.size() + " due statuses for user: " + userId);
+            return true;
+        });
+    }
+
+    /**
+     * Copies a catalog and a user data tree into the database, keeping every user field exactly as
+     * stored, in a single transaction. Used by core.StorageMigration. Later records with an
+     * already imported book ID are skipped, since lookups only ever returned the first one.
+     *
+     * @param books The catalog, in catalog order
+     * @param userData The user data tree, as read by JsonManager.readUserData()
+     * @return true if everything was imported, false if the database already holds data or the
+     *         import failed and was rolled back
+     */
+    public boolean importData(List<Book> books, JsonObject userData) {
+        return inTransaction("Failed to import data into storage database: " + url, false, c -> {
+            if (nextKey(c, "books", "seq") != 1 || nextKey(c, "users", "user_key") != 1) {
+                logger.log(Level.SEVERE, "Storage database already contains data, not importing: " + url);
+                return false;
+            }
+
+            Set<String> importedIds = new HashSet<>();
+            int skippedBooks = 0;
+            try (PreparedStatement statement = c.prepareStatement(
+                    "INSERT INTO books (seq, book_id, shelf, title, title_key, author, publisher, available, on_loan)"
+                            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (Book book : books) {
+                    if (!importedIds.add(book.bookId())) {
+                        skippedBooks++;
+                        continue;
+                    }
+                    statement.setLong(1, importedIds.size());
+                    setBookColumns(statement, 2, book);
+                    statement.addBatch();
+                    if (importedIds.size() % BATCH_SIZE == 0) {
+                        statement.executeBatch();
+                    }
+                }
+                statement.executeBatch();
+            }
+            if (skippedBooks > 0) {
+                logger.log(Level.WARNING, "Skipped " + skippedBooks + " books with duplicate IDs");
+            }
+
+            long userKey = 0;
+            long loanPosition = 0;
+            int skippedLoans = 0;
+            try (PreparedStatement userStatement = c.prepareStatement(
+                         "INSERT INTO users (user_key, user_type, lookup_tag, user_id, name, password) VALUES (?, ?, ?, ?, ?, ?)");
+                 PreparedStatement loanStatement = c.prepareStatement(
+                         "INSERT INTO loans (seq, user_key, book_id, date_issued, status) VALUES (?, ?, ?, ?, ?)")) {
+                for (String userType : USER_TYPES) {
+                    JsonArray users = userData.getAsJsonArray(userType);
+                    if (users == null) continue;
+
+                    for (JsonElement element : users) {
+                        JsonObject user = element.getAsJsonObject();
+                        userKey++;
+                        userStatement.setLong(1, userKey);
+                        userStatement.setString(2, userType);
+                        userStatement.setString(3, user.has(JsonManager.LOOKUP_TAG) ? user.get(JsonManager.LOOKUP_TAG).getAsString() : null);
+                        userStatement.setString(4, user.get("UserID").getAsString());
+                        userStatement.setString(5, user.get("Name").getAsString());
+                        userStatement.setString(6, user.get("Password").getAsString());
+                        userStatement.addBatch();
+
+                        if (user.has("Books") && !user.get("Books").isJsonNull()) {
+                            for (JsonElement loanElement : user.getAsJsonArray("Books")) {
+                                JsonObject loan = loanElement.getAsJsonObject();
+                                if (!loan.has("BookID") || !loan.has("Status")) {
+                                    skippedLoans++;
+                                    continue;
+                                }
+                                loanPosition++;
+                                loanStatement.setLong(1, loanPosition);
+                                loanStatement.setLong(2, userKey);
+                                loanStatement.setString(3, loan.get("BookID").getAsString());
+                                loanStatement.setString(4, loan.has("DateIssued") && !loan.get("DateIssued").isJsonNull()
+                                        ? loan.get("DateIssued").getAsString() : null);
+                                loanStatement.setInt(5, loan.get("Status").getAsInt());
+                                loanStatement.addBatch();
+                                if (loanPosition % BATCH_SIZE == 0) {
+                                    userStatement.executeBatch(); // Loans reference their user
+                                    loanStatement.executeBatch();
+                                }
+                            }
+                        }
+                        if (userKey % BATCH_SIZE == 0) {
+                            userStatement.executeBatch();
+                        }
+                    }
+                }
+                userStatement.executeBatch();
+                loanStatement.executeBatch();
+            }
+            if (skippedLoans > 0) {
+                logger.log(Level.WARNING, "Skipped " + skippedLoans + " malformed loan records");
+            }
+
+            userDataVersion++;
+            logger.log(Level.INFO, "Imported " + importedIds.size() + " books, " + userKey + " users and "
+                    + loanPosition + " loans into " + url);
+            return true;
+        });
+    }
+
+    /**
+     * Stored fields of a user row; the ID, name and password are still encrypted.
+     */
+    private record UserRow(long key, String userType, String userId, String name, String password) {}
+
+    /**
+     * Locates a user's row by lookup tag. Rows imported from records that predate lookup tags are
+     * found by trial decryption of their IDs instead and stamped with their tag, as
+     * JsonManager.findUserRecord() does for the JSON file.
+     *
+     * @param c The connection
+     * @param userId The plaintext user ID
+     * @param password The user's password
+     * @return The row, or null if no user matches
+     * @throws SQLException if the database cannot be read
+     */
+    private static UserRow findUserRow(Connection c, String userId, String password) throws SQLException {
+        String lookupTag = SecurityManager.computeLookupTag(userId, password);
+        try (PreparedStatement statement = c.prepareStatement("SELECT " + USER_COLUMNS + " FROM users WHERE lookup_tag = ?")) {
+            statement.setString(1, lookupTag);
+            try (ResultSet rows = statement.executeQuery()) {
+                if (rows.next()) {
+                    return userRow(rows);
+                }
+            }
+        }
+
+        UserRow legacyRow = null;
+        try (PreparedStatement statement = c.prepareStatement("SELECT " + USER_COLUMNS + " FROM users WHERE lookup_tag IS NULL");
+             ResultSet rows = statement.executeQuery()) {
+            while (rows.next()) {
+                if (userId.equals(SecurityManager.tryDecrypt(rows.getString("user_id"), password))) {
+                    legacyRow = userRow(rows);
+                    break;
+                }
+            }
+        }
+        if (legacyRow == null) {
+            return null;
+        }
+
+        try (PreparedStatement statement = c.prepareStatement("UPDATE users SET lookup_tag = ? WHERE user_key = ?")) {
+            statement.setString(1, lookupTag);
+            statement.setLong(2, legacyRow.key());
+            statement.executeUpdate();
+        }
+        logger.log(Level.INFO, "Migrated user record to lookup tag index: " + userId);
+        return legacyRow;
+    }
+
+    /**
+     * @param rows A result set positioned on a row with USER_COLUMNS
+     * @return The row's fields
+     * @throws SQLException if the row cannot be read
+     */
+    private static UserRow userRow(ResultSet rows) throws SQLException {
+        return new UserRow(rows.getLong("user_key"), rows.getString("user_type"), rows.getString("user_id"),
+                rows.getString("name"), rows.getString("password"));
+    }
+
+    /**
+     * Locates the row a user handle points at by its key, checking it still carries the handle's
+     * lookup tag.
+     *
+     * @param c The connection
+     * @param user The user handle
+     * @return The row, or null if the user no longer exists with the same ID and password
+     * @throws SQLException if the database cannot be read
+     */
+    private static UserRow handleRow(Connection c, UserHandle user) throws SQLException {
+        try (PreparedStatement statement = c.prepareStatement(
+                "SELECT " + USER_COLUMNS + " FROM users WHERE user_key = ? AND lookup_tag = ?")) {
+            statement.setLong(1, user.resolution().recordKey());
+            statement.setString(2, user.lookupTag());
+            try (ResultSet rows = statement.executeQuery()) {
+                return rows.next() ? userRow(rows) : null;
+            }
+        }
+    }
+
+    /**
+     * @param c The connection
+     * @param userKey The user's row key
+     * @param password The user's password
+     * @return The user's loans with their issue dates decrypted, in loan order
+     * @throws SQLException if the database cannot be read
+     */
+    private static List<Loan> findLoans(Connection c, long userKey, String password) throws SQLException {
+        List<Loan> loans = new ArrayList<>();
+        try (PreparedStatement statement = c.prepareStatement(
+                "SELECT book_id, date_issued, status FROM loans WHERE user_key = ? ORDER BY seq")) {
+            statement.setLong(1, userKey);
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    loans.add(Loan.decrypt(rows.getString(1), rows.getString(2), rows.getInt(3), password));
+                }
+            }
+        }
+        return loans;
+    }
+
+    /**
+     * @param c The connection
+     * @param userKey The user's row key
+     * @param bookId The ID of the book
+     * @return The sequence number of the user's first loan of the book, or -1 if they have none
+     * @throws SQLException if the database cannot be read
+     */
+    private static long findLoan(Connection c, long userKey, String bookId) throws SQLException {
+        try (PreparedStatement statement = c.prepareStatement(
+                "SELECT seq FROM loans WHERE user_key = ? AND book_id = ? ORDER BY seq")) {
+            statement.setMaxRows(1);
+            statement.setLong(1, userKey);
+            statement.setString(2, bookId);
+            try (ResultSet rows = statement.executeQuery()) {
+                return rows.next() ? rows.getLong(1) : -1;
+            }
+        }
+    }
+
+    /**
+     * @param c The connection
+     * @param bookId The ID of the book
+     * @return The book, or null if not found
+     * @throws SQLException if the database cannot be read
+     */
+    private static Book findBook(Connection c, String bookId) throws SQLException {
+        try (PreparedStatement statement = c.prepareStatement("SELECT " + BOOK_COLUMNS + " FROM books WHERE book_id = ?")) {
+            statement.setString(1, bookId);
+            try (ResultSet rows = statement.executeQuery()) {
+                return rows.next() ? book(rows) : null;
+            }
+        }
+    }
+
+    /**
+     * @param rows A result set positioned on a row with BOOK_COLUMNS
+     * @return The book
+     * @throws SQLException if the row cannot be read
+     */
+    private static Book book(ResultSet rows) throws SQLException {
+        return new Book(rows.getString(1), rows.getString(2), rows.getString(3), rows.getString(4), rows.getInt(5), rows.getInt(6));
+    }
+
+    /**
+     * Sets the eight book columns after seq, in table order, starting at a parameter index.
+     *
+     * @param statement The statement
+     * @param index Index of the book_id parameter
+     * @param book The book
+     * @throws SQLException if a parameter cannot be set
+     */
+    private static void setBookColumns(PreparedStatement statement, int index, Book book) throws SQLException {
+        statement.setString(index, book.bookId());
+        statement.setInt(index + 1, book.shelfNumber());
+        statement.setString(index + 2, book.title());
+        statement.setString(index + 3, Book.titleKey(book.title()));
+        statement.setString(index + 4, book.author());
+        statement.setString(index + 5, book.publisher());
+        statement.setInt(index + 6, book.available());
+        statement.setInt(index + 7, book.onLoan());
+    }
+
+    /**
+     * @param c The connection
+     * @param table The table
+     * @param column Its BIGINT primary key column
+     * @return One more than the largest key in the table, or 1 if it is empty
+     * @throws SQLException if the database cannot be read
+     */
+    private static long nextKey(Connection c, String table, String column) throws SQLException {
+        try (Statement statement = c.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT COALESCE(MAX(" + column + "), 0) + 1 FROM " + table)) {
+            rows.next();
+            return rows.getLong(1);
+        }
+    }
+
+    /**
+     * @param term A search term
+     * @return The term with LIKE wildcards and the escape character escaped
+     */
+    private static String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
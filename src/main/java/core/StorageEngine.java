@@ -0,0 +1,189 @@
+package core;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistence behind core.DataBaseManager: the book catalog, the encrypted user records and their
+ * loans. DataBaseManager keeps the rules that do not depend on storage (book ID generation, loan
+ * periods, due dates) and delegates every read and write to an engine.
+ *
+ * core.JsonStorageEngine, the default, keeps the data in BookData.json and UserData.json.
+ * core.SqlStorageEngine keeps it in an embedded SQL database and is selected by setting the system
+ * property library.storage to "sql"; core.StorageMigration copies existing JSON data into it.
+ * User fields are stored encrypted by every engine, and users are located by their lookup tag.
+ * Loan operations take a core.UserHandle, resolved once and revalidated against the engine's user
+ * data version, so they do not look the user up again.
+ *
+ * Methods report failure by returning false or null and logging the cause, like the rest of core.
+ */
+public interface StorageEngine {
+
+    /**
+     * Returns the engine for the application's own data, as selected by the library.storage
+     * system property.
+     *
+     * @return The shared SQL engine if library.storage is "sql", otherwise a JSON engine over the
+     *         data files in the user data directory
+     */
+    static StorageEngine forApplication() {
+        if ("sql".equalsIgnoreCase(System.getProperty("library.storage", "json"))) {
+            return SqlStorageEngine.forUrl(System.getProperty("library.storage.url", SqlStorageEngine.defaultUrl()));
+        }
+        return new JsonStorageEngine(AppDataManager.getDataFilePath("BookData.json"), AppDataManager.getDataFilePath("UserData.json"));
+    }
+
+    /**
+     * Finds books whose ID, title, author, publisher or shelf number contains the search term,
+     * ignoring case.
+     *
+     * @param searchTerm The term to search for (empty string returns all books)
+     * @return Matching books in catalog order, or an empty list if the catalog cannot be read
+     */
+    List<Book> findBooks(String searchTerm);
+
+    /**
+     * @param bookId The ID of the book
+     * @return The book, or null if not found
+     */
+    Book findBook(String bookId);
+
+    /**
+     * @param title The title of the book, compared ignoring case
+     * @return The ID of the first book in catalog order with that title, or null if not found
+     */
+    String findBookId(String title);
+
+    /**
+     * Adds a book to the end of the catalog.
+     *
+     * @param book The new book
+     * @return true if the book was added, false if its ID already exists or it could not be saved
+     */
+    boolean addBook(Book book);
+
+    /**
+     * Replaces a book. If the ID changes, loans of the old ID are moved to the new one.
+     *
+     * @param originalBookId The current ID of the book
+     * @param updated The updated book
+     * @return true if the book was updated, false if it does not exist, another book already uses
+     *         the updated ID, or the change could not be saved
+     */
+    boolean updateBook(String originalBookId, Book updated);
+
+    /**
+     * Deletes a book and every loan of it.
+     *
+     * @param bookId The ID of the book
+     * @return true if the book was deleted, false if it does not exist or could not be saved
+     */
+    boolean deleteBook(String bookId);
+
+    /**
+     * Counts the loans of a book across all users.
+     *
+     * @param bookId The ID of the book
+     * @return The number of copies of the book currently lent, or -1 if it cannot be determined
+     */
+    int countLentCopies(String bookId);
+
+    /**
+     * Finds a user by ID and decrypts the record with the user's password.
+     * The stored password must match the given one.
+     *
+     * @param userId The plaintext user ID
+     * @param password The user's password
+     * @return The decrypted user with their loans, or null if not found
+     */
+    default User findUser(String userId, String password) {
+        UserHandle user = resolveUser(userId, password);
+        return user != null ? user.user() : null;
+    }
+
+    /**
+     * Finds a user by ID as findUser() does and returns a handle for later operations on them.
+     *
+     * @param userId The plaintext user ID
+     * @param password The user's password
+     * @return A handle current at the engine's present user data version, or null if not found
+     */
+    UserHandle resolveUser(String userId, String password);
+
+    /**
+     * Brings a handle up to date. If no user data changed since the handle was resolved this costs
+     * nothing; otherwise the one record the handle points at is re-read.
+     *
+     * @param user A handle from resolveUser()
+     * @param password The user's password
+     * @return true if the handle is current, false if it belongs to another store or the user no
+     *         longer exists with the same ID and password
+     */
+    boolean revalidate(UserHandle user, String password);
+
+    /**
+     * Adds a user with no loans, encrypting their fields with their password.
+     *
+     * @param userId The plaintext user ID
+     * @param name The plaintext user name
+     * @param password The user's password
+     * @param userType The user type category (Students, General Public, Admins)
+     * @return true if the user was added, false if they already exist, the type is unknown or the
+     *         change could not be saved
+     */
+    boolean addUser(String userId, String name, String password, String userType);
+
+    /**
+     * Re-encrypts a user's fields and moves them to another user type category if it changed.
+     *
+     * @param userId The plaintext user ID
+     * @param name The new plaintext user name
+     * @param password The user's password
+     * @param userType The new user type category (Students, General Public, Admins)
+     * @return true if the user was updated, false if not found or the change could not be saved
+     */
+    boolean updateUser(String userId, String name, String password, String userType);
+
+    /**
+     * Removes a user and their loans. Admins cannot be removed.
+     *
+     * @param userId The plaintext user ID
+     * @param password The user's password
+     * @return true if the user was removed, false otherwise
+     */
+    boolean removeUser(String userId, String password);
+
+    /**
+     * Records a loan issued today and takes one copy of the book off the shelf.
+     * A failure to update the book's counts is logged but does not undo the loan.
+     *
+     * @param user The borrowing user
+     * @param bookId The ID of the book
+     * @param password The user's password, used to encrypt the issue date
+     * @return true if the loan was recorded, false otherwise
+     */
+    boolean borrowBook(UserHandle user, String bookId, String password);
+
+    /**
+     * Removes a user's loan of a book and puts the copy back on the shelf.
+     * A failure to update the book's counts is logged but does not undo the return.
+     *
+     * @param user The returning user
+     * @param bookId The ID of the book
+     * @param password The user's password
+     * @return true if the loan was removed, false if the user has no such loan or it could not be saved
+     */
+    boolean returnBook(UserHandle user, String bookId, String password);
+
+    /**
+     * Saves new due statuses for several of a user's loans at once: the user is looked up once
+     * and the changes are written together. Either every status is saved or none is.
+     *
+     * @param user The user
+     * @param statuses New status code per book ID: 1 (on time), 0 (due today), -1 (overdue)
+     * @param password The user's password
+     * @return true if the statuses were saved, false if the user has no loan of one of the books
+     *         or they could not be saved
+     */
+    boolean updateDueStatuses(UserHandle user, Map<String, Integer> statuses, String password);
+}
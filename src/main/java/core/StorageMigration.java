@@ -0,0 +1,87 @@
+package core;
+
+import com.google.gson.JsonObject;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One-shot command line tool that copies the JSON data files into an embedded SQL database for
+ * core.SqlStorageEngine. User records are copied as stored, still encrypted, so no passwords are
+ * needed; loan journal events not yet folded into UserData.json are included. The target database
+ * must be empty, and the JSON files are left untouched.
+ *
+ * After migrating, start the application with -Dlibrary.storage=sql (and the same
+ * -Dlibrary.storage.url, if one was given here).
+ */
+public class StorageMigration {
+    private static final Logger logger = Logger.getLogger(StorageMigration.class.getName());
+
+    /**
+     * Command line entry point.
+     *
+     * @param args Options in --name=value form: books and users (paths of the JSON files, by
+     *             default the application's own) and url (JDBC URL of the target database, by
+     *             default the application's H2 database)
+     */
+    public static void main(String[] args) {
+        String books = AppDataManager.getDataFilePath("BookData.json");
+        String users = AppDataManager.getDataFilePath("UserData.json");
+        String url = System.getProperty("library.storage.url", SqlStorageEngine.defaultUrl());
+
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2 || !option[0].startsWith("--")) {
+                System.err.println("Unrecognized argument: " + arg);
+                System.exit(2);
+            }
+            switch (option[0]) {
+                case "--books" -> books = option[1];
+                case "--users" -> users = option[1];
+                case "--url" -> url = option[1];
+                default -> {
+                    System.err.println("Unrecognized option: " + option[0]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        boolean migrated = migrate(books, users, url);
+        System.exit(migrated ? 0 : 1);
+    }
+
+    /**
+     * Copies a catalog file and a user database file into a SQL database.
+     *
+     * @param bookDatabasePath Path of the book database file
+     * @param userDatabasePath Path of the user database file
+     * @param url JDBC URL of the target database
+     * @return true if all data was copied, false otherwise
+     */
+    public static boolean migrate(String bookDatabasePath, String userDatabasePath, String url) {
+        logger.log(Level.INFO, "Migrating " + bookDatabasePath + " and " + userDatabasePath + " to " + url);
+
+        List<Book> books = JsonManager.readBooks(bookDatabasePath);
+        if (books == null) {
+            logger.log(Level.SEVERE, "Failed to read book database: " + bookDatabasePath);
+            return false;
+        }
+        JsonObject userData = JsonManager.readUserData(userDatabasePath);
+        if (userData == null) {
+            logger.log(Level.SEVERE, "Failed to read user database: " + userDatabasePath);
+            return false;
+        }
+
+        SqlStorageEngine engine = SqlStorageEngine.forUrl(url);
+        try {
+            boolean imported = engine.importData(books, userData);
+            if (imported) {
+                logger.log(Level.INFO, "Migration completed: " + url);
+            }
+            return imported;
+        } finally {
+            engine.close();
+        }
+    }
+}
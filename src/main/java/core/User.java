@@ -0,0 +1,75 @@
+package core;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A user as seen after decryption: plaintext ID and name, user type category and current loans.
+ * User records stay encrypted in UserData.json; DataBaseManager.findUser() builds this view from
+ * the matching record with the user's password.
+ *
+ * @param userId The plaintext user ID
+ * @param name The plaintext user name
+ * @param userType The user type category (Students, General Public, Admins)
+ * @param loans The user's current loans, in record order
+ */
+public record User(String userId, String name, String userType, List<Loan> loans) {
+    private static final Logger logger = Logger.getLogger(User.class.getName());
+
+    public User {
+        loans = List.copyOf(loans);
+    }
+
+    /**
+     * @param loans The new loans, in record order
+     * @return This user with their loans replaced
+     */
+    public User withLoans(List<Loan> loans) {
+        return new User(userId, name, userType, loans);
+    }
+
+    /**
+     * Decrypts a user record.
+     *
+     * @param record The encrypted user record
+     * @param userType The user type category the record belongs to
+     * @param password The user's password
+     * @return The decrypted user
+     * @throws RuntimeException if the ID or name cannot be decrypted with the password
+     */
+    public static User fromRecord(JsonObject record, String userType, String password) {
+        String userId = SecurityManager.decrypt(record.get("UserID").getAsString(), password);
+        String name = SecurityManager.decrypt(record.get("Name").getAsString(), password);
+        return new User(userId, name, userType, loansOf(record, password));
+    }
+
+    /**
+     * Decrypts the loans of a user record. Malformed loan records are skipped.
+     *
+     * @param record The encrypted user record
+     * @param password The user's password
+     * @return The loans, in record order
+     */
+    public static List<Loan> loansOf(JsonObject record, String password) {
+        if (!record.has("Books") || record.get("Books").isJsonNull()) {
+            return List.of();
+        }
+
+        JsonArray books = record.getAsJsonArray("Books");
+        List<Loan> loans = new ArrayList<>(books.size());
+        for (int i = 0; i < books.size(); i++) {
+            Loan loan = Loan.fromRecord(books.get(i).getAsJsonObject(), password);
+            if (loan != null) {
+                loans.add(loan);
+            } else {
+                logger.log(Level.WARNING, "Skipping malformed loan record at index " + i);
+            }
+        }
+        return loans;
+    }
+}
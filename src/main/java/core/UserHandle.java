@@ -0,0 +1,92 @@
+package core;
+
+/**
+ * A user resolved once, at login, and kept by core.SessionManager for the rest of the session.
+ * It records where the engine stores the user's record and the decrypted user with their loans,
+ * stamped with the engine's user data version at the time. While that version is current the
+ * handle is used as is, so later operations neither read nor scan the user records; once the
+ * data has changed, StorageEngine.revalidate() re-reads the one record the handle points at.
+ *
+ * Keys derived from the password stay in the session's core.DerivedKeyCache; the handle holds
+ * the user's lookup tag, not the password.
+ */
+public final class UserHandle {
+
+    /**
+     * What the handle currently knows about the user.
+     *
+     * @param user The decrypted user with their loans
+     * @param recordKey Where the engine stores the record: its position within its user type
+     *                  category for core.JsonStorageEngine, its row key for core.SqlStorageEngine
+     * @param version The engine's user data version the user was read at
+     */
+    public record Resolution(User user, long recordKey, long version) {}
+
+    /** Identifies the engine's user store (database file path or JDBC URL) */
+    private final String store;
+
+    /** The user's "LookupTag" blind index */
+    private final String lookupTag;
+
+    /** The current resolution; replaced as a whole, so readers always see a consistent one */
+    private volatile Resolution resolution;
+
+    /**
+     * @param store Identifies the engine's user store
+     * @param lookupTag The user's lookup tag
+     * @param user The decrypted user with their loans
+     * @param recordKey Where the engine stores the record
+     * @param version The engine's user data version the user was read at
+     */
+    public UserHandle(String store, String lookupTag, User user, long recordKey, long version) {
+        this.store = store;
+        this.lookupTag = lookupTag;
+        this.resolution = new Resolution(user, recordKey, version);
+    }
+
+    /**
+     * @return Identifies the engine's user store the handle belongs to
+     */
+    public String store() {
+        return store;
+    }
+
+    /**
+     * @return The user's lookup tag
+     */
+    public String lookupTag() {
+        return lookupTag;
+    }
+
+    /**
+     * @return The plaintext user ID
+     */
+    public String userId() {
+        return resolution.user().userId();
+    }
+
+    /**
+     * @return The user as of the last resolution; call StorageEngine.revalidate() first for current data
+     */
+    public User user() {
+        return resolution.user();
+    }
+
+    /**
+     * @return The current resolution
+     */
+    public Resolution resolution() {
+        return resolution;
+    }
+
+    /**
+     * Replaces the resolution after the engine re-read the record or committed a change to it.
+     *
+     * @param user The decrypted user with their loans
+     * @param recordKey Where the engine stores the record
+     * @param version The engine's user data version the user is current at
+     */
+    void update(User user, long recordKey, long version) {
+        resolution = new Resolution(user, recordKey, version);
+    }
+}
@@ -3,6 +3,7 @@ package ui;
 import core.LoggingManager;
 import core.ResourceManager;
 import ui.panels.*;
+import ui.utils.BackgroundLoader;
 import ui.utils.LanguageManager;
 
 import javax.swing.*;
@@ -204,6 +205,7 @@ public class GUI extends JFrame {
      */
     public void logout() {
         logger.log(Level.INFO, "Initiating logout");
+        BackgroundLoader.cancelAll();
         core.SessionManager.getInstance().logout();
         MainApplicationPanel.welcomeLabel.setText(ResourceManager.getString("welcome.message"));
         LoginPanel loginPanel = (LoginPanel) cardPanel.getComponent(0); // Assuming login panel is first
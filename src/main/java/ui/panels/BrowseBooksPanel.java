@@ -1,18 +1,19 @@
 package ui.panels;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import core.Book;
 import core.DataBaseManager;
 import core.ResourceManager;
 import core.SessionManager;
 import ui.GUI;
+import ui.utils.BackgroundLoader;
 import ui.utils.DialogUtils;
 import ui.utils.StatusUtils;
 import ui.utils.TableUtils;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,8 +25,8 @@ import java.util.logging.Logger;
 public class BrowseBooksPanel extends JPanel {
     private static final Logger logger = Logger.getLogger(BrowseBooksPanel.class.getName());
 
-    /** Table model for the book browsing interface */
-    public static DefaultTableModel browseBooksTableModel;
+    /** Table model for the book browsing interface; rows are the catalog records of the last search */
+    public static TableUtils.LazyTableModel<Book> browseBooksTableModel;
 
     /** Search field for filtering books in browse mode */
     public static JTextField browseBooksSearchField;
@@ -62,7 +63,8 @@ public class BrowseBooksPanel extends JPanel {
                 ResourceManager.getString("column.available")
         };
 
-        TableUtils.TableComponents tableComponents = TableUtils.createCenteredTable(columns);
+        TableUtils.TableComponents<TableUtils.LazyTableModel<Book>> tableComponents =
+                TableUtils.createCenteredTable(new TableUtils.LazyTableModel<>(columns, BrowseBooksPanel::readBrowseBookCell));
         browseBooksTableModel = tableComponents.model();
 
 
@@ -105,34 +107,44 @@ public class BrowseBooksPanel extends JPanel {
                         return;
                     }
 
-                    if (dbm.hasUserBorrowedBook(SessionManager.getInstance().getCurrentUser(), title, shelf, SessionManager.getInstance().getKey())) {
-                        DialogUtils.showErrorDialog(panel,
-                                core.ResourceManager.getString("error.book.already.borrowed"),
-                                core.ResourceManager.getString("error")
-                        );
-                        return;
-                    }
-
-                    boolean success = dbm.borrowBook(core.SessionManager.getInstance().getCurrentUser(), shelf, title, SessionManager.getInstance().getKey());
-
-                    if (success) {
-                        JOptionPane.showMessageDialog(panel,
-                                core.ResourceManager.getString("book.borrow.success", title),
-                                core.ResourceManager.getString("success"),
-                                JOptionPane.INFORMATION_MESSAGE);
-
-                        loadBrowseBooksToTable(gui, browseBooksTableModel, browseBooksSearchField.getText());
-
-                        if (MyBooksPanel.myBooksTableModel != null) {
-                            MyBooksPanel.loadMyBooksToTable(gui, MyBooksPanel.myBooksTableModel);
-                        }
-
-                    } else {
-                        DialogUtils.showErrorDialog(panel,
-                                ResourceManager.getString("error.borrow.failed"),
-                                core.ResourceManager.getString("error")
-                        );
-                    }
+                    // Key derivation, the journal append and the catalog update run off the EDT
+                    String currentUser = SessionManager.getInstance().getCurrentUser();
+                    String key = SessionManager.getInstance().getKey();
+                    borrowButton.setEnabled(false);
+                    BackgroundLoader.submit("borrowBook", gui,
+                            () -> borrow(dbm, currentUser, shelf, title, key),
+                            outcome -> {
+                                borrowButton.setEnabled(true);
+                                switch (outcome) {
+                                    case BORROWED -> {
+                                        JOptionPane.showMessageDialog(panel,
+                                                core.ResourceManager.getString("book.borrow.success", title),
+                                                core.ResourceManager.getString("success"),
+                                                JOptionPane.INFORMATION_MESSAGE);
+
+                                        loadBrowseBooksToTable(gui, browseBooksTableModel, browseBooksSearchField.getText());
+
+                                        if (MyBooksPanel.myBooksTableModel != null) {
+                                            MyBooksPanel.loadMyBooksToTable(gui, MyBooksPanel.myBooksTableModel);
+                                        }
+                                    }
+                                    case ALREADY_BORROWED -> DialogUtils.showErrorDialog(panel,
+                                            core.ResourceManager.getString("error.book.already.borrowed"),
+                                            core.ResourceManager.getString("error")
+                                    );
+                                    case FAILED -> DialogUtils.showErrorDialog(panel,
+                                            ResourceManager.getString("error.borrow.failed"),
+                                            core.ResourceManager.getString("error")
+                                    );
+                                }
+                            },
+                            e -> {
+                                borrowButton.setEnabled(true);
+                                DialogUtils.showErrorDialog(panel,
+                                        core.ResourceManager.getString("error.borrow.failed") + ": " + e.getMessage(),
+                                        core.ResourceManager.getString("error")
+                                );
+                            });
                 }
             } catch (Exception e) {
                 DialogUtils.showErrorDialog(panel,
@@ -145,84 +157,124 @@ public class BrowseBooksPanel extends JPanel {
         return panel;
     }
 
+    /** Outcome of a borrow run in the background */
+    private enum BorrowOutcome {
+        BORROWED,
+        ALREADY_BORROWED,
+        FAILED
+    }
+
+    /**
+     * Borrows a book for a user unless they already hold it. Runs off the Event Dispatch Thread.
+     *
+     * @param dbm The database manager
+     * @param userId The ID of the borrowing user
+     * @param shelf The shelf number of the book
+     * @param title The title of the book
+     * @param key The user's encryption key
+     * @return Whether the book was borrowed, was already held, or could not be borrowed
+     */
+    private static BorrowOutcome borrow(DataBaseManager dbm, String userId, String shelf, String title, String key) {
+        if (dbm.hasUserBorrowedBook(userId, shelf, title, key)) {
+            return BorrowOutcome.ALREADY_BORROWED;
+        }
+        return dbm.borrowBook(userId, shelf, title, key) ? BorrowOutcome.BORROWED : BorrowOutcome.FAILED;
+    }
+
     /**
      * Loads book data into the browse books table based on a search term.
      * Retrieves books from the database using core.DataBaseManager.findBooks() and populates
      * the table with book information including ID, title, author, publisher, and availability.
+     * The search runs in the background through ui.utils.BackgroundLoader; a newer search
+     * cancels one still in progress, and the rows are published to the table in one batch.
      * Empty search terms return all books. Handles database errors gracefully by logging
      * and showing error dialogs to the user.
      *
      * @param gui        The GUI instance to which the table belongs
-     * @param model      The DefaultTableModel to populate with book data
+     * @param model      The table model to populate with book data
      * @param searchTerm The search term to filter books by (empty string returns all books)
      */
-    public static void loadBrowseBooksToTable(GUI gui, DefaultTableModel model, String searchTerm) {
-        // Clear existing table data before populating
-        model.setRowCount(0);
-
-        try {
-            DataBaseManager dbm = new core.DataBaseManager();
-            JsonArray books = dbm.findBooks(searchTerm);
-
-            if (books == null) {
-                // Handle database query failure with informative message
-                DialogUtils.showErrorDialog(gui,
-                        core.ResourceManager.getString("error.search.failed"),
-                        core.ResourceManager.getString("error")
-                );
-                return;
-            }
-
-            if (books.isEmpty()) {
-                // Display different messages based on whether search was empty or no results found
-                JOptionPane.showMessageDialog(
-                        gui,
-                        ResourceManager.getString("books.none"),
-                        core.ResourceManager.getString("info"),
-                        JOptionPane.INFORMATION_MESSAGE
-                );
-                return;
-            }
+    public static void loadBrowseBooksToTable(GUI gui, TableUtils.LazyTableModel<Book> model, String searchTerm) {
+        BackgroundLoader.submit("browseBooks", gui,
+                () -> findBrowseBooks(searchTerm),
+                rows -> {
+                    if (rows == null) {
+                        // Handle database query failure with informative message
+                        model.clear();
+                        DialogUtils.showErrorDialog(gui,
+                                core.ResourceManager.getString("error.search.failed"),
+                                core.ResourceManager.getString("error")
+                        );
+                        return;
+                    }
 
-            for (int i = 0; i < books.size(); i++) {
-                try {
-                    JsonObject book = books.get(i).getAsJsonObject();
+                    model.setRows(rows);
 
-                    // Skip books with missing required fields to prevent NullPointerException
-                    if (StatusUtils.hasRequiredBookFields(book)) {
-                        continue; // Skip invalid book entries
+                    if (rows.isEmpty()) {
+                        // Display different messages based on whether search was empty or no results found
+                        JOptionPane.showMessageDialog(
+                                gui,
+                                ResourceManager.getString("books.none"),
+                                core.ResourceManager.getString("info"),
+                                JOptionPane.INFORMATION_MESSAGE
+                        );
                     }
+                },
+                e -> {
+                    // Handle catastrophic database failures
+                    model.clear();
+                    DialogUtils.showErrorDialog(gui,
+                            core.ResourceManager.getString("error.database") + ": " + e.getMessage(),
+                            core.ResourceManager.getString("error")
+                    );
+                });
+    }
 
-                    String bookID = book.get("BookID").getAsString();
-                    int shelfNumber = dbm.getShelfNumber(bookID);
+    /**
+     * Finds the books to show for a search term. Runs off the Event Dispatch Thread.
+     * The table reads its cells from these records as rows become visible.
+     *
+     * @param searchTerm The search term to filter books by
+     * @return The matching books with all required fields, or null if the search failed
+     */
+    private static List<Book> findBrowseBooks(String searchTerm) {
+        List<Book> books = new core.DataBaseManager().findBooks(searchTerm);
 
-                    if (shelfNumber == -1) {
-                        shelfNumber = 0; // Default shelf value when not found
-                    }
+        if (books == null) {
+            return null;
+        }
 
-                    model.addRow(new Object[]{
-                            shelfNumber,
-                            book.get("Title").getAsString(),
-                            book.get("Author").getAsString(),
-                            book.get("Publisher").getAsString(),
-                            // Convert numeric availability to localized Yes/No string
-                            book.get("Available").getAsInt() > 0 ?
-                                    core.ResourceManager.getString("yes") :
-                                    ResourceManager.getString("no")
-                    });
-                } catch (Exception e) {
-                    // Individual book processing errors don't stop the entire loading process
-                    logger.log(Level.WARNING, "Error processing book data at index " + i, e);
-                }
+        List<Book> rows = new ArrayList<>(books.size());
+        for (Book book : books) {
+            BackgroundLoader.checkCancelled();
+
+            // Skip books with missing required fields to prevent NullPointerException
+            if (StatusUtils.hasRequiredBookFields(book)) {
+                continue; // Skip invalid book entries
             }
-        } catch (Exception e) {
-            // Handle catastrophic database failures with a single error row
-            logger.log(Level.SEVERE, "Failed to load user's borrowed books for: " + SessionManager.getInstance().getCurrentUser(), e);
-
-            DialogUtils.showErrorDialog(gui,
-                    core.ResourceManager.getString("error.database") + ": " + e.getMessage(),
-                    core.ResourceManager.getString("error")
-            );
+            rows.add(book);
         }
+        return rows;
+    }
+
+    /**
+     * Derives one cell of the browse table from a book record.
+     *
+     * @param book The book record
+     * @param column The column index
+     * @return The value to display
+     */
+    private static Object readBrowseBookCell(Book book, int column) {
+        return switch (column) {
+            case 0 -> Math.max(0, book.shelfNumber()); // 0 when not found
+            case 1 -> book.title();
+            case 2 -> book.author();
+            case 3 -> book.publisher();
+            // Convert numeric availability to localized Yes/No string
+            case 4 -> book.available() > 0 ?
+                    core.ResourceManager.getString("yes") :
+                    ResourceManager.getString("no");
+            default -> null;
+        };
     }
 }
@@ -1,9 +1,11 @@
 package ui.panels;
 
-import com.google.gson.JsonObject;
 import core.DataBaseManager;
 import core.ResourceManager;
+import core.User;
+import core.UserHandle;
 import ui.GUI;
+import ui.utils.BackgroundLoader;
 import ui.utils.DialogUtils;
 
 import javax.swing.*;
@@ -29,6 +31,9 @@ public class LoginPanel extends JPanel {
     /** Reference to the parent GUI container */
     private final GUI parentGUI;
 
+    /** Button that submits the login form */
+    private final JButton loginButton;
+
     /** Session manager instance for handling user sessions */
     private final core.SessionManager sessionManager;
 
@@ -46,6 +51,7 @@ public class LoginPanel extends JPanel {
         // Initialize components
         this.passwordField = new JPasswordField(15);
         this.idField = new JTextField(15);
+        this.loginButton = new JButton(core.ResourceManager.getString("login.button"));
         
         initializeComponents();
     }
@@ -61,7 +67,6 @@ public class LoginPanel extends JPanel {
         // Create labels and button
         JLabel idLabel = new JLabel(core.ResourceManager.getString("login.userid"));
         JLabel passwordLabel = new JLabel(core.ResourceManager.getString("login.password"));
-        JButton loginButton = new JButton(core.ResourceManager.getString("login.button"));
 
         // Layout components
         gbc.gridx = 0;
@@ -83,16 +88,14 @@ public class LoginPanel extends JPanel {
         add(loginButton, gbc);
 
         // Add listeners
-        setupActionListeners(loginButton);
+        setupActionListeners();
     }
 
     /**
      * Sets up action listeners for the login panel components.
      * Handles focus transitions and login button actions.
-     *
-     * @param loginButton The button that triggers the login process
      */
-    private void setupActionListeners(JButton loginButton) {
+    private void setupActionListeners() {
         idField.addActionListener(_ -> passwordField.requestFocusInWindow());
         passwordField.addActionListener(_ -> loginButton.doClick());
         loginButton.addActionListener(_ -> handleLogin());
@@ -119,52 +122,84 @@ public class LoginPanel extends JPanel {
         processLoginAttempt(id, password);
     }
 
+    /**
+     * Outcome of a login attempt computed off the Event Dispatch Thread.
+     *
+     * @param currentUser The decrypted user ID, or null if the attempt failed
+     * @param currentUserName The decrypted user name, or null if the attempt failed
+     * @param handle The user as resolved, kept by the session, or null if the attempt failed
+     * @param failureReason The reason the attempt failed, or null if it succeeded
+     */
+    private record LoginOutcome(String currentUser, String currentUserName, UserHandle handle, String failureReason) {
+        static LoginOutcome failure(String reason) {
+            return new LoginOutcome(null, null, null, reason);
+        }
+    }
+
     /**
      * Processes the login attempt by checking the user credentials against the database.
+     * The lookup and decryption run in the background through ui.utils.BackgroundLoader,
+     * so the window stays responsive; the login button is disabled until the attempt completes.
      * Handles successful and failed login attempts with appropriate actions.
      *
      * @param id The user ID entered by the user
      * @param password The password entered by the user
      */
     private void processLoginAttempt(String id, String password) {
+        loginButton.setEnabled(false);
+
+        BackgroundLoader.submit("login", this,
+                () -> authenticate(id, password),
+                outcome -> {
+                    loginButton.setEnabled(true);
+                    if (outcome.failureReason() == null) {
+                        handleSuccessfulLogin(outcome, password);
+                    } else {
+                        handleFailedLogin(outcome.failureReason(), id);
+                    }
+                },
+                e -> {
+                    loginButton.setEnabled(true);
+                    logger.log(Level.SEVERE, "Error during login processing", e);
+                    DialogUtils.showErrorDialog(this,
+                            ResourceManager.getString("error.login.failed"),
+                            ResourceManager.getString("error"));
+                });
+    }
+
+    /**
+     * Looks up the user and verifies the password. Runs off the Event Dispatch Thread.
+     * core.DataBaseManager.resolveUser() only returns a user whose record decrypts with the password
+     * and whose stored password matches it.
+     *
+     * @param id The user ID entered by the user
+     * @param password The password entered by the user
+     * @return The decrypted user details, or the reason the attempt failed
+     */
+    private static LoginOutcome authenticate(String id, String password) {
         DataBaseManager dbm = new DataBaseManager();
-        JsonObject user = dbm.findUser(id, password);
-
-        if (user != null) {
-            try {
-                String encryptedPassword = user.get("Password").getAsString();
-                String decryptedPassword = core.SecurityManager.decrypt(encryptedPassword, password);
-
-                if (decryptedPassword.equals(password)) {
-                    handleSuccessfulLogin(user, password);
-                } else {
-                    handleFailedLogin("incorrect_password", id);
-                }
-            } catch (RuntimeException ex) {
-                handleFailedLogin("decryption_failed", id);
-            }
-        } else {
-            handleFailedLogin("user_not_found", id);
+        UserHandle handle = dbm.resolveUser(id, password);
+
+        if (handle == null) {
+            return LoginOutcome.failure("user_not_found");
         }
+        User user = handle.user();
+        return new LoginOutcome(user.userId(), user.name(), handle, null);
     }
 
     /**
      * Handles a successful login by updating the session and switching to the main panel.
-     * Decrypts user information and logs the successful login event.
+     * Logs the successful login event.
      *
-     * @param user The JsonObject containing user data retrieved from the database
+     * @param outcome The decrypted user details from the login attempt
      * @param password The password used for decryption and session management
      */
-    private void handleSuccessfulLogin(JsonObject user, String password) {
+    private void handleSuccessfulLogin(LoginOutcome outcome, String password) {
         try {
-            String encryptedID = user.get("UserID").getAsString();
-            String currentUser = core.SecurityManager.decrypt(encryptedID, password);
-
-            String encryptedName = user.get("Name").getAsString();
-            String currentUserName = core.SecurityManager.decrypt(encryptedName, password);
+            String currentUser = outcome.currentUser();
 
             // Update session
-            sessionManager.login(currentUser, currentUserName, password);
+            sessionManager.login(currentUser, outcome.currentUserName(), password, outcome.handle());
             
             logger.log(Level.INFO, "Successful login for user: " + currentUser);
             
@@ -189,7 +224,7 @@ public class LoginPanel extends JPanel {
     private void handleFailedLogin(String reason, String id) {
         logger.log(Level.WARNING, "Failed login attempt - " + reason + " for user: " + id);
         String errorKey = switch (reason) {
-            case "incorrect_password", "decryption_failed" -> "login.error.invalid.password";
+            // The lookup tag needs both the ID and the password, so a wrong password looks like an unknown ID
             case "user_not_found" -> "login.error.invalid";
             default -> "login.error.failed";
         };
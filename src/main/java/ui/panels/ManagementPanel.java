@@ -1,18 +1,19 @@
 package ui.panels;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import core.Book;
 import core.ResourceManager;
 import ui.GUI;
 import ui.panels.forms.AddBookForm;
 import ui.panels.forms.AddUserForm;
+import ui.utils.BackgroundLoader;
 import ui.utils.DialogUtils;
 import ui.utils.StatusUtils;
 import ui.utils.TableUtils;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,8 +25,8 @@ import java.util.logging.Logger;
 public class ManagementPanel extends JPanel {
     private static final Logger logger = Logger.getLogger(ManagementPanel.class.getName());
 
-    /** Table model for the book management interface */
-    public static DefaultTableModel manageBooksTableModel;
+    /** Table model for the book management interface; rows are the catalog records of the last search */
+    public static TableUtils.LazyTableModel<Book> manageBooksTableModel;
 
     /** Search field for filtering books in management mode */
     public static JTextField manageBooksSearchField;
@@ -114,7 +115,8 @@ public class ManagementPanel extends JPanel {
                 core.ResourceManager.getString("column.onloan")
         };
 
-        TableUtils.TableComponents tableComponents = TableUtils.createCenteredTable(columns);
+        TableUtils.TableComponents<TableUtils.LazyTableModel<Book>> tableComponents =
+                TableUtils.createCenteredTable(new TableUtils.LazyTableModel<>(columns, ManagementPanel::readManageBookCell));
         manageBooksTableModel = tableComponents.model();
 
         panel.add(searchPanel, BorderLayout.NORTH);
@@ -148,7 +150,7 @@ public class ManagementPanel extends JPanel {
      * @param manageBooksTableModel  The table model for book data
      * @param tableComponents       Table components for row selection validation
      */
-    private static void setupManageBooksActionListeners(GUI gui, JButton addButton, JButton editButton, JButton deleteButton, JButton addUserButton, JButton editUserButton, JButton removeUserButton, JButton searchButton, JTextField manageBooksSearchField, JPanel panel, DefaultTableModel manageBooksTableModel, TableUtils.TableComponents tableComponents) {
+    private static void setupManageBooksActionListeners(GUI gui, JButton addButton, JButton editButton, JButton deleteButton, JButton addUserButton, JButton editUserButton, JButton removeUserButton, JButton searchButton, JTextField manageBooksSearchField, JPanel panel, TableUtils.LazyTableModel<Book> manageBooksTableModel, TableUtils.TableComponents<?> tableComponents) {
         manageBooksSearchField.addActionListener(_ -> searchButton.doClick());
 
         searchButton.addActionListener(_ -> {
@@ -188,7 +190,7 @@ public class ManagementPanel extends JPanel {
      * @param tableComponents       Table components for row selection validation
      * @param panel                 The parent panel for error dialogs
      */
-    private static void editButtonHandler(GUI gui, DefaultTableModel manageBooksTableModel, TableUtils.TableComponents tableComponents, JPanel panel) {
+    private static void editButtonHandler(GUI gui, TableUtils.LazyTableModel<Book> manageBooksTableModel, TableUtils.TableComponents<?> tableComponents, JPanel panel) {
         try {
             if (TableUtils.isRowSelected(tableComponents.table(), panel,
                     ResourceManager.getString("validation.select.edit"))) {
@@ -235,7 +237,7 @@ public class ManagementPanel extends JPanel {
      * @param tableComponents       Table components for row selection validation
      * @param panel                 The parent panel for dialogs
      */
-    private static void deleteButtonHandler(GUI gui, DefaultTableModel manageBooksTableModel, TableUtils.TableComponents tableComponents, JPanel panel) {
+    private static void deleteButtonHandler(GUI gui, TableUtils.LazyTableModel<Book> manageBooksTableModel, TableUtils.TableComponents<?> tableComponents, JPanel panel) {
         try {
             if (TableUtils.isRowSelected(tableComponents.table(), panel,
                     ResourceManager.getString("validation.select.delete"))) {
@@ -252,13 +254,20 @@ public class ManagementPanel extends JPanel {
                 String bookId = manageBooksTableModel.getValueAt(selectedRow, 0).toString();
                 String title = manageBooksTableModel.getValueAt(selectedRow, 2).toString();
 
+                core.DataBaseManager dbm = new core.DataBaseManager();
+
+                // Warn that deleting a book on loan also removes its loans
+                int lentCopies = dbm.getLentCopies(bookId);
+                String confirmMessage = lentCopies > 0
+                        ? ResourceManager.getString("confirm.delete.lent", title, lentCopies)
+                        : ResourceManager.getString("confirm.delete", title);
+
                 int confirm = JOptionPane.showConfirmDialog(panel,
-                        ResourceManager.getString("confirm.delete", title),
+                        confirmMessage,
                         core.ResourceManager.getString("confirm"),
                         JOptionPane.YES_NO_OPTION);
 
                 if (confirm == JOptionPane.YES_OPTION) {
-                    core.DataBaseManager dbm = new core.DataBaseManager();
                     boolean success = dbm.deleteBook(bookId);
 
                     if (success) {
@@ -286,78 +295,94 @@ public class ManagementPanel extends JPanel {
     
     /**
      * Loads all books into the manage books table based on a search term.
+     * The search runs in the background through ui.utils.BackgroundLoader and the rows are
+     * published to the table in one batch; a newer search cancels one still in progress.
      * Includes error handling for database access and data validation.
      *
      * @param gui        The GUI instance to which the table belongs
      * @param model      The table model to populate
      * @param searchTerm The search term to filter books by
      */
-    public static void loadAllBooksToTable(GUI gui, DefaultTableModel model, String searchTerm) {
-        // Clear existing table data before populating
-        model.setRowCount(0);
-
-        try {
-            core.DataBaseManager dbm = new core.DataBaseManager();
-            JsonArray books = dbm.findBooks(searchTerm);
-
-            if (books == null) {
-                DialogUtils.showErrorDialog(gui,
-                        ResourceManager.getString("error.search.failed"),
-                        ResourceManager.getString("error")
-                );
-                return;
-            }
-
-            if (books.isEmpty()) {
-                // Display different messages based on whether search was empty or no results found
-                JOptionPane.showMessageDialog(
-                        gui,
-                        searchTerm.isEmpty() ?
-                                ResourceManager.getString("books.none.database") :
-                                ResourceManager.getString("books.none.search"),
-                        ResourceManager.getString("info"),
-                        JOptionPane.INFORMATION_MESSAGE
-                );
-                return;
-            }
-
-            for (int i = 0; i < books.size(); i++) {
-                try {
-                    JsonObject book = books.get(i).getAsJsonObject();
+    public static void loadAllBooksToTable(GUI gui, TableUtils.LazyTableModel<Book> model, String searchTerm) {
+        BackgroundLoader.submit("manageBooks", gui,
+                () -> findManageBooks(searchTerm),
+                rows -> {
+                    if (rows == null) {
+                        model.clear();
+                        DialogUtils.showErrorDialog(gui,
+                                ResourceManager.getString("error.search.failed"),
+                                ResourceManager.getString("error")
+                        );
+                        return;
+                    }
 
-                    // Skip books with missing required fields to prevent NullPointerException
-                    if (StatusUtils.hasRequiredBookFields(book)) {
-                        continue; // Skip invalid book entries
+                    model.setRows(rows);
+
+                    if (rows.isEmpty()) {
+                        // Display different messages based on whether search was empty or no results found
+                        JOptionPane.showMessageDialog(
+                                gui,
+                                searchTerm.isEmpty() ?
+                                        ResourceManager.getString("books.none.database") :
+                                        ResourceManager.getString("books.none.search"),
+                                ResourceManager.getString("info"),
+                                JOptionPane.INFORMATION_MESSAGE
+                        );
                     }
+                },
+                e -> {
+                    model.clear();
+                    DialogUtils.showErrorDialog(gui,
+                            ResourceManager.getString("error.database") + ": " + e.getMessage(),
+                            ResourceManager.getString("error")
+                    );
+                });
+    }
+
+    /**
+     * Finds the books to show for a search term. Runs off the Event Dispatch Thread.
+     * The table reads its cells from these records as rows become visible.
+     *
+     * @param searchTerm The search term to filter books by
+     * @return The matching books with all required fields, or null if the search failed
+     */
+    private static List<Book> findManageBooks(String searchTerm) {
+        List<Book> books = new core.DataBaseManager().findBooks(searchTerm);
 
-                    String bookID = book.get("BookID").getAsString();
-                    int shelfNumber = dbm.getShelfNumber(bookID);
+        if (books == null) {
+            return null;
+        }
 
-                    if (shelfNumber == -1) {
-                        shelfNumber = 0; // Default shelf value when not found
-                    }
+        List<Book> rows = new ArrayList<>(books.size());
+        for (Book book : books) {
+            BackgroundLoader.checkCancelled();
 
-                    model.addRow(new Object[]{
-                            bookID,
-                            shelfNumber,
-                            book.get("Title").getAsString(),
-                            book.get("Author").getAsString(),
-                            book.get("Publisher").getAsString(),
-                            book.get("Available").getAsString(),
-                            book.get("OnLoan").getAsString()
-                    });
-                } catch (Exception e) {
-                    // Individual book processing errors don't stop the entire loading process
-                    logger.log(Level.WARNING, "Error processing book data at index " + i, e);
-                }
+            // Skip books with missing required fields to prevent NullPointerException
+            if (StatusUtils.hasRequiredBookFields(book)) {
+                continue; // Skip invalid book entries
             }
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Failed to load user's borrowed books for: " + core.SessionManager.getInstance().getCurrentUser(), e);
-            DialogUtils.showErrorDialog(gui,
-                    ResourceManager.getString("error.database") + ": " + e.getMessage(),
-                    ResourceManager.getString("error")
-            );
+            rows.add(book);
         }
+        return rows;
     }
 
-}
\ No newline at end of file
+    /**
+     * Derives one cell of the manage books table from a book record.
+     *
+     * @param book The book record
+     * @param column The column index
+     * @return The value to display
+     */
+    private static Object readManageBookCell(Book book, int column) {
+        return switch (column) {
+            case 0 -> book.bookId();
+            case 1 -> Math.max(0, book.shelfNumber()); // 0 when not found
+            case 2 -> book.title();
+            case 3 -> book.author();
+            case 4 -> book.publisher();
+            case 5 -> String.valueOf(book.available());
+            case 6 -> String.valueOf(book.onLoan());
+            default -> null;
+        };
+    }
+}
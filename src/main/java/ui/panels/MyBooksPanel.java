@@ -1,11 +1,9 @@
 package ui.panels;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 import core.DataBaseManager;
 import core.*;
-import core.SecurityManager;
 import ui.GUI;
+import ui.utils.BackgroundLoader;
 import ui.utils.DialogUtils;
 import ui.utils.StatusUtils;
 import ui.utils.TableUtils;
@@ -13,6 +11,10 @@ import ui.utils.TableUtils;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,6 +35,9 @@ public class MyBooksPanel extends JPanel {
     /** Label displaying total fines if any exist */
     public static JLabel totalFinesLabel;
 
+    /** Resolved loans behind the rows of myBooksTableModel, in row order; accessed on the EDT */
+    private static List<LoanSummary.Entry> myBooksEntries = List.of();
+
     /**
      * Creates the panel displaying books borrowed by the current user.
      * Contains a table showing book titles, issue dates, due dates, and status.
@@ -52,7 +57,7 @@ public class MyBooksPanel extends JPanel {
                 ResourceManager.getString("column.status")
         };
 
-        TableUtils.TableComponents tableComponents = TableUtils.createCenteredTable(columns);
+        TableUtils.TableComponents<DefaultTableModel> tableComponents = TableUtils.createCenteredTable(columns);
         myBooksTableModel = tableComponents.model();
 
         JButton returnButton = new JButton(core.ResourceManager.getString("button.return.text"));
@@ -112,50 +117,73 @@ public class MyBooksPanel extends JPanel {
 
                     if (confirm == JOptionPane.YES_OPTION) {
                         try {
-                            boolean success = false;
+                            boolean proceed = false;
+
+                            // The loan behind the row, resolved when the table was loaded
+                            LoanSummary.Entry entry = selectedRow < myBooksEntries.size() ? myBooksEntries.get(selectedRow) : null;
 
                             if (status.equals(ResourceManager.getString("status.overdue"))) {
-                                int daysOverdue = dbm.getDaysOverdue(dateDue);
+                                int daysOverdue = entry != null ? entry.daysOverdue() : dbm.getDaysOverdue(dateDue);
 
                                 if (daysOverdue > 0) {
-                                    double lateFee = FeeManager.calculateFee(daysOverdue, dbm.getUserType(SessionManager.getInstance().getCurrentUser(), SessionManager.getInstance().getKey()));
+                                    double lateFee = entry != null
+                                            ? entry.fee()
+                                            : FeeManager.calculateFee(daysOverdue, dbm.getUserType(SessionManager.getInstance().getCurrentUser(), SessionManager.getInstance().getKey()));
 
                                     int response = JOptionPane.showConfirmDialog(panel,
                                             core.ResourceManager.getString("confirm.return.overdue", String.format("%.2f", lateFee)),
                                             ResourceManager.getString("confirm"),
                                             JOptionPane.YES_NO_OPTION);
 
-                                    if (response == JOptionPane.YES_OPTION) {
-                                        //! IF THERE WAS A FULL PAYMENT SYSTEM, THIS IS WHERE IT WOULD BE HANDLED
-                                        //! BUT CONSIDERING ITS NOT REQUIRED, WE JUST RETURN THE BOOK
-                                        String bookID = dbm.findBookID(bookTitle);
-                                        if (bookID != null) {
-                                            success = dbm.returnBook(SessionManager.getInstance().getCurrentUser(), bookID, SessionManager.getInstance().getKey());
-                                        }
-                                    }
+                                    //! IF THERE WAS A FULL PAYMENT SYSTEM, THIS IS WHERE IT WOULD BE HANDLED
+                                    //! BUT CONSIDERING ITS NOT REQUIRED, WE JUST RETURN THE BOOK
+                                    proceed = response == JOptionPane.YES_OPTION;
                                 }
                             } else {
-                                String bookID = dbm.findBookID(bookTitle);
-                                if (bookID != null) {
-                                    success = dbm.returnBook(SessionManager.getInstance().getCurrentUser(), bookID, core.SessionManager.getInstance().getKey());
-                                }
+                                proceed = true;
                             }
 
-                            if (success) {
-                                JOptionPane.showMessageDialog(panel,
-                                        core.ResourceManager.getString("book.return.success"),
-                                        ResourceManager.getString("success"),
-                                        JOptionPane.INFORMATION_MESSAGE);
-
-                                loadMyBooksToTable(gui, myBooksTableModel);
-
-                                updateFinesDisplay();
-                            } else {
+                            if (!proceed) {
                                 DialogUtils.showErrorDialog(panel,
                                         ResourceManager.getString("error.return.failed"),
                                         core.ResourceManager.getString("error")
                                 );
+                                return;
                             }
+
+                            // The journal append and the catalog update run off the EDT
+                            String currentUser = SessionManager.getInstance().getCurrentUser();
+                            String key = SessionManager.getInstance().getKey();
+                            String loanBookId = entry != null ? entry.loan().bookId() : null;
+                            returnButton.setEnabled(false);
+                            BackgroundLoader.submit("returnBook", gui,
+                                    () -> {
+                                        String bookID = loanBookId != null ? loanBookId : dbm.findBookID(bookTitle);
+                                        return bookID != null && dbm.returnBook(currentUser, bookID, key);
+                                    },
+                                    success -> {
+                                        returnButton.setEnabled(true);
+                                        if (success) {
+                                            JOptionPane.showMessageDialog(panel,
+                                                    core.ResourceManager.getString("book.return.success"),
+                                                    ResourceManager.getString("success"),
+                                                    JOptionPane.INFORMATION_MESSAGE);
+
+                                            loadMyBooksToTable(gui, myBooksTableModel);
+                                        } else {
+                                            DialogUtils.showErrorDialog(panel,
+                                                    ResourceManager.getString("error.return.failed"),
+                                                    core.ResourceManager.getString("error")
+                                            );
+                                        }
+                                    },
+                                    e -> {
+                                        returnButton.setEnabled(true);
+                                        DialogUtils.showErrorDialog(panel,
+                                                ResourceManager.getString("error.return.exception") + ": " + e.getMessage(),
+                                                core.ResourceManager.getString("error")
+                                        );
+                                    });
                         } catch (Exception e) {
                             DialogUtils.showErrorDialog(panel,
                                     ResourceManager.getString("error.return.exception") + ": " + e.getMessage(),
@@ -175,183 +203,160 @@ public class MyBooksPanel extends JPanel {
         return panel;
     }
 
+    /**
+     * Result of loading the "My Books" table off the Event Dispatch Thread.
+     *
+     * @param rows The table rows to display
+     * @param entries The resolved loans behind the rows, in row order (empty for placeholder rows)
+     * @param loadErrors Number of loans that could not be fully loaded
+     * @param totalFines The user's total outstanding fines
+     */
+    private record MyBooksLoad(List<Object[]> rows, List<LoanSummary.Entry> entries, int loadErrors, double totalFines) {}
+
     /**
      * Loads the current user's borrowed books into the "My Books" table.
-     * Retrieves borrowed books using core.DataBaseManager.findBorrowedBooks() and displays
+     * Retrieves the user's loans in one pass using core.DataBaseManager.getLoanSummary() and displays
      * book titles, issue dates, due dates, status, and calculated fees.
      * Status includes visual indicators: on time, due today, or overdue.
      * Handles encryption/decryption of user data and database access errors.
+     * Decryption and file access run in the background through ui.utils.BackgroundLoader;
+     * the rows and the fines label are updated together on the EDT once loading finishes.
      *
      * @param gui The GUI instance to which the table belongs
      * @param model The DefaultTableModel to populate with the user's borrowed books
      */
     public static void loadMyBooksToTable(GUI gui, DefaultTableModel model) {
-        model.setRowCount(0);
-
-        try {
-            // Session validation check - both user and encryption key must exist
-            if (SessionManager.getInstance().getCurrentUser() == null || SessionManager.getInstance().getKey() == null) {
-                model.addRow(new Object[]{
-                        ResourceManager.getString("error.session"),
-                        "", "", ""
-                });
-                DialogUtils.showErrorDialog(gui,
-                        core.ResourceManager.getString("error.session.details"),
-                        ResourceManager.getString("error")
-                );
-                return;
-            }
-
-            core.DataBaseManager dbm = new DataBaseManager();
-            JsonArray books;
-
-            try {
-                books = dbm.findBorrowedBooks(core.SessionManager.getInstance().getCurrentUser(), SessionManager.getInstance().getKey());
-            } catch (Exception e) {
-                model.addRow(new Object[]{
-                        ResourceManager.getString("error.load.books"),
-                        "", "", ""
-                });
-                DialogUtils.showErrorDialog(gui,
-                        core.ResourceManager.getString("error.load.books.details") + ": " + e.getMessage(),
-                        core.ResourceManager.getString("error")
-                );
-                return;
-            }
-
-            if (books == null) {
-                model.addRow(new Object[]{
-                        ResourceManager.getString("error.database"),
-                        "", "", ""
-                });
-                return;
-            }
-
-            if (books.isEmpty()) {
-                model.addRow(new Object[]{
-                        ResourceManager.getString("books.none"),
-                        "", "", ""
-                });
-                return;
-            }
-
-            int loadErrors = 0;
-
-            for (int i = 0; i < books.size(); i++) {
-                try {
-                    JsonObject book = books.get(i).getAsJsonObject();
-
-                    // Validate required fields before processing
-                    if (!book.has("BookID") || !book.has("DateIssued") || !book.has("Status")) {
-                        loadErrors++;
-                        continue;
-                    }
-
-                    String bookId = book.get("BookID").getAsString();
-                    String title = dbm.getBookTitle(bookId);
-
-                    // Use placeholder for books that may have been deleted from database
-                    if (title == null) {
-                        title = ResourceManager.getString("book.unknown") + " (" + bookId + ")";
-                    }
+        // Session validation check - both user and encryption key must exist
+        String currentUser = SessionManager.getInstance().getCurrentUser();
+        String key = SessionManager.getInstance().getKey();
+        if (currentUser == null || key == null) {
+            myBooksEntries = List.of();
+            model.setRowCount(0);
+            model.addRow(new Object[]{
+                    ResourceManager.getString("error.session"),
+                    "", "", ""
+            });
+            DialogUtils.showErrorDialog(gui,
+                    core.ResourceManager.getString("error.session.details"),
+                    ResourceManager.getString("error")
+            );
+            return;
+        }
 
-                    String dateIssued;
-                    try {
-                        // DateIssued is stored encrypted and needs decryption
-                        dateIssued = SecurityManager.decrypt(book.get("DateIssued").getAsString(), SessionManager.getInstance().getKey());
-                    } catch (Exception e) {
-                        dateIssued = core.ResourceManager.getString("date.unknown");
-                        loadErrors++;
+        BackgroundLoader.submit("myBooks", gui,
+                () -> buildMyBooksRows(currentUser, key),
+                load -> {
+                    myBooksEntries = load.entries();
+                    TableUtils.replaceRows(model, load.rows());
+
+                    // Tracking errors lets us notify user about partial data issues
+                    if (load.loadErrors() > 0) {
+                        DialogUtils.showErrorDialog(gui,
+                                String.format(ResourceManager.getString("error.load.some.books"), load.loadErrors()),
+                                ResourceManager.getString("warning")
+                        );
                     }
 
-                    String userType;
-                    try {
-                        userType = dbm.getUserType(SessionManager.getInstance().getCurrentUser(), SessionManager.getInstance().getKey());
-                        if (userType == null) {
-                            throw new Exception("User type not found");
-                        }
-                    } catch (Exception e) {
-                        model.addRow(new Object[]{
-                                title,
-                                dateIssued,
-                                core.ResourceManager.getString("date.unknown"),
-                                ResourceManager.getString("status.unknown")
-                        });
-                        continue;
-                    }
+                    updateFinesDisplay(load.totalFines());
+                },
+                e -> {
+                    myBooksEntries = List.of();
+                    model.setRowCount(0);
+                    model.addRow(new Object[]{
+                            ResourceManager.getString("error.load.books"),
+                            "", "", ""
+                    });
+                    DialogUtils.showErrorDialog(gui,
+                            core.ResourceManager.getString("error.load.books.details") + ": " + e.getMessage(),
+                            core.ResourceManager.getString("error")
+                    );
+                });
+    }
 
-                    String dateDue = dbm.getDueDate(dateIssued, userType);
-                    if (dateDue == null) {
-                        dateDue = ResourceManager.getString("date.unknown");
-                    }
+    /**
+     * Builds the "My Books" rows for a user from one loan summary. Runs off the Event Dispatch Thread.
+     * Due statuses that changed since they were saved are written back together.
+     *
+     * @param currentUser The ID of the logged-in user
+     * @param key The user's encryption key
+     * @return The rows, the loans behind them, load error count and total fines
+     */
+    private static MyBooksLoad buildMyBooksRows(String currentUser, String key) {
+        core.DataBaseManager dbm = new DataBaseManager();
+        List<Object[]> rows = new ArrayList<>();
+        LoanSummary summary = dbm.getLoanSummary(currentUser, key);
+
+        if (summary == null) {
+            rows.add(new Object[]{
+                    ResourceManager.getString("error.database"),
+                    "", "", ""
+            });
+            return new MyBooksLoad(rows, List.of(), 0, 0);
+        }
 
-                    int statusActual;
-                    int statusSaved;
+        if (summary.entries().isEmpty()) {
+            rows.add(new Object[]{
+                    ResourceManager.getString("books.none"),
+                    "", "", ""
+            });
+            return new MyBooksLoad(rows, List.of(), 0, 0);
+        }
 
-                    try {
-                        // Calculate and synchronize book status if it has changed
-                        statusActual = dbm.getDueStatus(dateDue);
-                        statusSaved = book.get("Status").getAsInt();
+        int loadErrors = 0;
+        Map<String, Integer> changedStatuses = new LinkedHashMap<>();
 
-                        if (statusActual != statusSaved) {
-                            try {
-                                dbm.updateDueStatus(SessionManager.getInstance().getCurrentUser(), bookId, statusActual, core.SessionManager.getInstance().getKey());
-                            } catch (Exception e) {
-                                logger.log(Level.WARNING, "Failed to update due status for book: " + bookId, e);
-                            }
-                        }
-                    } catch (Exception e) {
-                        statusActual = -2;  // Error status code
-                    }
+        for (LoanSummary.Entry entry : summary.entries()) {
+            BackgroundLoader.checkCancelled();
+            Loan book = entry.loan();
 
-                    String statusMsg = StatusUtils.getStatusMessage(statusActual);
+            // Use placeholder for books that may have been deleted from database
+            String title = entry.title();
+            if (title == null) {
+                title = ResourceManager.getString("book.unknown") + " (" + book.bookId() + ")";
+            }
 
-                    model.addRow(new Object[]{
-                            title,
-                            dateIssued,
-                            dateDue,
-                            statusMsg
-                    });
-                } catch (Exception e) {
-                    loadErrors++;
-                    logger.log(Level.WARNING, "Failed to load book data at index " + i, e);
-                }
+            // DateIssued is decrypted when the loan is read; unknown if that failed
+            String dateIssued;
+            if (book.hasIssueDate()) {
+                dateIssued = book.issueDate().toString();
+            } else {
+                dateIssued = core.ResourceManager.getString("date.unknown");
+                loadErrors++;
             }
 
-            // Tracking errors lets us notify user about partial data issues
-            if (loadErrors > 0) {
-                DialogUtils.showErrorDialog(gui,
-                        String.format(ResourceManager.getString("error.load.some.books"), loadErrors),
-                        ResourceManager.getString("warning")
-                );
+            String dateDue = entry.dueDate() != null ? entry.dueDate().toString() : ResourceManager.getString("date.unknown");
+
+            // Changed statuses are collected and saved together after the loop
+            if (entry.statusChanged()) {
+                changedStatuses.put(book.bookId(), entry.status());
             }
 
-            updateFinesDisplay();
-            
-        } catch (Exception e) {
-            model.setRowCount(0);
-            model.addRow(new Object[]{
-                    ResourceManager.getString("error.unexpected"),
-                    "", "", ""
+            rows.add(new Object[]{
+                    title,
+                    dateIssued,
+                    dateDue,
+                    StatusUtils.getStatusMessage(entry.status())
             });
-            DialogUtils.showErrorDialog(gui,
-                    core.ResourceManager.getString("error.unexpected.details") + ": " + e.getMessage(),
-                    ResourceManager.getString("error")
-            );
         }
+
+        if (!changedStatuses.isEmpty() && !dbm.updateDueStatuses(currentUser, changedStatuses, key)) {
+            logger.log(Level.WARNING, "Failed to update due statuses for books: " + changedStatuses.keySet());
+        }
+
+        return new MyBooksLoad(rows, summary.entries(), loadErrors, summary.totalFines());
     }
 
     /**
-     * Updates the total fines display based on current borrowed books.
+     * Updates the total fines display.
      * Shows the fines label only if there are outstanding fines.
+     *
+     * @param totalFines The user's total outstanding fines
      */
-    private static void updateFinesDisplay() {
+    private static void updateFinesDisplay(double totalFines) {
         if (totalFinesLabel == null) {
             return;
         }
-        
-        double totalFines = FeeManager.calculateTotalFines();
-        
+
         if (totalFines > 0) {
             totalFinesLabel.setText(ResourceManager.getString("fines.total.outstanding", String.format("%.2f", totalFines)));
             totalFinesLabel.setVisible(true);
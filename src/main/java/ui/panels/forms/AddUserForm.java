@@ -1,10 +1,9 @@
 package ui.panels.forms;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 import core.DataBaseManager;
+import core.Loan;
 import core.ResourceManager;
-import core.SecurityManager;
+import core.User;
 import core.UserTypeMapper;
 import ui.GUI;
 import ui.panels.ManagementPanel;
@@ -16,6 +15,7 @@ import ui.utils.TableUtils;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -277,7 +277,7 @@ public class AddUserForm {
             try {
                 // Verify user exists and password is correct
                 DataBaseManager dbm = new core.DataBaseManager();
-                JsonObject user = dbm.findUser(userId, password);
+                User user = dbm.findUser(userId, password);
 
                 if (user == null) {
                     DialogUtils.showErrorDialog(parentPanel,
@@ -287,13 +287,8 @@ public class AddUserForm {
                     return;
                 }
 
-                // Decrypt user data for display in the form
-                String decryptedUserId = SecurityManager.decrypt(user.get("UserID").getAsString(), password);
-                String decryptedUserName = SecurityManager.decrypt(user.get("Name").getAsString(), password);
-                String decryptedPassword = core.SecurityManager.decrypt(user.get("Password").getAsString(), password);
-                String userType = dbm.getUserType(userId, password);
-                
-                JPanel editUserFormPanel = createEditUserFormPanel(gui, decryptedUserId, decryptedUserName, decryptedPassword, userType);
+                // findUser() has decrypted the record and checked the stored password matches
+                JPanel editUserFormPanel = createEditUserFormPanel(gui, user.userId(), user.name(), password, user.userType());
                 gui.cardPanel.add(editUserFormPanel, "editUser");
                 gui.cardLayout.show(gui.cardPanel, "editUser");
                 
@@ -478,7 +473,7 @@ public class AddUserForm {
 
             // Verify user exists and password is correct
             DataBaseManager dbm = new core.DataBaseManager();
-            JsonObject user = dbm.findUser(userId, password);
+            User user = dbm.findUser(userId, password);
 
             if (user == null) {
                 DialogUtils.showErrorDialog(parentPanel,
@@ -489,8 +484,7 @@ public class AddUserForm {
             }
 
             // Check if user has borrowed books
-            JsonArray borrowedBooks = dbm.findBorrowedBooks(userId, password);
-            if (borrowedBooks != null && !borrowedBooks.isEmpty()) {
+            if (!user.loans().isEmpty()) {
                 DialogUtils.showErrorDialog(parentPanel,
                         core.ResourceManager.getString("error.user.has.books"),
                         core.ResourceManager.getString("error")
@@ -555,7 +549,7 @@ public class AddUserForm {
                 core.ResourceManager.getString("column.status")
         };
         
-        TableUtils.TableComponents tableComponents = TableUtils.createCenteredTable(columns);
+        TableUtils.TableComponents<DefaultTableModel> tableComponents = TableUtils.createCenteredTable(columns);
         DefaultTableModel booksTableModel = tableComponents.model();
         
         // Load user's books
@@ -589,7 +583,7 @@ public class AddUserForm {
      * @param refreshBooksButton The refresh books button
      * @param panel The parent panel
      */
-    private static void setupUserBooksActionListeners(String userId, String userPassword, DefaultTableModel booksTableModel, TableUtils.TableComponents tableComponents, JButton returnBookButton, JButton refreshBooksButton, JPanel panel) {
+    private static void setupUserBooksActionListeners(String userId, String userPassword, DefaultTableModel booksTableModel, TableUtils.TableComponents<DefaultTableModel> tableComponents, JButton returnBookButton, JButton refreshBooksButton, JPanel panel) {
     
     returnBookButton.addActionListener(_ -> {
         int selectedRow = tableComponents.table().getSelectedRow();
@@ -616,7 +610,7 @@ public class AddUserForm {
         if (confirm == JOptionPane.YES_OPTION) {
             try {
                 DataBaseManager dbm = new DataBaseManager();
-                boolean success = dbm.returnBook(userId, userPassword, bookId);
+                boolean success = dbm.returnBook(userId, bookId, userPassword);
                 
                 if (success) {
                     JOptionPane.showMessageDialog(panel,
@@ -658,9 +652,9 @@ public class AddUserForm {
         
         try {
             DataBaseManager dbm = new core.DataBaseManager();
-            JsonArray books = dbm.findBorrowedBooks(userId, userPassword);
+            List<Loan> books = dbm.findBorrowedBooks(userId, userPassword);
             
-            if (books == null || books.isEmpty()) {
+            if (books.isEmpty()) {
                 model.addRow(new Object[]{
                         core.ResourceManager.getString("books.none"),
                         "",
@@ -671,11 +665,11 @@ public class AddUserForm {
             
             for (int i = 0; i < books.size(); i++) {
                 try {
-                    JsonObject book = books.get(i).getAsJsonObject();
+                    Loan book = books.get(i);
                     
-                    String bookId = book.get("BookID").getAsString();
-                    String dateIssued = SecurityManager.decrypt(book.get("DateIssued").getAsString(), userPassword);
-                    int statusCode = book.get("Status").getAsInt();
+                    String bookId = book.bookId();
+                    String dateIssued = book.hasIssueDate() ? book.issueDate().toString() : core.ResourceManager.getString("date.unknown");
+                    int statusCode = book.status();
                     String status = getStatusMessage(statusCode);
                     
                     model.addRow(new Object[]{
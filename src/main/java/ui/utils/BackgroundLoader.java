@@ -0,0 +1,151 @@
+package ui.utils;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs data loads (file I/O, key derivation, decryption) off the Event Dispatch Thread.
+ * Each load belongs to a named channel, such as one table; starting a new load on a channel
+ * cancels the one still running there, and a superseded load never publishes its result.
+ * While any load is running the window shows a wait cursor. The result is handed to the
+ * callback on the EDT in one piece, so a table is updated in a single batch.
+ * Loads run on virtual threads, since they spend most of their time blocked on I/O.
+ *
+ * Cancellation never interrupts the worker thread: an interrupt would close any FileChannel the
+ * load is writing through (for example a due-status journal append) and could leave a torn write.
+ * Cancelled loads instead stop at their next checkCancelled() call.
+ */
+public class BackgroundLoader {
+    private static final Logger logger = Logger.getLogger(BackgroundLoader.class.getName());
+
+    /** Executor running the load workers */
+    private static final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Most recent load per channel; only accessed on the EDT */
+    private static final Map<String, SwingWorker<?, ?>> current = new HashMap<>();
+
+    /** Worker running on the current thread, for checkCancelled() */
+    private static final ThreadLocal<SwingWorker<?, ?>> runningWorker = new ThreadLocal<>();
+
+    /** Number of running loads per window; only accessed on the EDT */
+    private static final Map<Window, Integer> busyWindows = new HashMap<>();
+
+    /**
+     * Starts a load on a channel, cancelling any load still running on it.
+     * Must be called on the EDT.
+     *
+     * @param channel Name identifying what is being loaded (for example the table it fills)
+     * @param owner Component whose window shows the wait cursor while loading, or null
+     * @param task The work to run off the EDT
+     * @param onSuccess Receives the task's result on the EDT
+     * @param onFailure Receives the task's exception on the EDT
+     * @param <T> The result type
+     */
+    public static <T> void submit(String channel, Component owner, Callable<T> task, Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+        SwingWorker<?, ?> previous = current.remove(channel);
+        if (previous != null && !previous.isDone()) {
+            logger.log(Level.FINE, "Cancelling superseded load on channel: " + channel);
+            previous.cancel(false);
+        }
+
+        Window window = owner != null ? SwingUtilities.getWindowAncestor(owner) : null;
+        if (window == null && owner instanceof Window ownerWindow) {
+            window = ownerWindow;
+        }
+        Window busyWindow = window;
+
+        SwingWorker<T, Void> worker = new SwingWorker<>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                runningWorker.set(this);
+                try {
+                    return task.call();
+                } finally {
+                    runningWorker.remove();
+                }
+            }
+
+            @Override
+            protected void done() {
+                setBusy(busyWindow, false);
+                if (current.get(channel) != this) {
+                    return; // Superseded or cancelled; a newer load owns the channel
+                }
+                current.remove(channel);
+
+                try {
+                    onSuccess.accept(get());
+                } catch (CancellationException e) {
+                    logger.log(Level.FINE, "Load cancelled on channel: " + channel);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof CancellationException) {
+                        logger.log(Level.FINE, "Load cancelled on channel: " + channel);
+                        return;
+                    }
+                    logger.log(Level.SEVERE, "Background load failed on channel: " + channel, cause);
+                    onFailure.accept(cause instanceof Exception exception ? exception : new RuntimeException(cause));
+                }
+            }
+        };
+
+        current.put(channel, worker);
+        setBusy(busyWindow, true);
+        executor.execute(worker);
+    }
+
+    /**
+     * Cancels every running load, for example on logout.
+     * Must be called on the EDT.
+     */
+    public static void cancelAll() {
+        for (SwingWorker<?, ?> worker : current.values()) {
+            worker.cancel(false);
+        }
+        current.clear();
+    }
+
+    /**
+     * Stops a load early if it has been superseded.
+     * Long-running tasks should call this between units of work.
+     *
+     * @throws CancellationException if the calling load was cancelled
+     */
+    public static void checkCancelled() {
+        SwingWorker<?, ?> worker = runningWorker.get();
+        if (worker != null && worker.isCancelled()) {
+            throw new CancellationException("Load superseded");
+        }
+    }
+
+    /**
+     * Shows or clears the wait cursor on a window, counting overlapping loads.
+     *
+     * @param window The window, or null for none
+     * @param busy true when a load starts, false when it ends
+     */
+    private static void setBusy(Window window, boolean busy) {
+        if (window == null) return;
+
+        int count = busyWindows.getOrDefault(window, 0) + (busy ? 1 : -1);
+        if (count > 0) {
+            busyWindows.put(window, count);
+            window.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        } else {
+            busyWindows.remove(window);
+            window.setCursor(Cursor.getDefaultCursor());
+        }
+    }
+}
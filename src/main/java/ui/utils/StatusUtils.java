@@ -1,6 +1,6 @@
 package ui.utils;
 
-import com.google.gson.JsonObject;
+import core.Book;
 
 import java.awt.*;
 import java.util.logging.Level;
@@ -49,26 +49,23 @@ public class StatusUtils {
     }
 
     /**
-     * Validates that a book JSON object contains all required fields.
+     * Validates that a book has all required fields.
      *
-     * @param book The JsonObject representing a book to validate
-     * @return true if all required fields are present or if book is null (for safety), false if any required field is missing
+     * @param book The book to validate
+     * @return true if the book is null or any required field is missing, false if all required fields are present
      */
-    public static boolean hasRequiredBookFields(JsonObject book) {
+    public static boolean hasRequiredBookFields(Book book) {
         if (book == null) {
             logger.log(Level.WARNING, "Book validation failed: null book object");
             return true;
         }
 
-        String[] requiredFields = {"BookID", "Title", "Author", "Publisher", "Available"};
-        for (String field : requiredFields) {
-            if (!book.has(field)) {
-                logger.log(Level.WARNING, "Book validation failed: missing field '" + field + "'");
-                return true;
-            }
+        if (!book.isComplete()) {
+            logger.log(Level.WARNING, "Book validation failed: missing field in book " + book.bookId());
+            return true;
         }
 
-        logger.log(Level.FINE, "Book validation passed for book: " + book.get("BookID").getAsString());
+        logger.log(Level.FINE, "Book validation passed for book: " + book.bookId());
         return false;
     }
 
@@ -3,13 +3,19 @@ package ui.utils;
 import core.ResourceManager;
 
 import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
 import java.awt.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
 
 /**
  * Utility class for creating and configuring tables in the library management system UI.
- * Provides methods to create standard and centered-aligned tables with non-editable cells.
+ * Provides methods to create standard and centered-aligned tables with non-editable cells,
+ * backed either by a DefaultTableModel or by a LazyTableModel that reads rows on demand.
  */
 public class TableUtils {
     /**
@@ -33,15 +39,118 @@ public class TableUtils {
         return true;
     }
 
+    /**
+     * Replaces all rows of a table model and notifies the table once.
+     * Unlike repeated addRow() calls, which fire one event per row, this fires a single
+     * data-changed event however many rows are loaded. Must be called on the EDT.
+     *
+     * @param model The table model to fill
+     * @param rows The new rows, each with one value per column
+     */
+    @SuppressWarnings("unchecked")
+    public static void replaceRows(DefaultTableModel model, List<Object[]> rows) {
+        Vector<Vector<Object>> data = (Vector<Vector<Object>>) (Vector<?>) model.getDataVector();
+        data.clear();
+        data.ensureCapacity(rows.size());
+        for (Object[] row : rows) {
+            data.add(new Vector<>(Arrays.asList(row)));
+        }
+        model.fireTableDataChanged();
+    }
+
+    /**
+     * Read-only table model that keeps a list of source records and derives each cell from its
+     * record only when the table asks for it. JTable only requests the rows it paints, so
+     * a large catalog costs one list of references rather than a boxed copy of every row.
+     * Replacing the rows fires a single data-changed event.
+     *
+     * @param <T> The type of record behind each row
+     */
+    public static class LazyTableModel<T> extends AbstractTableModel {
+
+        /** Reads the value of one column from a record */
+        @FunctionalInterface
+        public interface CellReader<T> {
+            Object read(T record, int column);
+        }
+
+        /** Column names */
+        private final String[] columns;
+
+        /** Function deriving cell values from records */
+        private final CellReader<T> cellReader;
+
+        /** Records currently shown, one per row */
+        private List<T> rows = List.of();
+
+        /**
+         * Creates an empty model.
+         *
+         * @param columns Array of column names for the table
+         * @param cellReader Function deriving the value of a column from a record
+         */
+        public LazyTableModel(String[] columns, CellReader<T> cellReader) {
+            this.columns = columns;
+            this.cellReader = cellReader;
+        }
+
+        /**
+         * Shows a new list of records. The list is kept, not copied, and must not be modified afterwards.
+         * Must be called on the EDT.
+         *
+         * @param rows The records to show
+         */
+        public void setRows(List<T> rows) {
+            this.rows = rows;
+            fireTableDataChanged();
+        }
+
+        /**
+         * Removes all rows. Must be called on the EDT.
+         */
+        public void clear() {
+            setRows(List.of());
+        }
+
+        /**
+         * @param row The row index
+         * @return The record behind a row
+         */
+        public T getRecordAt(int row) {
+            return rows.get(row);
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            return cellReader.read(rows.get(row), column);
+        }
+    }
+
     /**
      * Record class that bundles together the components of a table setup.
      * Includes the JTable, its containing JScrollPane, and the table's model for data manipulation.
      *
      * @param table The JTable component
      * @param scrollPane The JScrollPane containing the table
-     * @param model The DefaultTableModel used by the table
+     * @param model The model used by the table
+     * @param <M> The type of the table model
      */
-    public record TableComponents(JTable table, JScrollPane scrollPane, DefaultTableModel model) {}
+    public record TableComponents<M extends TableModel>(JTable table, JScrollPane scrollPane, M model) {}
 
     /**
      * Creates a standard table with the specified columns.
@@ -54,7 +163,7 @@ public class TableUtils {
      * @param columns Array of column names for the table
      * @return TableComponents record containing the table, scroll pane, and table model
      */
-    public  static TableComponents createTable(String[] columns) {
+    public  static TableComponents<DefaultTableModel> createTable(String[] columns) {
         DefaultTableModel model = new DefaultTableModel(columns, 0){
             @Override
             public boolean isCellEditable(int row, int column) {
@@ -62,6 +171,17 @@ public class TableUtils {
             }
         };
 
+        return createTable(model);
+    }
+
+    /**
+     * Creates a standard table around an existing model, with the same properties as createTable(String[]).
+     *
+     * @param model The table model, which must not allow cell editing
+     * @param <M> The type of the table model
+     * @return TableComponents record containing the table, scroll pane, and table model
+     */
+    public static <M extends TableModel> TableComponents<M> createTable(M model) {
         JTable table = new JTable(model);
         JScrollPane scrollPane = new JScrollPane(table);
 
@@ -71,7 +191,7 @@ public class TableUtils {
         table.getTableHeader().setResizingAllowed(false);
         table.getTableHeader().setReorderingAllowed(false);
 
-        return new TableComponents(table, scrollPane, model);
+        return new TableComponents<>(table, scrollPane, model);
     }
 
     /**
@@ -82,10 +202,31 @@ public class TableUtils {
      * @param columns Array of column names for the table
      * @return TableComponents record containing the table, scroll pane, and table model
      */
-    public static TableComponents createCenteredTable(String[] columns) {
-        TableComponents tableComponents = createTable(columns);
-        JTable table = tableComponents.table();
+    public static TableComponents<DefaultTableModel> createCenteredTable(String[] columns) {
+        TableComponents<DefaultTableModel> tableComponents = createTable(columns);
+        centerColumns(tableComponents.table());
+        return tableComponents;
+    }
+
+    /**
+     * Creates a table with centered cell content around an existing model.
+     *
+     * @param model The table model, which must not allow cell editing
+     * @param <M> The type of the table model
+     * @return TableComponents record containing the table, scroll pane, and table model
+     */
+    public static <M extends TableModel> TableComponents<M> createCenteredTable(M model) {
+        TableComponents<M> tableComponents = createTable(model);
+        centerColumns(tableComponents.table());
+        return tableComponents;
+    }
 
+    /**
+     * Configures all columns of a table to center-align their content.
+     *
+     * @param table The table to configure
+     */
+    private static void centerColumns(JTable table) {
         // Center align all cell content
         DefaultTableCellRenderer centerRenderer = new DefaultTableCellRenderer();
         centerRenderer.setHorizontalAlignment(JLabel.CENTER);
@@ -93,8 +234,6 @@ public class TableUtils {
         for (int i = 0; i < table.getColumnCount(); i++) {
             table.getColumnModel().getColumn(i).setCellRenderer(centerRenderer);
         }
-
-        return tableComponents;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+package core;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs core.StorageMigration and core.SqlStorageEngine against an in-memory H2 database:
+ * JSON files are migrated, a user is found by lookup tag, and a borrow, a return and searches
+ * go through the engine's SQL.
+ */
+class SqlStorageEngineTest {
+
+    private static final String USER_ID = "100001";
+    private static final String PASSWORD = "password1";
+
+    @TempDir
+    Path directory;
+
+    private String url;
+    private SqlStorageEngine engine;
+    private JsonStorageEngine jsonEngine;
+
+    @BeforeEach
+    void migrate() {
+        List<Book> books = List.of(
+                new Book("C901411", "Introduction to Algorithms", "Thomas H. Cormen", "MIT Press", 1, 0),
+                new Book("A218177", "Artificial Intelligence: A Modern Approach", "Stuart Russell", "MIT Press", 0, 0));
+        String bookPath = directory.resolve("BookData.json").toString();
+        String userPath = directory.resolve("UserData.json").toString();
+        assertTrue(JsonManager.saveBooks(books, bookPath));
+        assertTrue(JsonManager.saveJsonFile(userData(), userPath));
+        PersistenceExecutor.flush();
+
+        // Kept open after migrate() closes its connection, so the engine below sees the data
+        url = "jdbc:h2:mem:" + directory.getFileName() + ";DB_CLOSE_DELAY=-1";
+        assertTrue(StorageMigration.migrate(bookPath, userPath, url));
+        engine = SqlStorageEngine.forUrl(url);
+        jsonEngine = new JsonStorageEngine(bookPath, userPath);
+    }
+
+    @AfterEach
+    void close() {
+        engine.close();
+        // Let background writes into the directory finish before it is deleted
+        PersistenceExecutor.flush();
+    }
+
+    @Test
+    void migratedUserIsFoundByLookupTag() {
+        UserHandle user = engine.resolveUser(USER_ID, PASSWORD);
+
+        assertNotNull(user);
+        assertEquals(USER_ID, user.userId());
+        assertEquals("Ada Lovelace", user.resolution().user().name());
+        assertEquals("Students", user.resolution().user().userType());
+        assertNull(engine.resolveUser(USER_ID, "wrong password"));
+    }
+
+    @Test
+    void borrowAndReturnMoveTheCopyAndTheLoanTogether() {
+        UserHandle user = engine.resolveUser(USER_ID, PASSWORD);
+        long version = user.resolution().version();
+
+        assertTrue(engine.borrowBook(user, "C901411", PASSWORD));
+        assertCounts("C901411", 0, 1);
+        assertEquals(1, engine.countLentCopies("C901411"));
+        // The borrow changed the user data version, so revalidating re-reads the loans
+        assertTrue(engine.revalidate(user, PASSWORD));
+        assertTrue(user.resolution().version() > version);
+        assertEquals(1, user.resolution().user().loans().size());
+
+        // The last copy is gone; nothing is written
+        UserHandle other = engine.resolveUser("100002", "password2");
+        assertFalse(engine.borrowBook(other, "C901411", "password2"));
+        assertFalse(engine.borrowBook(other, "A218177", "password2"));
+        assertCounts("C901411", 0, 1);
+        assertTrue(engine.revalidate(other, "password2"));
+        assertTrue(other.resolution().user().loans().isEmpty());
+
+        assertTrue(engine.revalidate(user, PASSWORD));
+        assertTrue(engine.returnBook(user, "C901411", PASSWORD));
+        assertCounts("C901411", 1, 0);
+        assertEquals(0, engine.countLentCopies("C901411"));
+        assertTrue(engine.revalidate(user, PASSWORD));
+        assertTrue(user.resolution().user().loans().isEmpty());
+        assertFalse(engine.returnBook(user, "C901411", PASSWORD));
+    }
+
+    @Test
+    void searchMatchesAnyFieldIgnoringCase() {
+        assertEquals(2, engine.findBooks("").size());
+        assertEquals(2, engine.findBooks("mit press").size());
+        assertEquals(List.of("A218177"), engine.findBooks("MODERN").stream().map(Book::bookId).toList());
+        assertTrue(engine.findBooks("no such book").isEmpty());
+        assertEquals("C901411", engine.findBookId("introduction to ALGORITHMS"));
+    }
+
+    @Test
+    void titleLookupAgreesWithTheJsonEngine() {
+        for (Book book : List.of(
+                new Book("E100001", "ΟΔΥΣΣΕΥΣ", "Homer", "Penguin", 1, 0),
+                new Book("E100002", "İstanbul Hatıraları", "Orhan Pamuk", "Vintage", 1, 0))) {
+            assertTrue(engine.addBook(book));
+            assertTrue(jsonEngine.addBook(book));
+        }
+
+        // Final sigma and the dotted capital I have no one-to-one lower-case form
+        for (String title : List.of("οδυσσευσ", "Οδυσσευς", "i̇stanbul hatıraları", "İSTANBUL HATIRALARI")) {
+            assertEquals(jsonEngine.findBookId(title), engine.findBookId(title), title);
+            assertNotNull(engine.findBookId(title), title);
+        }
+        assertNull(engine.findBookId("ΟΔΥΣΣΕΑΣ"));
+        assertNull(jsonEngine.findBookId("ΟΔΥΣΣΕΑΣ"));
+    }
+
+    private void assertCounts(String bookId, int available, int onLoan) {
+        Book book = engine.findBook(bookId);
+        assertNotNull(book);
+        assertEquals(available, book.available());
+        assertEquals(onLoan, book.onLoan());
+    }
+
+    /**
+     * @return A user database with two students and no loans, encrypted as the application stores it
+     */
+    private static JsonObject userData() {
+        JsonArray students = new JsonArray();
+        students.add(user(USER_ID, "Ada Lovelace", PASSWORD));
+        students.add(user("100002", "Alan Turing", "password2"));
+
+        JsonObject userData = new JsonObject();
+        userData.add("Students", students);
+        userData.add("General Public", new JsonArray());
+        userData.add("Admins", new JsonArray());
+        return userData;
+    }
+
+    private static JsonObject user(String userId, String name, String password) {
+        JsonObject user = new JsonObject();
+        user.addProperty("UserID", SecurityManager.encrypt(userId, password));
+        user.addProperty(JsonManager.LOOKUP_TAG, SecurityManager.computeLookupTag(userId, password));
+        user.addProperty("Name", SecurityManager.encrypt(name, password));
+        user.addProperty("Password", SecurityManager.encrypt(password, password));
+        user.add("Books", new JsonArray());
+        return user;
+    }
+}